@@ -0,0 +1,168 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks;
+
+import com.stormmq.serializers.*;
+import com.stormmq.serializers.Serializable;
+import com.stormmq.serializers.separatedValues.matchers.Matcher;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static com.stormmq.serializers.benchmarks.InputKind.*;
+import static com.stormmq.serializers.separatedValues.matchers.LeafMatcher.leaf;
+import static com.stormmq.serializers.separatedValues.matchers.RecurseMatcher.recurse;
+import static com.stormmq.serializers.separatedValues.matchers.RecurseMatcher.rootMatcher;
+import static java.util.Arrays.asList;
+
+public final class BenchmarkGraphs
+{
+	@NotNull public static final String[] RecordHeadings = {"id", "name", "description", "quantity", "price", "active", "tags", "street", "city", "postalCode"};
+
+	private BenchmarkGraphs()
+	{
+	}
+
+	@NotNull
+	public static Matcher recordMatcher()
+	{
+		return rootMatcher(leaf("id", 0), leaf("name", 1), leaf("description", 2), leaf("quantity", 3), leaf("price", 4), leaf("active", 5), leaf("tags", 6, '|'), recurse("address", leaf("street", 7), leaf("city", 8), leaf("postalCode", 9)));
+	}
+
+	@NotNull
+	public static BenchmarkRecord[] records(final int count)
+	{
+		final BenchmarkRecord[] records = new BenchmarkRecord[count];
+		for (int index = 0; index < count; index++)
+		{
+			final InputKind inputKind = index % 10 == 0 ? EscapeHeavy : index % 10 == 1 ? NonLatin : Ascii;
+			records[index] = new BenchmarkRecord(1_000_000L + index, "record-" + index, inputKind.repeated(48), index % 97, new BigDecimal(index).movePointLeft(2), (index & 1) == 0, asList("alpha", "beta", "gamma"), new BenchmarkAddress(index + " High Street", "London", 10_000 + index));
+		}
+		return records;
+	}
+
+	@NotNull
+	public static Serializable recordsGraph(final int count)
+	{
+		return mapSerializablesGraph(records(count));
+	}
+
+	// count entries drawn in turn from only distinct records, as a DAG-shaped graph repeats the same instances
+	@NotNull
+	public static Serializable sharedRecordsGraph(final int count, final int distinct)
+	{
+		final BenchmarkRecord[] distinctRecords = records(distinct);
+		final BenchmarkRecord[] records = new BenchmarkRecord[count];
+		for (int index = 0; index < count; index++)
+		{
+			records[index] = distinctRecords[index % distinct];
+		}
+		return mapSerializablesGraph(records);
+	}
+
+	@NotNull
+	public static Serializable deepGraph(final int depth)
+	{
+		return mapSerializableGraph(new NestedMapSerializable(depth));
+	}
+
+	@NotNull
+	public static Serializable wideGraph(final int width)
+	{
+		return mapSerializableGraph(new WideMapSerializable(width));
+	}
+
+	// java.util.Map and java.util.List values, so every property goes through writeProperty(String, Object) dispatch
+	@NotNull
+	public static Serializable genericGraph(final int count)
+	{
+		final List<Object> rows = new ArrayList<>(count);
+		for (int index = 0; index < count; index++)
+		{
+			final Map<String, Object> row = new LinkedHashMap<>(8);
+			row.put("id", 1_000_000L + index);
+			row.put("name", "record-" + index);
+			row.put("quantity", index % 97);
+			row.put("active", (index & 1) == 0);
+			row.put("tags", asList("alpha", "beta", "gamma"));
+			final Map<String, Object> address = new LinkedHashMap<>(4);
+			address.put("street", index + " High Street");
+			address.put("city", "London");
+			row.put("address", address);
+			rows.add(row);
+		}
+		final Map<String, Object> root = new LinkedHashMap<>(2);
+		root.put("rows", rows);
+		return mapSerializableGraph(new GenericMapSerializable(root));
+	}
+
+	// A response envelope in which only requestId and count vary; either may be a template Hole
+	@NotNull
+	public static Serializable envelopeGraph(@NotNull final Object requestId, @NotNull final Object count)
+	{
+		final Map<String, Object> service = new LinkedHashMap<>(4);
+		service.put("name", "orders");
+		service.put("version", 3);
+		service.put("region", "eu-west-1");
+		final Map<String, Object> root = new LinkedHashMap<>(8);
+		root.put("requestId", requestId);
+		root.put("status", "ok");
+		root.put("service", service);
+		root.put("links", asList("/orders", "/orders/next", "/orders/previous"));
+		root.put("count", count);
+		return mapSerializableGraph(new GenericMapSerializable(root));
+	}
+
+	@NotNull
+	private static Serializable mapSerializablesGraph(@NotNull final MapSerializable[] values)
+	{
+		return serializer ->
+		{
+			try
+			{
+				serializer.writeValue(values);
+			}
+			catch (final CouldNotWriteValueException e)
+			{
+				throw new IllegalStateException("Could not write benchmark graph", e);
+			}
+		};
+	}
+
+	@NotNull
+	private static Serializable mapSerializableGraph(@NotNull final MapSerializable value)
+	{
+		return serializer ->
+		{
+			try
+			{
+				serializer.writeValue(value);
+			}
+			catch (final CouldNotWriteValueException e)
+			{
+				throw new IllegalStateException("Could not write benchmark graph", e);
+			}
+		};
+	}
+}
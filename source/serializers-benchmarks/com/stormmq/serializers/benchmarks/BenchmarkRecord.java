@@ -0,0 +1,75 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks;
+
+import com.stormmq.serializers.*;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public final class BenchmarkRecord implements MapSerializable
+{
+	private final long id;
+	@NonNls @NotNull private final String name;
+	@NotNull private final String description;
+	private final int quantity;
+	@NotNull private final BigDecimal price;
+	private final boolean active;
+	@NotNull private final List<String> tags;
+	@NotNull private final BenchmarkAddress address;
+
+	@SuppressWarnings("AssignmentToCollectionOrArrayFieldFromParameter")
+	public BenchmarkRecord(final long id, @NonNls @NotNull final String name, @NotNull final String description, final int quantity, @NotNull final BigDecimal price, final boolean active, @NotNull final List<String> tags, @NotNull final BenchmarkAddress address)
+	{
+		this.id = id;
+		this.name = name;
+		this.description = description;
+		this.quantity = quantity;
+		this.price = price;
+		this.active = active;
+		this.tags = tags;
+		this.address = address;
+	}
+
+	@Override
+	public void serialiseMap(@NotNull final MapSerializer mapSerializer) throws CouldNotSerializeMapException
+	{
+		try
+		{
+			mapSerializer.writeProperty("id", id);
+			mapSerializer.writeProperty("name", name);
+			mapSerializer.writeProperty("description", description);
+			mapSerializer.writeProperty("quantity", quantity);
+			mapSerializer.writeProperty("price", price.toPlainString());
+			mapSerializer.writeProperty("active", active);
+			mapSerializer.writeProperty("tags", tags);
+			mapSerializer.writeProperty("address", address);
+		}
+		catch (final CouldNotWritePropertyException e)
+		{
+			throw new CouldNotSerializeMapException(this, e);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+// Consumes everything written to it, standing in for a socket
+public final class DiscardingByteChannel implements GatheringByteChannel
+{
+	private long bytesWritten;
+
+	public DiscardingByteChannel()
+	{
+		bytesWritten = 0L;
+	}
+
+	public long bytesWritten()
+	{
+		return bytesWritten;
+	}
+
+	@Override
+	public int write(@NotNull final ByteBuffer src)
+	{
+		final int remaining = src.remaining();
+		src.position(src.limit());
+		bytesWritten += remaining;
+		return remaining;
+	}
+
+	@Override
+	public long write(@NotNull final ByteBuffer[] srcs, final int offset, final int length)
+	{
+		long written = 0L;
+		for (int index = offset; index < offset + length; index++)
+		{
+			written += write(srcs[index]);
+		}
+		return written;
+	}
+
+	@Override
+	public long write(@NotNull final ByteBuffer[] srcs)
+	{
+		return write(srcs, 0, srcs.length);
+	}
+
+	@Override
+	public boolean isOpen()
+	{
+		return true;
+	}
+
+	@Override
+	public void close()
+	{
+	}
+}
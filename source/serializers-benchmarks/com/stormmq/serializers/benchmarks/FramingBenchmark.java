@@ -0,0 +1,99 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.CouldNotWriteDataException;
+import com.stormmq.serializers.Serializable;
+import com.stormmq.serializers.framing.FrameWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static com.stormmq.serializers.benchmarks.BenchmarkGraphs.recordsGraph;
+import static com.stormmq.serializers.benchmarks.SerializerKind.Json;
+import static com.stormmq.serializers.framing.FrameLengthPrefix.FixedFourBytes;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.openjdk.jmh.annotations.Scope.Thread;
+
+// 16 small documents framed onto a socket: serialised to a byte[] and written frame by frame, against a FrameWriter batching them into one gathering write
+@State(Thread)
+@BenchmarkMode(AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FramingBenchmark
+{
+	private static final int Documents = 16;
+
+	private Serializable document;
+	private AbstractSerializer serializer;
+	private DiscardingByteChannel channel;
+	private ByteArrayOutputStream outputStream;
+	private ByteBuffer lengthPrefix;
+	private FrameWriter frameWriter;
+
+	@Setup
+	public void setUp()
+	{
+		document = recordsGraph(1);
+		serializer = Json.newSerializer();
+		channel = new DiscardingByteChannel();
+		outputStream = new ByteArrayOutputStream(4096);
+		lengthPrefix = ByteBuffer.allocate(4);
+		frameWriter = new FrameWriter(Json.newSerializer(), UTF_8, FixedFourBytes, channel, Documents, 64 * 1024);
+	}
+
+	@Benchmark
+	public long copied() throws CouldNotSerialiseException, IOException
+	{
+		for (int index = 0; index < Documents; index++)
+		{
+			outputStream.reset();
+			serializer.serialise(document, outputStream, UTF_8);
+			final byte[] bytes = outputStream.toByteArray();
+			lengthPrefix.clear();
+			lengthPrefix.putInt(bytes.length);
+			lengthPrefix.flip();
+			channel.write(lengthPrefix);
+			channel.write(ByteBuffer.wrap(bytes));
+		}
+		return channel.bytesWritten();
+	}
+
+	@Benchmark
+	public long framed() throws CouldNotSerialiseException, CouldNotWriteDataException
+	{
+		for (int index = 0; index < Documents; index++)
+		{
+			frameWriter.write(document);
+		}
+		return channel.bytesWritten();
+	}
+}
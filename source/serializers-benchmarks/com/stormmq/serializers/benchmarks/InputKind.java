@@ -0,0 +1,50 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+
+public enum InputKind
+{
+	Ascii("The quick brown fox jumps over the lazy dog 0123456789 "),
+	EscapeHeavy("\"quoted\" <tag attr='v'> & back\\slash\ttab\nnewline\r "),
+	NonLatin("日本語のテキスト Русский Ελληνικά 😀 ");
+
+	@NotNull private final String fragment;
+
+	InputKind(@NotNull final String fragment)
+	{
+		this.fragment = fragment;
+	}
+
+	@NotNull
+	public String repeated(final int length)
+	{
+		final StringBuilder stringBuilder = new StringBuilder(length + fragment.length());
+		while (stringBuilder.length() < length)
+		{
+			stringBuilder.append(fragment);
+		}
+		return stringBuilder.toString();
+	}
+}
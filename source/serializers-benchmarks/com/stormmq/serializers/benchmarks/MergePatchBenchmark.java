@@ -0,0 +1,111 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks;
+
+import com.stormmq.serializers.*;
+import com.stormmq.serializers.Serializable;
+import com.stormmq.serializers.tape.TapeMergePatcher;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.stormmq.serializers.benchmarks.BenchmarkGraphs.records;
+import static com.stormmq.serializers.benchmarks.SerializerKind.Json;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.openjdk.jmh.annotations.Scope.Thread;
+
+// A document of 100 records keyed by name in which only a version number changes between updates: the whole document against a merge patch
+@State(Thread)
+@BenchmarkMode(AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergePatchBenchmark
+{
+	private Map<String, Object> document;
+	private Serializable graph;
+	private AbstractSerializer serializer;
+	private TapeMergePatcher mergePatcher;
+	private ByteArrayOutputStream outputStream;
+	private int version;
+
+	@Setup
+	public void setUp()
+	{
+		document = new LinkedHashMap<>(128);
+		for (final BenchmarkRecord record : records(100))
+		{
+			document.put("record-" + document.size(), record);
+		}
+		final MapSerializable root = new GenericMapSerializable(document);
+		graph = serializer ->
+		{
+			try
+			{
+				serializer.writeValue(root);
+			}
+			catch (final CouldNotWriteValueException e)
+			{
+				throw new IllegalStateException("Could not write benchmark graph", e);
+			}
+		};
+		serializer = Json.newSerializer();
+		mergePatcher = new TapeMergePatcher();
+		outputStream = new ByteArrayOutputStream(64 * 1024);
+		version = 0;
+	}
+
+	@Benchmark
+	public int whole() throws CouldNotSerialiseException
+	{
+		nextVersion();
+		outputStream.reset();
+		serializer.serialise(graph, outputStream, UTF_8);
+		return outputStream.size();
+	}
+
+	@Benchmark
+	public int mergePatch() throws CouldNotSerialiseException
+	{
+		nextVersion();
+		outputStream.reset();
+		@Nullable final Serializable mergePatch = mergePatcher.mergePatch(graph);
+		if (mergePatch != null)
+		{
+			serializer.serialise(mergePatch, outputStream, UTF_8);
+		}
+		return outputStream.size();
+	}
+
+	private void nextVersion()
+	{
+		version++;
+		document.put("version", version);
+	}
+}
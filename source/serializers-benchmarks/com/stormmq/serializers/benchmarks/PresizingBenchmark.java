@@ -0,0 +1,80 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.Serializable;
+import com.stormmq.serializers.sizing.DocumentSizes;
+import com.stormmq.serializers.sizing.PresizingSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+
+import static com.stormmq.serializers.benchmarks.BenchmarkGraphs.recordsGraph;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.openjdk.jmh.annotations.Scope.Thread;
+
+// Each document into a new default sized ByteArrayOutputStream, growing by doubling, against a new buffer sized from the documents before it
+@State(Thread)
+@BenchmarkMode(AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PresizingBenchmark
+{
+	@Param({"Json", "Xml", "CommaSeparated"})
+	public SerializerKind serializerKind;
+
+	@Param({"10", "1000"})
+	public int records;
+
+	private Serializable graph;
+	private AbstractSerializer serializer;
+	private PresizingSerializer presizingSerializer;
+
+	@Setup
+	public void setUp()
+	{
+		graph = recordsGraph(records);
+		serializer = serializerKind.newSerializer();
+		presizingSerializer = new PresizingSerializer(serializerKind.newSerializer(), UTF_8, new DocumentSizes(32, 64 * 1024 * 1024));
+	}
+
+	@Benchmark
+	public int defaultSized() throws CouldNotSerialiseException
+	{
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		serializer.serialise(graph, outputStream, UTF_8);
+		return outputStream.size();
+	}
+
+	@Benchmark
+	public int presized() throws CouldNotSerialiseException
+	{
+		return presizingSerializer.serialise(graph).remaining();
+	}
+}
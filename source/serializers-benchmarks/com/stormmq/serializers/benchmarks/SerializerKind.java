@@ -0,0 +1,97 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.json.JsonPSerializer;
+import com.stormmq.serializers.json.JsonSerializer;
+import com.stormmq.serializers.separatedValues.matchers.Matcher;
+import com.stormmq.serializers.xml.XmlSerializer;
+import org.jetbrains.annotations.NotNull;
+
+import static com.stormmq.serializers.benchmarks.BenchmarkGraphs.RecordHeadings;
+import static com.stormmq.serializers.benchmarks.BenchmarkGraphs.recordMatcher;
+import static com.stormmq.serializers.separatedValues.SeparatedValueSerializer.commaSeparatedValueSerializer;
+import static com.stormmq.serializers.separatedValues.SeparatedValueSerializer.tabSeparatedValueSerializer;
+
+public enum SerializerKind
+{
+	Json
+	{
+		@NotNull
+		@Override
+		public AbstractSerializer newSerializer(@NotNull final Matcher root, @NotNull final String... headings)
+		{
+			return new JsonSerializer()
+			{
+			};
+		}
+	},
+	JsonP
+	{
+		@NotNull
+		@Override
+		public AbstractSerializer newSerializer(@NotNull final Matcher root, @NotNull final String... headings)
+		{
+			return new JsonPSerializer("callback");
+		}
+	},
+	Xml
+	{
+		@NotNull
+		@Override
+		public AbstractSerializer newSerializer(@NotNull final Matcher root, @NotNull final String... headings)
+		{
+			return new XmlSerializer(true, "root");
+		}
+	},
+	CommaSeparated
+	{
+		@NotNull
+		@Override
+		public AbstractSerializer newSerializer(@NotNull final Matcher root, @NotNull final String... headings)
+		{
+			return commaSeparatedValueSerializer(root, true, headings);
+		}
+	},
+	TabSeparated
+	{
+		@NotNull
+		@Override
+		public AbstractSerializer newSerializer(@NotNull final Matcher root, @NotNull final String... headings)
+		{
+			return tabSeparatedValueSerializer(root, true, headings);
+		}
+	},
+	;
+
+	@NotNull
+	public final AbstractSerializer newSerializer()
+	{
+		return newSerializer(recordMatcher(), RecordHeadings);
+	}
+
+	// The matcher and headings are only used by the separated value formats
+	@NotNull
+	public abstract AbstractSerializer newSerializer(@NotNull final Matcher root, @NotNull final String... headings);
+}
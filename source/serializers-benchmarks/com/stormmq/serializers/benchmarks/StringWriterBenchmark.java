@@ -0,0 +1,95 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks;
+
+import com.stormmq.serializers.CouldNotEncodeDataException;
+import com.stormmq.serializers.CouldNotWriteDataException;
+import com.stormmq.serializers.json.JsonStringWriter;
+import com.stormmq.serializers.xml.XmlStringWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.CharArrayWriter;
+
+import static com.stormmq.serializers.EncodableCharacters.encodableCharacters;
+import static com.stormmq.serializers.NoSerializerInstrumentation.NoSerializerInstrumentationInstance;
+import static java.nio.charset.Charset.forName;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.openjdk.jmh.annotations.Scope.Thread;
+
+@State(Thread)
+@BenchmarkMode(AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringWriterBenchmark
+{
+	@Param({"Ascii", "EscapeHeavy", "NonLatin"})
+	public InputKind inputKind;
+
+	@Param({"16", "1024"})
+	public int length;
+
+	// UTF-8 never escapes for the charset, ISO-8859-1 escapes above 0xFF without a bitmap and windows-1252 consults its bitmap above 0x7F
+	@Param({"UTF-8", "ISO-8859-1", "windows-1252"})
+	public String charset;
+
+	private String value;
+	private CharArrayWriter writer;
+	private JsonStringWriter jsonStringWriter;
+	private XmlStringWriter xmlStringWriter;
+
+	@Setup
+	public void setUp()
+	{
+		value = inputKind.repeated(length).substring(0, length);
+		writer = new CharArrayWriter(length * 8);
+		jsonStringWriter = new JsonStringWriter(writer, NoSerializerInstrumentationInstance, encodableCharacters(forName(charset)));
+		xmlStringWriter = new XmlStringWriter(writer, NoSerializerInstrumentationInstance, encodableCharacters(forName(charset)));
+	}
+
+	@Benchmark
+	public int jsonString() throws CouldNotWriteDataException
+	{
+		writer.reset();
+		jsonStringWriter.writeString(value);
+		return writer.size();
+	}
+
+	@Benchmark
+	public int xmlText() throws CouldNotWriteDataException, CouldNotEncodeDataException
+	{
+		writer.reset();
+		xmlStringWriter.writeText(value);
+		return writer.size();
+	}
+
+	@Benchmark
+	public int xmlAttributeValue() throws CouldNotWriteDataException, CouldNotEncodeDataException
+	{
+		writer.reset();
+		xmlStringWriter.writeAttributeValue(value);
+		return writer.size();
+	}
+}
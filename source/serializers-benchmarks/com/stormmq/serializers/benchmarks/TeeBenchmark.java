@@ -0,0 +1,106 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.Serializable;
+import com.stormmq.serializers.tee.TeeSerializer;
+import com.stormmq.serializers.tee.TeeTarget;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+
+import static com.stormmq.serializers.benchmarks.BenchmarkGraphs.recordsGraph;
+import static com.stormmq.serializers.benchmarks.SerializerKind.CommaSeparated;
+import static com.stormmq.serializers.benchmarks.SerializerKind.Json;
+import static com.stormmq.serializers.benchmarks.SerializerKind.Xml;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.openjdk.jmh.annotations.Scope.Thread;
+
+// Publishing the same records as JSON, XML and CSV: three traversals against one traversal through a tee
+@State(Thread)
+@BenchmarkMode(AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TeeBenchmark
+{
+	@Param({"1", "100"})
+	public int records;
+
+	private Serializable graph;
+	private AbstractSerializer json;
+	private AbstractSerializer xml;
+	private AbstractSerializer commaSeparated;
+	private ByteArrayOutputStream jsonOutputStream;
+	private ByteArrayOutputStream xmlOutputStream;
+	private ByteArrayOutputStream commaSeparatedOutputStream;
+	private TeeSerializer teeSerializer;
+
+	@Setup
+	public void setUp()
+	{
+		graph = recordsGraph(records);
+		json = Json.newSerializer();
+		xml = Xml.newSerializer();
+		commaSeparated = CommaSeparated.newSerializer();
+		jsonOutputStream = new ByteArrayOutputStream(64 * 1024);
+		xmlOutputStream = new ByteArrayOutputStream(64 * 1024);
+		commaSeparatedOutputStream = new ByteArrayOutputStream(64 * 1024);
+		teeSerializer = new TeeSerializer(new TeeTarget(json, jsonOutputStream, UTF_8), new TeeTarget(xml, xmlOutputStream, UTF_8), new TeeTarget(commaSeparated, commaSeparatedOutputStream, UTF_8));
+	}
+
+	@Benchmark
+	public int separately() throws CouldNotSerialiseException
+	{
+		reset();
+		json.serialise(graph, jsonOutputStream, UTF_8);
+		xml.serialise(graph, xmlOutputStream, UTF_8);
+		commaSeparated.serialise(graph, commaSeparatedOutputStream, UTF_8);
+		return size();
+	}
+
+	@Benchmark
+	public int tee() throws CouldNotSerialiseException
+	{
+		reset();
+		teeSerializer.serialise(graph);
+		return size();
+	}
+
+	private void reset()
+	{
+		jsonOutputStream.reset();
+		xmlOutputStream.reset();
+		commaSeparatedOutputStream.reset();
+	}
+
+	private int size()
+	{
+		return jsonOutputStream.size() + xmlOutputStream.size() + commaSeparatedOutputStream.size();
+	}
+}
@@ -0,0 +1,88 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.CouldNotWriteDataException;
+import com.stormmq.serializers.CouldNotWriteValueException;
+import com.stormmq.serializers.templates.Template;
+import com.stormmq.serializers.templates.TemplateRenderer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+
+import static com.stormmq.serializers.benchmarks.BenchmarkGraphs.envelopeGraph;
+import static com.stormmq.serializers.templates.HoleType.LongHole;
+import static com.stormmq.serializers.templates.HoleType.StringHole;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.openjdk.jmh.annotations.Scope.Thread;
+
+// A response envelope with two varying values: serialized whole each time, against rendered from a template
+@State(Thread)
+@BenchmarkMode(AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark
+{
+	@Param({"Json", "Xml"})
+	public SerializerKind serializerKind;
+
+	private AbstractSerializer serializer;
+	private ByteArrayOutputStream outputStream;
+	private Template template;
+	private TemplateRenderer renderer;
+	private long count;
+
+	@Setup
+	public void setUp() throws CouldNotSerialiseException
+	{
+		serializer = serializerKind.newSerializer();
+		outputStream = new ByteArrayOutputStream(1024);
+		template = Template.compile(serializer, UTF_8, holes -> envelopeGraph(holes.hole("requestId", StringHole), holes.hole("count", LongHole)));
+		renderer = new TemplateRenderer(serializer, UTF_8, 1024);
+		count = 0L;
+	}
+
+	@Benchmark
+	public int serialised() throws CouldNotSerialiseException
+	{
+		count++;
+		outputStream.reset();
+		serializer.serialise(envelopeGraph("req-42", count), outputStream, UTF_8);
+		return outputStream.size();
+	}
+
+	@Benchmark
+	public int rendered() throws CouldNotWriteValueException, CouldNotWriteDataException
+	{
+		count++;
+		outputStream.reset();
+		renderer.render(template, outputStream, "req-42", count);
+		return outputStream.size();
+	}
+}
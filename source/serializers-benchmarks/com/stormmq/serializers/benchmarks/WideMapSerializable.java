@@ -0,0 +1,66 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks;
+
+import com.stormmq.serializers.*;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+// A single map with many scalar properties, used to measure the cost of property names and separators
+public final class WideMapSerializable implements MapSerializable
+{
+	@NonNls @NotNull private final String[] names;
+
+	public WideMapSerializable(final int width)
+	{
+		names = new String[width];
+		for (int index = 0; index < width; index++)
+		{
+			names[index] = "property" + index;
+		}
+	}
+
+	@Override
+	public void serialiseMap(@NotNull final MapSerializer mapSerializer) throws CouldNotSerializeMapException
+	{
+		try
+		{
+			final int length = names.length;
+			for (int index = 0; index < length; index++)
+			{
+				if ((index & 1) == 0)
+				{
+					mapSerializer.writeProperty(names[index], index);
+				}
+				else
+				{
+					mapSerializer.writeProperty(names[index], names[index]);
+				}
+			}
+		}
+		catch (final CouldNotWritePropertyException e)
+		{
+			throw new CouldNotSerializeMapException(this, e);
+		}
+	}
+}
@@ -0,0 +1,267 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.allocation;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.Serializable;
+import com.stormmq.serializers.benchmarks.InputKind;
+import com.stormmq.serializers.benchmarks.SerializerKind;
+import com.stormmq.serializers.json.JsonStringWriter;
+import com.stormmq.serializers.xml.XmlStringWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+
+import static com.stormmq.serializers.benchmarks.BenchmarkGraphs.*;
+import static com.stormmq.serializers.benchmarks.InputKind.*;
+import static com.stormmq.serializers.benchmarks.SerializerKind.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+// Budgets are bytes allocated per operation in steady state; lower them when an allocation is removed, never raise them to make a run pass
+public enum AllocationBudget
+{
+	JsonOneRecord(14_336L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return serialise(Json, recordsGraph(1));
+		}
+	},
+	JsonHundredRecords(1_827_840L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return serialise(Json, recordsGraph(100));
+		}
+	},
+	JsonPOneRecord(27_648L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return serialise(JsonP, recordsGraph(1));
+		}
+	},
+	XmlOneRecord(41_984L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return serialise(Xml, recordsGraph(1));
+		}
+	},
+	XmlHundredRecords(3_113_984L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return serialise(Xml, recordsGraph(100));
+		}
+	},
+	CommaSeparatedOneRecord(28_672L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return serialise(CommaSeparated, recordsGraph(1));
+		}
+	},
+	CommaSeparatedHundredRecords(1_326_080L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return serialise(CommaSeparated, recordsGraph(100));
+		}
+	},
+	TabSeparatedOneRecord(25_600L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return serialise(TabSeparated, recordsGraph(1));
+		}
+	},
+	JsonDeepGraph(94_208L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return serialise(Json, deepGraph(64));
+		}
+	},
+	JsonWideGraph(102_400L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return serialise(Json, wideGraph(64));
+		}
+	},
+	JsonGenericGraph(111_616L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return serialise(Json, genericGraph(10));
+		}
+	},
+	XmlGenericGraph(339_968L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return serialise(Xml, genericGraph(10));
+		}
+	},
+	JsonStringWriterAscii(0L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return jsonString(Ascii);
+		}
+	},
+	JsonStringWriterEscapeHeavy(0L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return jsonString(EscapeHeavy);
+		}
+	},
+	JsonStringWriterNonLatin(0L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return jsonString(NonLatin);
+		}
+	},
+	XmlStringWriterAscii(0L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return xmlText(Ascii);
+		}
+	},
+	XmlStringWriterEscapeHeavy(0L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return xmlText(EscapeHeavy);
+		}
+	},
+	XmlStringWriterNonLatin(0L)
+	{
+		@NotNull
+		@Override
+		public AllocationOperation newOperation()
+		{
+			return xmlText(NonLatin);
+		}
+	},
+	;
+
+	private static final int StringLength = 256;
+
+	private final long bytesPerOperation;
+
+	AllocationBudget(final long bytesPerOperation)
+	{
+		this.bytesPerOperation = bytesPerOperation;
+	}
+
+	public final long bytesPerOperation()
+	{
+		return bytesPerOperation;
+	}
+
+	public final boolean isZeroAllocation()
+	{
+		return bytesPerOperation == 0L;
+	}
+
+	@NotNull
+	public abstract AllocationOperation newOperation();
+
+	@NotNull
+	private static AllocationOperation serialise(@NotNull final SerializerKind serializerKind, @NotNull final Serializable graph)
+	{
+		final AbstractSerializer serializer = serializerKind.newSerializer();
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256 * 1024);
+		return () ->
+		{
+			outputStream.reset();
+			serializer.serialise(graph, outputStream, UTF_8);
+		};
+	}
+
+	@NotNull
+	private static AllocationOperation jsonString(@NotNull final InputKind inputKind)
+	{
+		final String value = inputKind.repeated(StringLength);
+		final CharArrayWriter writer = new CharArrayWriter(StringLength * 8);
+		final JsonStringWriter jsonStringWriter = new JsonStringWriter(writer);
+		return () ->
+		{
+			writer.reset();
+			jsonStringWriter.writeString(value);
+		};
+	}
+
+	@NotNull
+	private static AllocationOperation xmlText(@NotNull final InputKind inputKind)
+	{
+		final String value = inputKind.repeated(StringLength);
+		final CharArrayWriter writer = new CharArrayWriter(StringLength * 8);
+		final XmlStringWriter xmlStringWriter = new XmlStringWriter(writer);
+		return () ->
+		{
+			writer.reset();
+			xmlStringWriter.writeText(value);
+		};
+	}
+}
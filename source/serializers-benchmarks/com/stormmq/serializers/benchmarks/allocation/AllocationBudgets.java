@@ -0,0 +1,73 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.allocation;
+
+import com.stormmq.serializers.AbstractDataException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.PrintStream;
+
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+// Exits non-zero if any operation allocates more than its budget, so it can gate a build
+public final class AllocationBudgets
+{
+	private static final int WarmUpOperations = 20_000;
+	private static final int MeasuredOperations = 2_000;
+
+	private AllocationBudgets()
+	{
+	}
+
+	@SuppressWarnings({"UseOfSystemOutOrSystemErr", "CallToSystemExit"})
+	public static void main(@NotNull final String... arguments) throws AbstractDataException
+	{
+		final int failures = check(System.out);
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	public static int check(@NotNull final PrintStream report) throws AbstractDataException
+	{
+		final AllocationMeter allocationMeter = new AllocationMeter();
+		int failures = 0;
+		report.println(format(ENGLISH, "%1$-32s %2$12s %3$12s %4$s", "Operation", "Bytes/op", "Budget", "Result"));
+		for (final AllocationBudget allocationBudget : AllocationBudget.values())
+		{
+			final long bytesPerOperation = allocationMeter.bytesPerOperation(allocationBudget.newOperation(), WarmUpOperations, MeasuredOperations);
+			final long budget = allocationBudget.bytesPerOperation();
+			final String result;
+			if (bytesPerOperation > budget)
+			{
+				failures++;
+				result = allocationBudget.isZeroAllocation() ? "FAIL (no longer zero-allocation)" : "FAIL";
+			}
+			else
+			{
+				result = "ok";
+			}
+			report.println(format(ENGLISH, "%1$-32s %2$12d %3$12d %4$s", allocationBudget.name(), bytesPerOperation, budget, result));
+		}
+		return failures;
+	}
+}
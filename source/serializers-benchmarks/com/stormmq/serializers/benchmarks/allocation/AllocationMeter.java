@@ -0,0 +1,91 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.allocation;
+
+import com.stormmq.serializers.AbstractDataException;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+
+import static java.lang.Thread.currentThread;
+
+public final class AllocationMeter
+{
+	@NotNull private final com.sun.management.ThreadMXBean threadMXBean;
+	private final long threadId;
+	private final long overhead;
+
+	public AllocationMeter()
+	{
+		final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (!(threadMXBean instanceof com.sun.management.ThreadMXBean))
+		{
+			throw new IllegalStateException("This JVM does not support per-thread allocation counters");
+		}
+		this.threadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+		if (!this.threadMXBean.isThreadAllocatedMemorySupported())
+		{
+			throw new IllegalStateException("This JVM does not support per-thread allocation counters");
+		}
+		this.threadMXBean.setThreadAllocatedMemoryEnabled(true);
+		threadId = currentThread().getId();
+
+		// Reading the counter can itself allocate on some JVMs
+		final long before = allocatedBytes();
+		final long after = allocatedBytes();
+		overhead = after - before;
+	}
+
+	// Must be called on the thread that constructed this meter
+	public long bytesPerOperation(@NotNull final AllocationOperation allocationOperation, final int warmUpOperations, final int measuredOperations) throws AbstractDataException
+	{
+		if (currentThread().getId() != threadId)
+		{
+			throw new IllegalStateException("An AllocationMeter can only be used by the thread that created it");
+		}
+		if (measuredOperations < 1)
+		{
+			throw new IllegalArgumentException("measuredOperations must be positive");
+		}
+
+		for (int index = 0; index < warmUpOperations; index++)
+		{
+			allocationOperation.operate();
+		}
+
+		final long before = allocatedBytes();
+		for (int index = 0; index < measuredOperations; index++)
+		{
+			allocationOperation.operate();
+		}
+		final long after = allocatedBytes();
+
+		final long allocated = after - before - overhead;
+		return allocated < 0L ? 0L : allocated / measuredOperations;
+	}
+
+	private long allocatedBytes()
+	{
+		return threadMXBean.getThreadAllocatedBytes(threadId);
+	}
+}
@@ -0,0 +1,158 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.load;
+
+import org.jetbrains.annotations.NotNull;
+
+import static java.lang.Long.numberOfLeadingZeros;
+
+// Log-linear buckets in the style of HdrHistogram: values below 128 are exact, larger values are recorded to within 1/64 (about 1.6%)
+public final class LatencyHistogram
+{
+	private static final int SubBucketBits = 7;
+	private static final int SubBucketCount = 1 << SubBucketBits;
+	private static final int SubBucketHalfCountBits = SubBucketBits - 1;
+	private static final int SubBucketHalfCount = 1 << SubBucketHalfCountBits;
+	private static final int MaximumShift = 63 - SubBucketHalfCountBits;
+	private static final int BucketCount = (MaximumShift + 1) * SubBucketHalfCount + SubBucketCount;
+
+	@NotNull private final long[] counts;
+	private long totalCount;
+	private long minimum;
+	private long maximum;
+	private double sum;
+
+	public LatencyHistogram()
+	{
+		counts = new long[BucketCount];
+		totalCount = 0L;
+		minimum = Long.MAX_VALUE;
+		maximum = 0L;
+		sum = 0.0;
+	}
+
+	public void record(final long value)
+	{
+		if (value < 0L)
+		{
+			throw new IllegalArgumentException("value can not be negative");
+		}
+		counts[index(value)]++;
+		totalCount++;
+		sum += value;
+		if (value < minimum)
+		{
+			minimum = value;
+		}
+		if (value > maximum)
+		{
+			maximum = value;
+		}
+	}
+
+	public void add(@NotNull final LatencyHistogram other)
+	{
+		for (int index = 0; index < BucketCount; index++)
+		{
+			counts[index] += other.counts[index];
+		}
+		totalCount += other.totalCount;
+		sum += other.sum;
+		if (other.minimum < minimum)
+		{
+			minimum = other.minimum;
+		}
+		if (other.maximum > maximum)
+		{
+			maximum = other.maximum;
+		}
+	}
+
+	public long totalCount()
+	{
+		return totalCount;
+	}
+
+	public long minimum()
+	{
+		return totalCount == 0L ? 0L : minimum;
+	}
+
+	public long maximum()
+	{
+		return maximum;
+	}
+
+	public double mean()
+	{
+		return totalCount == 0L ? 0.0 : sum / totalCount;
+	}
+
+	// The highest value equivalent to the recorded value at the given percentile, from 0 to 100
+	public long valueAtPercentile(final double percentile)
+	{
+		if (percentile < 0.0 || percentile > 100.0)
+		{
+			throw new IllegalArgumentException("percentile must be between 0 and 100");
+		}
+		if (totalCount == 0L)
+		{
+			return 0L;
+		}
+
+		final long countAtPercentile = Math.max(1L, (long) Math.ceil(percentile / 100.0 * totalCount));
+		long cumulativeCount = 0L;
+		for (int index = 0; index < BucketCount; index++)
+		{
+			cumulativeCount += counts[index];
+			if (cumulativeCount >= countAtPercentile)
+			{
+				final long highestEquivalentValue = highestEquivalentValue(index);
+				return highestEquivalentValue > maximum ? maximum : highestEquivalentValue;
+			}
+		}
+		return maximum;
+	}
+
+	private static int index(final long value)
+	{
+		if (value < SubBucketCount)
+		{
+			return (int) value;
+		}
+		final int shift = 64 - numberOfLeadingZeros(value) - SubBucketBits;
+		final int subBucket = (int) (value >>> shift);
+		return shift * SubBucketHalfCount + subBucket;
+	}
+
+	private static long highestEquivalentValue(final int index)
+	{
+		if (index < SubBucketCount)
+		{
+			return index;
+		}
+		final int shift = (index >>> SubBucketHalfCountBits) - 1;
+		final long subBucket = index - shift * SubBucketHalfCount;
+		return ((subBucket + 1L) << shift) - 1L;
+	}
+}
@@ -0,0 +1,205 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.load;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.ByteCountingFilterOutputStream;
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.Serializable;
+import com.stormmq.serializers.benchmarks.SerializerKind;
+import com.stormmq.serializers.separatedValues.matchers.Matcher;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ENGLISH;
+
+// A closed-loop driver: each thread serialises its next document as soon as the previous one finishes, so latencies are service times
+public final class LoadDriver
+{
+	private static final int DocumentsPerThread = 64;
+
+	@NotNull private final SerializerKind serializerKind;
+	@NotNull private final SyntheticGraphConfiguration configuration;
+	@NotNull private final LoadSink loadSink;
+	@NotNull private final Path directory;
+	private final int threads;
+	private final long seed;
+
+	public LoadDriver(@NotNull final SerializerKind serializerKind, @NotNull final SyntheticGraphConfiguration configuration, @NotNull final LoadSink loadSink, @NotNull final Path directory, final int threads, final long seed)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException("threads must be positive");
+		}
+		this.serializerKind = serializerKind;
+		this.configuration = configuration;
+		this.loadSink = loadSink;
+		this.directory = directory;
+		this.threads = threads;
+		this.seed = seed;
+	}
+
+	@NotNull
+	public LoadResult run(final long warmUpNanoseconds, final long measurementNanoseconds) throws InterruptedException
+	{
+		final CountDownLatch ready = new CountDownLatch(threads);
+		final CountDownLatch go = new CountDownLatch(1);
+		final AtomicReference<Exception> failure = new AtomicReference<>();
+		final long[] startedAt = new long[1];
+		final List<Worker> workers = new ArrayList<>(threads);
+		final List<Thread> workerThreads = new ArrayList<>(threads);
+		for (int index = 0; index < threads; index++)
+		{
+			final Worker worker = new Worker(index, ready, go, failure, startedAt, warmUpNanoseconds, measurementNanoseconds);
+			workers.add(worker);
+			final Thread thread = new Thread(worker, "load-" + index);
+			thread.setDaemon(true);
+			workerThreads.add(thread);
+			thread.start();
+		}
+
+		ready.await();
+		startedAt[0] = nanoTime();
+		go.countDown();
+		for (final Thread thread : workerThreads)
+		{
+			thread.join();
+		}
+
+		@Nullable final Exception exception = failure.get();
+		if (exception != null)
+		{
+			throw new IllegalStateException("A load thread failed", exception);
+		}
+
+		final LatencyHistogram latencyHistogram = new LatencyHistogram();
+		long documents = 0L;
+		long bytes = 0L;
+		for (final Worker worker : workers)
+		{
+			latencyHistogram.add(worker.latencyHistogram);
+			documents += worker.documents;
+			bytes += worker.bytes;
+		}
+		return new LoadResult(serializerKind, loadSink, threads, documents, bytes, measurementNanoseconds, latencyHistogram);
+	}
+
+	private final class Worker implements Runnable
+	{
+		private final int index;
+		@NotNull private final CountDownLatch ready;
+		@NotNull private final CountDownLatch go;
+		@NotNull private final AtomicReference<Exception> failure;
+		@NotNull private final long[] startedAt;
+		private final long warmUpNanoseconds;
+		private final long measurementNanoseconds;
+		@NotNull private final LatencyHistogram latencyHistogram;
+		private long documents;
+		private long bytes;
+
+		@SuppressWarnings("AssignmentToCollectionOrArrayFieldFromParameter")
+		private Worker(final int index, @NotNull final CountDownLatch ready, @NotNull final CountDownLatch go, @NotNull final AtomicReference<Exception> failure, @NotNull final long[] startedAt, final long warmUpNanoseconds, final long measurementNanoseconds)
+		{
+			this.index = index;
+			this.ready = ready;
+			this.go = go;
+			this.failure = failure;
+			this.startedAt = startedAt;
+			this.warmUpNanoseconds = warmUpNanoseconds;
+			this.measurementNanoseconds = measurementNanoseconds;
+			latencyHistogram = new LatencyHistogram();
+			documents = 0L;
+			bytes = 0L;
+		}
+
+		@Override
+		public void run()
+		{
+			final SyntheticGraphGenerator syntheticGraphGenerator = new SyntheticGraphGenerator(configuration, seed, seed + index + 1L);
+			final List<String> headings = new ArrayList<>(configuration.width());
+			final Matcher root = syntheticGraphGenerator.rootMatcher(headings);
+			final AbstractSerializer serializer = serializerKind.newSerializer(root, headings.toArray(new String[headings.size()]));
+			final Serializable[] documentPool = new Serializable[DocumentsPerThread];
+			for (int document = 0; document < DocumentsPerThread; document++)
+			{
+				documentPool[document] = syntheticGraphGenerator.nextDocument();
+			}
+
+			try (final OutputStream outputStream = loadSink.open(directory, format(ENGLISH, "load-%1$s-%2$s.out", serializerKind, index)))
+			{
+				final ByteCountingFilterOutputStream byteCountingFilterOutputStream = new ByteCountingFilterOutputStream(outputStream);
+				ready.countDown();
+				go.await();
+
+				final long measurementStarts = startedAt[0] + warmUpNanoseconds;
+				final long measurementEnds = measurementStarts + measurementNanoseconds;
+				long bytesAtMeasurementStart = -1L;
+				int next = 0;
+				while (true)
+				{
+					final long before = nanoTime();
+					if (before >= measurementEnds)
+					{
+						break;
+					}
+					if (before >= measurementStarts && bytesAtMeasurementStart == -1L)
+					{
+						bytesAtMeasurementStart = byteCountingFilterOutputStream.byteCount();
+					}
+
+					serializer.serialise(documentPool[next], byteCountingFilterOutputStream, UTF_8);
+					final long after = nanoTime();
+					next = (next + 1) % DocumentsPerThread;
+
+					if (before >= measurementStarts)
+					{
+						latencyHistogram.record(after - before);
+						documents++;
+					}
+				}
+				bytes = bytesAtMeasurementStart == -1L ? 0L : byteCountingFilterOutputStream.byteCount() - bytesAtMeasurementStart;
+			}
+			catch (IOException | CouldNotSerialiseException | RuntimeException e)
+			{
+				failure.compareAndSet(null, e);
+				ready.countDown();
+			}
+			catch (final InterruptedException e)
+			{
+				failure.compareAndSet(null, e);
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,153 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.load;
+
+import com.stormmq.serializers.benchmarks.SerializerKind;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.stormmq.serializers.benchmarks.load.SyntheticGraphConfiguration.defaultSyntheticGraphConfiguration;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ENGLISH;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+// eg --format Xml --threads 8 --warmUp 10 --duration 60 --sink File --directory /var/tmp --rows 50 --width 12 --depth 4 --strings 4:256 --distribution Exponential --escapes 0.05 --nonAscii 0.1 --mix Integer=2,String=4,Map=1 --report xml.hgrm
+public final class LoadHarness
+{
+	private LoadHarness()
+	{
+	}
+
+	@SuppressWarnings("UseOfSystemOutOrSystemErr")
+	public static void main(@NotNull final String... arguments) throws InterruptedException, IOException
+	{
+		final Map<String, String> options = parseOptions(arguments);
+
+		final SerializerKind serializerKind = SerializerKind.valueOf(option(options, "format", "Json"));
+		final int threads = Integer.parseInt(option(options, "threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+		final long warmUpSeconds = Long.parseLong(option(options, "warmUp", "5"));
+		final long durationSeconds = Long.parseLong(option(options, "duration", "30"));
+		final LoadSink loadSink = LoadSink.valueOf(option(options, "sink", "Null"));
+		final Path directory = Paths.get(option(options, "directory", System.getProperty("java.io.tmpdir")));
+		final long seed = Long.parseLong(option(options, "seed", "1"));
+		final SyntheticGraphConfiguration configuration = configuration(options);
+		@Nullable final String report = options.remove("report");
+		if (!options.isEmpty())
+		{
+			throw new IllegalArgumentException(format(ENGLISH, "Unknown options %1$s", options.keySet()));
+		}
+
+		final LoadDriver loadDriver = new LoadDriver(serializerKind, configuration, loadSink, directory, threads, seed);
+		final LoadResult loadResult = loadDriver.run(SECONDS.toNanos(warmUpSeconds), SECONDS.toNanos(durationSeconds));
+		final LoadReport loadReport = new LoadReport(configuration, loadResult);
+
+		if (report == null)
+		{
+			loadReport.write(System.out);
+		}
+		else
+		{
+			try (final PrintStream printStream = new PrintStream(report, UTF_8.name()))
+			{
+				loadReport.write(printStream);
+			}
+		}
+	}
+
+	@NotNull
+	private static SyntheticGraphConfiguration configuration(@NotNull final Map<String, String> options)
+	{
+		final SyntheticGraphConfiguration defaults = defaultSyntheticGraphConfiguration();
+		if (!options.containsKey("rows") && !options.containsKey("width") && !options.containsKey("depth") && !options.containsKey("strings") && !options.containsKey("distribution") && !options.containsKey("escapes") && !options.containsKey("nonAscii") && !options.containsKey("mix"))
+		{
+			return defaults;
+		}
+
+		final int rowsPerDocument = Integer.parseInt(option(options, "rows", Integer.toString(defaults.rowsPerDocument())));
+		final int width = Integer.parseInt(option(options, "width", Integer.toString(defaults.width())));
+		final int depth = Integer.parseInt(option(options, "depth", Integer.toString(defaults.depth())));
+		final String[] strings = option(options, "strings", "4:64").split(":", 2);
+		if (strings.length != 2)
+		{
+			throw new IllegalArgumentException("strings must be minimum:maximum");
+		}
+		final StringLengthDistribution stringLengthDistribution = StringLengthDistribution.valueOf(option(options, "distribution", "Exponential"));
+		final double escapeDensity = Double.parseDouble(option(options, "escapes", Double.toString(defaults.escapeDensity())));
+		final double nonAsciiDensity = Double.parseDouble(option(options, "nonAscii", Double.toString(defaults.nonAsciiDensity())));
+		final Map<PropertyKind, Integer> propertyKindWeights = propertyKindWeights(option(options, "mix", "Integer=2,Long=1,BigDecimal=1,String=4,Boolean=1,Value=1,List=1,Map=1"));
+		return new SyntheticGraphConfiguration(rowsPerDocument, width, depth, Integer.parseInt(strings[0]), Integer.parseInt(strings[1]), stringLengthDistribution, escapeDensity, nonAsciiDensity, propertyKindWeights);
+	}
+
+	@NotNull
+	private static Map<PropertyKind, Integer> propertyKindWeights(@NotNull final String mix)
+	{
+		final Map<PropertyKind, Integer> propertyKindWeights = new EnumMap<>(PropertyKind.class);
+		for (final String entry : mix.split(","))
+		{
+			final String[] keyValue = entry.split("=", 2);
+			if (keyValue.length != 2)
+			{
+				throw new IllegalArgumentException(format(ENGLISH, "mix entry '%1$s' is not Kind=weight", entry));
+			}
+			propertyKindWeights.put(PropertyKind.valueOf(keyValue[0].trim()), Integer.parseInt(keyValue[1].trim()));
+		}
+		return propertyKindWeights;
+	}
+
+	@NotNull
+	private static Map<String, String> parseOptions(@NotNull final String... arguments)
+	{
+		if (arguments.length % 2 != 0)
+		{
+			throw new IllegalArgumentException("Arguments must be pairs of --option value");
+		}
+		final Map<String, String> options = new HashMap<>(arguments.length);
+		for (int index = 0; index < arguments.length; index += 2)
+		{
+			final String name = arguments[index];
+			if (!name.startsWith("--"))
+			{
+				throw new IllegalArgumentException(format(ENGLISH, "Expected an option starting -- but got '%1$s'", name));
+			}
+			options.put(name.substring(2), arguments[index + 1]);
+		}
+		return options;
+	}
+
+	@NotNull
+	private static String option(@NotNull final Map<String, String> options, @NonNls @NotNull final String name, @NotNull final String defaultValue)
+	{
+		@Nullable final String value = options.remove(name);
+		return value == null ? defaultValue : value;
+	}
+}
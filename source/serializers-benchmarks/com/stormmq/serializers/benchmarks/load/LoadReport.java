@@ -0,0 +1,121 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.load;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.PrintStream;
+
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+public final class LoadReport
+{
+	private static final double NanosecondsPerMicrosecond = 1_000.0;
+	private static final double BytesPerMebibyte = 1024.0 * 1024.0;
+	private static final double[] SummaryPercentiles = {50.0, 90.0, 99.0, 99.9, 99.99};
+	private static final int PercentileTicksPerHalfDistance = 5;
+
+	@NotNull private final SyntheticGraphConfiguration configuration;
+	@NotNull private final LoadResult loadResult;
+
+	public LoadReport(@NotNull final SyntheticGraphConfiguration configuration, @NotNull final LoadResult loadResult)
+	{
+		this.configuration = configuration;
+		this.loadResult = loadResult;
+	}
+
+	public void write(@NotNull final PrintStream printStream)
+	{
+		final LatencyHistogram latencyHistogram = loadResult.latencyHistogram();
+		final long documents = loadResult.documents();
+
+		printStream.println(format(ENGLISH, "Format %1$s, %2$s threads, %3$s sink", loadResult.serializerKind(), loadResult.threads(), loadResult.loadSink()));
+		printStream.println(format(ENGLISH, "Graph: %1$s", configuration));
+		printStream.println(format(ENGLISH, "Documents: %1$d in %2$.1f s; %3$.1f documents/s; %4$.2f MiB/s; %5$.0f bytes/document", documents, loadResult.elapsedNanoseconds() / 1e9, loadResult.documentsPerSecond(), loadResult.bytesPerSecond() / BytesPerMebibyte, documents == 0L ? 0.0 : (double) loadResult.bytes() / documents));
+		printStream.println();
+
+		printStream.println("Latency (microseconds)");
+		printStream.println(format(ENGLISH, "%1$12s %2$12.1f", "min", microseconds(latencyHistogram.minimum())));
+		printStream.println(format(ENGLISH, "%1$12s %2$12.1f", "mean", latencyHistogram.mean() / NanosecondsPerMicrosecond));
+		for (final double percentile : SummaryPercentiles)
+		{
+			printStream.println(format(ENGLISH, "%1$12s %2$12.1f", "p" + percentile, microseconds(latencyHistogram.valueAtPercentile(percentile))));
+		}
+		printStream.println(format(ENGLISH, "%1$12s %2$12.1f", "max", microseconds(latencyHistogram.maximum())));
+		printStream.println();
+
+		writePercentileDistribution(printStream, latencyHistogram);
+	}
+
+	// The same layout as HdrHistogram's outputPercentileDistribution(), so existing plotting tools can read it
+	private static void writePercentileDistribution(@NotNull final PrintStream printStream, @NotNull final LatencyHistogram latencyHistogram)
+	{
+		final long totalCount = latencyHistogram.totalCount();
+		printStream.println(format(ENGLISH, "%1$12s %2$14s %3$10s %4$14s", "Value", "Percentile", "TotalCount", "1/(1-Percentile)"));
+		printStream.println();
+		if (totalCount == 0L)
+		{
+			return;
+		}
+
+		double remaining = 1.0;
+		double percentile = 0.0;
+		while (true)
+		{
+			final double step = remaining / 2.0 / PercentileTicksPerHalfDistance;
+			for (int tick = 0; tick < PercentileTicksPerHalfDistance; tick++)
+			{
+				writePercentileLine(printStream, latencyHistogram, percentile, totalCount);
+				percentile += step;
+			}
+			remaining /= 2.0;
+			if (remaining * totalCount < 1.0)
+			{
+				break;
+			}
+		}
+		writePercentileLine(printStream, latencyHistogram, 1.0, totalCount);
+		printStream.println(format(ENGLISH, "#[Mean    = %1$12.3f]", latencyHistogram.mean() / NanosecondsPerMicrosecond));
+		printStream.println(format(ENGLISH, "#[Max     = %1$12.3f, Total count    = %2$12d]", microseconds(latencyHistogram.maximum()), totalCount));
+	}
+
+	private static void writePercentileLine(@NotNull final PrintStream printStream, @NotNull final LatencyHistogram latencyHistogram, final double percentile, final long totalCount)
+	{
+		final long value = latencyHistogram.valueAtPercentile(percentile * 100.0);
+		final long countAtPercentile = Math.max(1L, (long) Math.ceil(percentile * totalCount));
+		if (percentile < 1.0)
+		{
+			printStream.println(format(ENGLISH, "%1$12.3f %2$2.12f %3$10d %4$14.2f", microseconds(value), percentile, countAtPercentile, 1.0 / (1.0 - percentile)));
+		}
+		else
+		{
+			printStream.println(format(ENGLISH, "%1$12.3f %2$2.12f %3$10d", microseconds(value), percentile, countAtPercentile));
+		}
+	}
+
+	private static double microseconds(final long nanoseconds)
+	{
+		return nanoseconds / NanosecondsPerMicrosecond;
+	}
+}
@@ -0,0 +1,96 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.load;
+
+import com.stormmq.serializers.benchmarks.SerializerKind;
+import org.jetbrains.annotations.NotNull;
+
+public final class LoadResult
+{
+	@NotNull private final SerializerKind serializerKind;
+	@NotNull private final LoadSink loadSink;
+	private final int threads;
+	private final long documents;
+	private final long bytes;
+	private final long elapsedNanoseconds;
+	@NotNull private final LatencyHistogram latencyHistogram;
+
+	public LoadResult(@NotNull final SerializerKind serializerKind, @NotNull final LoadSink loadSink, final int threads, final long documents, final long bytes, final long elapsedNanoseconds, @NotNull final LatencyHistogram latencyHistogram)
+	{
+		this.serializerKind = serializerKind;
+		this.loadSink = loadSink;
+		this.threads = threads;
+		this.documents = documents;
+		this.bytes = bytes;
+		this.elapsedNanoseconds = elapsedNanoseconds;
+		this.latencyHistogram = latencyHistogram;
+	}
+
+	@NotNull
+	public SerializerKind serializerKind()
+	{
+		return serializerKind;
+	}
+
+	@NotNull
+	public LoadSink loadSink()
+	{
+		return loadSink;
+	}
+
+	public int threads()
+	{
+		return threads;
+	}
+
+	public long documents()
+	{
+		return documents;
+	}
+
+	public long bytes()
+	{
+		return bytes;
+	}
+
+	public long elapsedNanoseconds()
+	{
+		return elapsedNanoseconds;
+	}
+
+	@NotNull
+	public LatencyHistogram latencyHistogram()
+	{
+		return latencyHistogram;
+	}
+
+	public double documentsPerSecond()
+	{
+		return documents * 1e9 / elapsedNanoseconds;
+	}
+
+	public double bytesPerSecond()
+	{
+		return bytes * 1e9 / elapsedNanoseconds;
+	}
+}
@@ -0,0 +1,63 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.load;
+
+import com.stormmq.serializers.ByteCountingOutputStream;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+public enum LoadSink
+{
+	Null
+	{
+		@NotNull
+		@Override
+		public OutputStream open(@NotNull final Path directory, @NonNls @NotNull final String fileName)
+		{
+			return new ByteCountingOutputStream();
+		}
+	},
+
+	// One file per thread; every document is flushed through to the file system when the serializer finishes
+	File
+	{
+		@NotNull
+		@Override
+		public OutputStream open(@NotNull final Path directory, @NonNls @NotNull final String fileName) throws IOException
+		{
+			return new BufferedOutputStream(new FileOutputStream(directory.resolve(fileName).toFile()), BufferSize);
+		}
+	},
+	;
+
+	private static final int BufferSize = 64 * 1024;
+
+	@NotNull
+	public abstract OutputStream open(@NotNull final Path directory, @NonNls @NotNull final String fileName) throws IOException;
+}
@@ -0,0 +1,57 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.load;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.SplittableRandom;
+
+import static java.lang.Math.log;
+
+public enum StringLengthDistribution
+{
+	Uniform
+	{
+		@Override
+		public int nextLength(@NotNull final SplittableRandom random, final int minimumLength, final int maximumLength)
+		{
+			return minimumLength + random.nextInt(maximumLength - minimumLength + 1);
+		}
+	},
+
+	// Most strings short, with a long tail up to the maximum; the mean is a quarter of the way along the range
+	Exponential
+	{
+		@Override
+		public int nextLength(@NotNull final SplittableRandom random, final int minimumLength, final int maximumLength)
+		{
+			final int range = maximumLength - minimumLength;
+			final double mean = range / 4.0;
+			final long length = (long) (-mean * log(1.0 - random.nextDouble()));
+			return minimumLength + (int) (length > range ? range : length);
+		}
+	},
+	;
+
+	public abstract int nextLength(@NotNull final SplittableRandom random, final int minimumLength, final int maximumLength);
+}
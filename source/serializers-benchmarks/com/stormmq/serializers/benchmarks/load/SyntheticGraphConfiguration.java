@@ -0,0 +1,178 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.load;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static com.stormmq.serializers.benchmarks.load.PropertyKind.*;
+import static com.stormmq.serializers.benchmarks.load.StringLengthDistribution.Exponential;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+public final class SyntheticGraphConfiguration
+{
+	@NotNull
+	public static SyntheticGraphConfiguration defaultSyntheticGraphConfiguration()
+	{
+		final Map<PropertyKind, Integer> propertyKindWeights = new EnumMap<>(PropertyKind.class);
+		propertyKindWeights.put(Integer, 2);
+		propertyKindWeights.put(Long, 1);
+		propertyKindWeights.put(BigDecimal, 1);
+		propertyKindWeights.put(String, 4);
+		propertyKindWeights.put(Boolean, 1);
+		propertyKindWeights.put(Value, 1);
+		propertyKindWeights.put(List, 1);
+		propertyKindWeights.put(Map, 1);
+		return new SyntheticGraphConfiguration(10, 8, 3, 4, 64, Exponential, 0.02, 0.05, propertyKindWeights);
+	}
+
+	private final int rowsPerDocument;
+	private final int width;
+	private final int depth;
+	private final int minimumStringLength;
+	private final int maximumStringLength;
+	@NotNull private final StringLengthDistribution stringLengthDistribution;
+	private final double escapeDensity;
+	private final double nonAsciiDensity;
+	@NotNull private final PropertyKind[] propertyKinds;
+	@NotNull private final int[] cumulativeWeights;
+	private final int totalWeight;
+	private final int totalWeightWithoutMaps;
+
+	public SyntheticGraphConfiguration(final int rowsPerDocument, final int width, final int depth, final int minimumStringLength, final int maximumStringLength, @NotNull final StringLengthDistribution stringLengthDistribution, final double escapeDensity, final double nonAsciiDensity, @NotNull final Map<PropertyKind, Integer> propertyKindWeights)
+	{
+		if (rowsPerDocument < 1)
+		{
+			throw new IllegalArgumentException("rowsPerDocument must be positive");
+		}
+		if (width < 1)
+		{
+			throw new IllegalArgumentException("width must be positive");
+		}
+		if (depth < 1)
+		{
+			throw new IllegalArgumentException("depth must be positive");
+		}
+		if (minimumStringLength < 0 || maximumStringLength < minimumStringLength)
+		{
+			throw new IllegalArgumentException(format(ENGLISH, "string lengths %1$s to %2$s are not a valid range", minimumStringLength, maximumStringLength));
+		}
+		if (escapeDensity < 0.0 || nonAsciiDensity < 0.0 || escapeDensity + nonAsciiDensity > 1.0)
+		{
+			throw new IllegalArgumentException("escapeDensity and nonAsciiDensity must be non-negative and together no more than 1");
+		}
+
+		this.rowsPerDocument = rowsPerDocument;
+		this.width = width;
+		this.depth = depth;
+		this.minimumStringLength = minimumStringLength;
+		this.maximumStringLength = maximumStringLength;
+		this.stringLengthDistribution = stringLengthDistribution;
+		this.escapeDensity = escapeDensity;
+		this.nonAsciiDensity = nonAsciiDensity;
+
+		// Map is kept last so that nested maps can be excluded at the deepest level by ignoring its weight
+		final PropertyKind[] values = PropertyKind.values();
+		propertyKinds = values;
+		cumulativeWeights = new int[values.length];
+		int cumulativeWeight = 0;
+		int cumulativeWeightWithoutMaps = 0;
+		for (int index = 0; index < values.length; index++)
+		{
+			final PropertyKind propertyKind = values[index];
+			final Integer weight = propertyKindWeights.get(propertyKind);
+			final int value = weight == null ? 0 : weight;
+			if (value < 0)
+			{
+				throw new IllegalArgumentException(format(ENGLISH, "weight for %1$s must not be negative", propertyKind));
+			}
+			cumulativeWeight += value;
+			cumulativeWeights[index] = cumulativeWeight;
+			if (propertyKind != Map)
+			{
+				cumulativeWeightWithoutMaps = cumulativeWeight;
+			}
+		}
+		if (cumulativeWeightWithoutMaps == 0)
+		{
+			throw new IllegalArgumentException("at least one property kind other than Map must have a positive weight");
+		}
+		totalWeight = cumulativeWeight;
+		totalWeightWithoutMaps = cumulativeWeightWithoutMaps;
+	}
+
+	public int rowsPerDocument()
+	{
+		return rowsPerDocument;
+	}
+
+	public int width()
+	{
+		return width;
+	}
+
+	public int depth()
+	{
+		return depth;
+	}
+
+	public double escapeDensity()
+	{
+		return escapeDensity;
+	}
+
+	public double nonAsciiDensity()
+	{
+		return nonAsciiDensity;
+	}
+
+	public int nextStringLength(@NotNull final SplittableRandom random)
+	{
+		return stringLengthDistribution.nextLength(random, minimumStringLength, maximumStringLength);
+	}
+
+	@NotNull
+	public PropertyKind nextPropertyKind(@NotNull final SplittableRandom random, final boolean mayNest)
+	{
+		final int choice = random.nextInt(mayNest ? totalWeight : totalWeightWithoutMaps);
+		for (int index = 0; index < cumulativeWeights.length; index++)
+		{
+			if (choice < cumulativeWeights[index])
+			{
+				return propertyKinds[index];
+			}
+		}
+		throw new IllegalStateException("weights are inconsistent");
+	}
+
+	@Override
+	@NotNull
+	public String toString()
+	{
+		return format(ENGLISH, "%1$s rows of width %2$s and depth %3$s; strings %4$s to %5$s (%6$s); escape density %7$s; non-ASCII density %8$s", rowsPerDocument, width, depth, minimumStringLength, maximumStringLength, stringLengthDistribution, escapeDensity, nonAsciiDensity);
+	}
+}
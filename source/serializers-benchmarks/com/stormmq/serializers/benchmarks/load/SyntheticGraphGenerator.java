@@ -0,0 +1,164 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.load;
+
+import com.stormmq.serializers.CouldNotWriteValueException;
+import com.stormmq.serializers.MapSerializable;
+import com.stormmq.serializers.Serializable;
+import com.stormmq.serializers.separatedValues.matchers.Matcher;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public final class SyntheticGraphGenerator
+{
+	private static final char[] EscapedCharacters = {'"', '\\', '<', '>', '&', '\'', '\n', '\r', '\t'};
+	private static final char[] NonAsciiCharacters = {'é', 'ü', 'ñ', 'ß', 'Ж', 'λ', 'ק', '日', '本', '語', '€'};
+	private static final char[] AsciiCharacters = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 ".toCharArray();
+	private static final int MaximumListSize = 4;
+
+	@NotNull private final SyntheticGraphConfiguration configuration;
+	@NotNull private final SyntheticSchema syntheticSchema;
+	@NotNull private final SplittableRandom random;
+	@NotNull private final StringBuilder stringBuilder;
+
+	// The schema depends only on schemaSeed, so generators with different valueSeeds produce documents of the same shape
+	public SyntheticGraphGenerator(@NotNull final SyntheticGraphConfiguration configuration, final long schemaSeed, final long valueSeed)
+	{
+		this.configuration = configuration;
+		syntheticSchema = SyntheticSchema.generate(configuration, new SplittableRandom(schemaSeed));
+		random = new SplittableRandom(valueSeed);
+		stringBuilder = new StringBuilder(64);
+	}
+
+	@NotNull
+	public Matcher rootMatcher(@NotNull final List<String> headings)
+	{
+		return syntheticSchema.rootMatcher(headings);
+	}
+
+	@NotNull
+	public Serializable nextDocument()
+	{
+		final MapSerializable[] rows = new MapSerializable[configuration.rowsPerDocument()];
+		for (int index = 0; index < rows.length; index++)
+		{
+			rows[index] = nextMap(syntheticSchema);
+		}
+		return serializer ->
+		{
+			try
+			{
+				serializer.writeValue(rows);
+			}
+			catch (final CouldNotWriteValueException e)
+			{
+				throw new IllegalStateException("Could not write synthetic document", e);
+			}
+		};
+	}
+
+	@NotNull
+	private SyntheticMap nextMap(@NotNull final SyntheticSchema syntheticSchema)
+	{
+		final int width = syntheticSchema.width();
+		final Object[] values = new Object[width];
+		for (int index = 0; index < width; index++)
+		{
+			values[index] = nextValue(syntheticSchema, index);
+		}
+		return new SyntheticMap(syntheticSchema, values);
+	}
+
+	@SuppressWarnings("ConstantConditions")
+	@NotNull
+	private Object nextValue(@NotNull final SyntheticSchema syntheticSchema, final int index)
+	{
+		switch (syntheticSchema.propertyKind(index))
+		{
+			case Integer:
+				return random.nextInt();
+
+			case Long:
+				return random.nextLong();
+
+			case BigDecimal:
+				return new SyntheticValue(BigDecimal.valueOf(random.nextLong(100_000_000L), 2));
+
+			case String:
+				return nextString();
+
+			case Boolean:
+				return random.nextBoolean();
+
+			case Value:
+				return new SyntheticValue(nextString());
+
+			case List:
+				final int size = random.nextInt(MaximumListSize + 1);
+				final List<String> list = new ArrayList<>(size);
+				for (int element = 0; element < size; element++)
+				{
+					list.add(nextString());
+				}
+				return list;
+
+			case Map:
+				return nextMap(syntheticSchema.child(index));
+
+			default:
+				throw new IllegalStateException("Unknown property kind");
+		}
+	}
+
+	@NotNull
+	private String nextString()
+	{
+		final int length = configuration.nextStringLength(random);
+		final double escapeDensity = configuration.escapeDensity();
+		final double nonAsciiOrEscapeDensity = escapeDensity + configuration.nonAsciiDensity();
+		stringBuilder.setLength(0);
+		for (int index = 0; index < length; index++)
+		{
+			final double choice = random.nextDouble();
+			final char[] characters;
+			if (choice < escapeDensity)
+			{
+				characters = EscapedCharacters;
+			}
+			else if (choice < nonAsciiOrEscapeDensity)
+			{
+				characters = NonAsciiCharacters;
+			}
+			else
+			{
+				characters = AsciiCharacters;
+			}
+			stringBuilder.append(characters[random.nextInt(characters.length)]);
+		}
+		return stringBuilder.toString();
+	}
+}
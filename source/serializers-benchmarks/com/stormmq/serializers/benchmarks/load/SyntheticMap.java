@@ -0,0 +1,93 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.load;
+
+import com.stormmq.serializers.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+public final class SyntheticMap implements MapSerializable
+{
+	@NotNull private final SyntheticSchema syntheticSchema;
+	@NotNull private final Object[] values;
+
+	@SuppressWarnings("AssignmentToCollectionOrArrayFieldFromParameter")
+	public SyntheticMap(@NotNull final SyntheticSchema syntheticSchema, @NotNull final Object[] values)
+	{
+		this.syntheticSchema = syntheticSchema;
+		this.values = values;
+	}
+
+	@Override
+	public void serialiseMap(@NotNull final MapSerializer mapSerializer) throws CouldNotSerializeMapException
+	{
+		final int width = values.length;
+		try
+		{
+			for (int index = 0; index < width; index++)
+			{
+				final String name = syntheticSchema.name(index);
+				final Object value = values[index];
+				switch (syntheticSchema.propertyKind(index))
+				{
+					case Integer:
+						mapSerializer.writeProperty(name, (int) value);
+						break;
+
+					case Long:
+						mapSerializer.writeProperty(name, (long) value);
+						break;
+
+					case String:
+						mapSerializer.writeProperty(name, (String) value);
+						break;
+
+					case Boolean:
+						mapSerializer.writeProperty(name, (boolean) value);
+						break;
+
+					case BigDecimal:
+					case Value:
+						mapSerializer.writeProperty(name, (ValueSerializable) value);
+						break;
+
+					case List:
+						mapSerializer.writeProperty(name, (List<?>) value);
+						break;
+
+					case Map:
+						mapSerializer.writeProperty(name, (MapSerializable) value);
+						break;
+
+					default:
+						throw new IllegalStateException("Unknown property kind");
+				}
+			}
+		}
+		catch (final CouldNotWritePropertyException e)
+		{
+			throw new CouldNotSerializeMapException(this, e);
+		}
+	}
+}
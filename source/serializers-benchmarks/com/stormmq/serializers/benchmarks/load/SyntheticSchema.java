@@ -0,0 +1,130 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.benchmarks.load;
+
+import com.stormmq.serializers.separatedValues.matchers.Matcher;
+import com.stormmq.serializers.separatedValues.matchers.RecurseMatcher;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static com.stormmq.serializers.benchmarks.load.PropertyKind.Map;
+import static com.stormmq.serializers.separatedValues.matchers.LeafMatcher.leaf;
+import static com.stormmq.serializers.separatedValues.matchers.RecurseMatcher.recurse;
+
+// The property names and kinds of one level of a synthetic graph; every row of a document shares the same schema so it can also be written as separated values
+public final class SyntheticSchema
+{
+	private static final char ListSeparator = '|';
+
+	@NotNull
+	public static SyntheticSchema generate(@NotNull final SyntheticGraphConfiguration configuration, @NotNull final SplittableRandom random)
+	{
+		return generate(configuration, random, 1);
+	}
+
+	@NotNull
+	private static SyntheticSchema generate(@NotNull final SyntheticGraphConfiguration configuration, @NotNull final SplittableRandom random, final int level)
+	{
+		final int width = configuration.width();
+		final String[] names = new String[width];
+		final PropertyKind[] propertyKinds = new PropertyKind[width];
+		final SyntheticSchema[] children = new SyntheticSchema[width];
+		final boolean mayNest = level < configuration.depth();
+		for (int index = 0; index < width; index++)
+		{
+			final PropertyKind propertyKind = configuration.nextPropertyKind(random, mayNest);
+			names[index] = "field" + index;
+			propertyKinds[index] = propertyKind;
+			children[index] = propertyKind == Map ? generate(configuration, random, level + 1) : null;
+		}
+		return new SyntheticSchema(names, propertyKinds, children);
+	}
+
+	@NonNls @NotNull private final String[] names;
+	@NotNull private final PropertyKind[] propertyKinds;
+	@NotNull private final SyntheticSchema[] children;
+
+	private SyntheticSchema(@NonNls @NotNull final String[] names, @NotNull final PropertyKind[] propertyKinds, @NotNull final SyntheticSchema[] children)
+	{
+		this.names = names;
+		this.propertyKinds = propertyKinds;
+		this.children = children;
+	}
+
+	public int width()
+	{
+		return names.length;
+	}
+
+	@NonNls
+	@NotNull
+	public String name(final int index)
+	{
+		return names[index];
+	}
+
+	@NotNull
+	public PropertyKind propertyKind(final int index)
+	{
+		return propertyKinds[index];
+	}
+
+	@Nullable
+	public SyntheticSchema child(final int index)
+	{
+		return children[index];
+	}
+
+	// Adds a dotted heading for every leaf, in field index order
+	@NotNull
+	public Matcher rootMatcher(@NotNull final List<String> headings)
+	{
+		return RecurseMatcher.rootMatcher(matchers("", headings));
+	}
+
+	@NotNull
+	private Matcher[] matchers(@NotNull final String prefix, @NotNull final List<String> headings)
+	{
+		final int width = names.length;
+		final Matcher[] matchers = new Matcher[width];
+		for (int index = 0; index < width; index++)
+		{
+			final String name = names[index];
+			@Nullable final SyntheticSchema child = children[index];
+			if (child == null)
+			{
+				matchers[index] = leaf(name, headings.size(), ListSeparator);
+				headings.add(prefix + name);
+			}
+			else
+			{
+				matchers[index] = recurse(name, child.matchers(prefix + name + '.', headings));
+			}
+		}
+		return matchers;
+	}
+}
@@ -0,0 +1,225 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.jfr;
+
+import com.stormmq.serializers.ByteCountingFilterOutputStream;
+import com.stormmq.serializers.SerializerInstrumentation;
+import com.stormmq.serializers.ValueSerializable;
+import com.stormmq.serializers.ValueType;
+import jdk.jfr.EventType;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+import static com.stormmq.serializers.ValueType.MapValue;
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.fill;
+
+// Events are only allocated when their type is enabled in a running recording; otherwise each hook is a field check
+public final class FlightRecorderSerializerInstrumentation implements SerializerInstrumentation
+{
+	@NotNull private static final EventType SerializationEventType = EventType.getEventType(SerializationEvent.class);
+	@NotNull private static final EventType SlowMapSerializationEventType = EventType.getEventType(SlowMapSerializationEvent.class);
+	private static final int InitialMapDepth = 16;
+
+	@NonNls @NotNull private final String format;
+	@Nullable private ByteCountingFilterOutputStream byteCountingFilterOutputStream;
+	@Nullable private SerializationEvent serializationEvent;
+	@Nullable private String rootType;
+	private long elementCount;
+	private boolean recordSlowMaps;
+	@NotNull private SlowMapSerializationEvent[] slowMapSerializationEvents;
+	@NotNull private long[] slowMapElementCounts;
+	private int mapDepth;
+
+	public FlightRecorderSerializerInstrumentation(@NonNls @NotNull final String format)
+	{
+		this.format = format;
+		byteCountingFilterOutputStream = null;
+		serializationEvent = null;
+		rootType = null;
+		elementCount = 0L;
+		recordSlowMaps = false;
+		slowMapSerializationEvents = new SlowMapSerializationEvent[InitialMapDepth];
+		slowMapElementCounts = new long[InitialMapDepth];
+		mapDepth = 0;
+	}
+
+	@NotNull
+	@Override
+	public OutputStream instrument(@NotNull final OutputStream outputStream)
+	{
+		if (!SerializationEventType.isEnabled())
+		{
+			byteCountingFilterOutputStream = null;
+			return outputStream;
+		}
+		byteCountingFilterOutputStream = new ByteCountingFilterOutputStream(outputStream);
+		return byteCountingFilterOutputStream;
+	}
+
+	@NotNull
+	@Override
+	public Writer instrument(@NotNull final Writer writer)
+	{
+		return writer;
+	}
+
+	@Override
+	public void documentStarted()
+	{
+		rootType = null;
+		elementCount = 0L;
+		mapDepth = 0;
+		fill(slowMapSerializationEvents, null);
+		recordSlowMaps = SlowMapSerializationEventType.isEnabled();
+
+		if (SerializationEventType.isEnabled())
+		{
+			final SerializationEvent serializationEvent = new SerializationEvent();
+			serializationEvent.begin();
+			this.serializationEvent = serializationEvent;
+		}
+		else
+		{
+			serializationEvent = null;
+		}
+	}
+
+	@Override
+	public void documentFinished()
+	{
+		commit(true);
+	}
+
+	@Override
+	public void documentFailed(@NotNull final Exception cause)
+	{
+		commit(false);
+	}
+
+	private void commit(final boolean succeeded)
+	{
+		final SerializationEvent serializationEvent = this.serializationEvent;
+		if (serializationEvent != null)
+		{
+			serializationEvent.end();
+			if (serializationEvent.shouldCommit())
+			{
+				serializationEvent.format = format;
+				serializationEvent.rootType = rootType == null ? "" : rootType;
+				serializationEvent.bytesWritten = byteCountingFilterOutputStream == null ? 0L : byteCountingFilterOutputStream.byteCount();
+				serializationEvent.elementCount = elementCount;
+				serializationEvent.succeeded = succeeded;
+				serializationEvent.commit();
+			}
+			this.serializationEvent = null;
+		}
+		byteCountingFilterOutputStream = null;
+		fill(slowMapSerializationEvents, null);
+		mapDepth = 0;
+	}
+
+	@Override
+	public void value(@NotNull final ValueType valueType)
+	{
+		elementCount++;
+		if (rootType == null)
+		{
+			rootType = valueType.name();
+		}
+	}
+
+	@Override
+	public void enteredNesting(@NotNull final ValueType valueType, @NotNull final Object value)
+	{
+		elementCount++;
+		if (rootType == null)
+		{
+			rootType = value.getClass().getName();
+		}
+
+		if (valueType != MapValue)
+		{
+			return;
+		}
+
+		if (mapDepth == slowMapSerializationEvents.length)
+		{
+			slowMapSerializationEvents = copyOf(slowMapSerializationEvents, mapDepth * 2);
+			slowMapElementCounts = copyOf(slowMapElementCounts, mapDepth * 2);
+		}
+		if (recordSlowMaps)
+		{
+			final SlowMapSerializationEvent slowMapSerializationEvent = new SlowMapSerializationEvent();
+			slowMapSerializationEvent.begin();
+			slowMapSerializationEvents[mapDepth] = slowMapSerializationEvent;
+			slowMapElementCounts[mapDepth] = elementCount;
+		}
+		mapDepth++;
+	}
+
+	@Override
+	public void leftNesting(@NotNull final ValueType valueType, @NotNull final Object value)
+	{
+		if (valueType != MapValue || mapDepth == 0)
+		{
+			return;
+		}
+
+		mapDepth--;
+		final SlowMapSerializationEvent slowMapSerializationEvent = slowMapSerializationEvents[mapDepth];
+		if (slowMapSerializationEvent == null)
+		{
+			return;
+		}
+		slowMapSerializationEvents[mapDepth] = null;
+		slowMapSerializationEvent.end();
+		if (slowMapSerializationEvent.shouldCommit())
+		{
+			slowMapSerializationEvent.format = format;
+			slowMapSerializationEvent.mapType = value.getClass().getName();
+			slowMapSerializationEvent.depth = mapDepth;
+			slowMapSerializationEvent.elementCount = elementCount - slowMapElementCounts[mapDepth];
+			slowMapSerializationEvent.commit();
+		}
+	}
+
+	@Override
+	public void enteredValue(@NotNull final ValueSerializable value)
+	{
+	}
+
+	@Override
+	public void leftValue(@NotNull final ValueSerializable value)
+	{
+	}
+
+	@Override
+	public void stringEscaped(final int escapes)
+	{
+	}
+}
@@ -22,6 +22,9 @@
 
 package com.stormmq.serializers.json;
 
+// No longer used: JsonSerializer keeps whether a property follows another in a local for each nested map or array, rather than pushing one of these per level
+// Kept so that code built against earlier releases still links
+@Deprecated
 public final class JsonNodeState
 {
 	private boolean subsequentProperty;
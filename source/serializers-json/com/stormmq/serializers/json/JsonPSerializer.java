@@ -26,7 +26,7 @@ import org.jetbrains.annotations.NotNull;
 import com.stormmq.serializers.CouldNotWriteDataException;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.Writer;
 import java.nio.charset.Charset;
 
 public final class JsonPSerializer extends JsonSerializer
@@ -47,13 +47,13 @@ public final class JsonPSerializer extends JsonSerializer
 	}
 
 	@Override
-	public void start(@NotNull final OutputStream outputStream, @NotNull final Charset charset) throws CouldNotWriteDataException
+	public void start(@NotNull final Writer writer, @NotNull final Charset charset) throws CouldNotWriteDataException
 	{
-		super.start(outputStream, charset);
+		super.start(writer, charset);
 		try
 		{
-			writer.write(jsonPPrefix);
-			writer.write(OpenBrace);
+			this.writer.write(jsonPPrefix);
+			this.writer.write(OpenBrace);
 		}
 		catch (final IOException e)
 		{
@@ -61,7 +61,7 @@ public final class JsonPSerializer extends JsonSerializer
 		}
 	}
 
-	@SuppressWarnings("ThrowFromFinallyBlock")
+	// As for XML, the document is only finished once the padding closes
 	@Override
 	public void finish() throws CouldNotWriteDataException
 	{
@@ -73,9 +73,6 @@ public final class JsonPSerializer extends JsonSerializer
 		{
 			throw new CouldNotWriteDataException(e);
 		}
-		finally
-		{
-			super.finish();
-		}
+		super.finish();
 	}
 }
@@ -0,0 +1,56 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.json;
+
+import com.stormmq.serializers.CouldNotWriteDataException;
+import com.stormmq.serializers.shapes.PropertyShapeEncoder;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.CharArrayWriter;
+
+// Encodes "name": for the first property of an object and ,"name": for every later one
+public final class JsonPropertyNameEncoder implements PropertyShapeEncoder<char[]>
+{
+	@NotNull public static final JsonPropertyNameEncoder JsonPropertyNameEncoderInstance = new JsonPropertyNameEncoder();
+
+	private JsonPropertyNameEncoder()
+	{
+	}
+
+	@NotNull
+	@Override
+	public char[] encode(final int index, @NonNls @NotNull final String name) throws CouldNotWriteDataException
+	{
+		final CharArrayWriter writer = new CharArrayWriter(name.length() + 4);
+		if (index != 0)
+		{
+			writer.write(',');
+		}
+		writer.write('"');
+		new JsonStringWriter(writer).writeString(name);
+		writer.write('"');
+		writer.write(':');
+		return writer.toCharArray();
+	}
+}
@@ -24,22 +24,30 @@ package com.stormmq.serializers.json;
 
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import com.stormmq.serializers.*;
+import com.stormmq.serializers.raw.RawFragment;
+import com.stormmq.serializers.raw.RawFragmentSerializer;
+import com.stormmq.serializers.references.SharedReferences;
+import com.stormmq.serializers.shapes.PropertyShapeCursor;
+import com.stormmq.serializers.shapes.PropertyShapes;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.nio.charset.Charset;
 import java.util.*;
 
+import static com.stormmq.serializers.ValueType.*;
+import static com.stormmq.serializers.json.JsonPropertyNameEncoder.JsonPropertyNameEncoderInstance;
+import static com.stormmq.serializers.raw.RawFragmentFormat.Json;
 import static com.stormmq.string.StringConstants._null;
 
 @SuppressWarnings({"ClassNamePrefixedWithPackageName", "ClassWithTooManyMethods"})
-public class JsonSerializer extends AbstractSerializer
+public class JsonSerializer extends AbstractSerializer implements RawFragmentSerializer
 {
 	private static final int DoubleQuote = '\"';
 	private static final int Comma = ',';
-	private static final char[] DoubleQuoteColonDoubleQuote = "\":\"".toCharArray();
 	private static final char[] CommaDoubleQuote = ",\"".toCharArray();
 	private static final char[] DoubleQuoteColon = "\":".toCharArray();
 	private static final int OpenObject = '{';
@@ -47,12 +55,21 @@ public class JsonSerializer extends AbstractSerializer
 	private static final int OpenArray = '[';
 	private static final int CloseArray = ']';
 	private static final char[] Null = _null.toCharArray();
+	private static final char[] OpenObjectReference = "{\"$ref\":\"".toCharArray();
+	private static final char[] DoubleQuoteCloseObject = "\"}".toCharArray();
+	@NonNls private static final String IdentifierPropertyName = "$id";
 
-	@NotNull
-	private final Stack<JsonNodeState> depth;
+	// The state of the innermost object; an enclosing object's state is kept in locals while a nested value is written, so nesting neither allocates nor locks
+	private boolean subsequentProperty;
 
-	@NotNull
-	private JsonNodeState current;
+	@Nullable
+	private PropertyShapeCursor<char[]> shapeCursor;
+
+	@Nullable
+	private PropertyShapes<char[]> propertyShapes;
+
+	@Nullable
+	private SharedReferences sharedReferences;
 
 	@SuppressWarnings("InstanceVariableMayNotBeInitialized")
 	@NotNull
@@ -60,33 +77,78 @@ public class JsonSerializer extends AbstractSerializer
 
 	protected JsonSerializer()
 	{
-		depth = new Stack<>();
-		current = new JsonNodeState();
+		subsequentProperty = false;
+		shapeCursor = null;
+		propertyShapes = null;
+		sharedReferences = null;
+	}
+
+	// Learns the property names of each MapSerializable class, and afterwards writes each separator and name as one precomputed run while the names keep matching
+	// Precomputed runs are not charset aware, so are only used for charsets that can encode everything
+	public final void useShapeLearning(final int maximumShapes)
+	{
+		propertyShapes = new PropertyShapes<>(char[].class, JsonPropertyNameEncoderInstance, maximumShapes);
+	}
+
+	// Gives each map the graph holds more than once a "$id" the first time it is written and writes {"$ref":"id"} for every repeat of the same instance; a cycle fails rather than overflowing the stack
+	// The graph is walked once before it is written to find those maps; a value written after attach() is not walked, so every map in it is given a "$id"
+	// That walk is a second pass: every map's serialiseMap() is called twice, so maps that compute their properties as they write them pay for it twice, and every map is held in an identity set until the document finishes
+	// Maps are not taken from or put into a fragment cache while this is in use, as their output depends on what has already been written
+	// It can not be combined with useProjection(), as repeats of a projected map can not be recognised
+	public final void useReferenceDeduplication()
+	{
+		sharedReferences = new SharedReferences();
 	}
 
 	@Override
-	public void start(@NotNull final OutputStream outputStream, @NotNull final Charset charset) throws CouldNotWriteDataException
+	public void start(@NotNull final Writer writer, @NotNull final Charset charset) throws CouldNotWriteDataException
 	{
-		super.start(outputStream, charset);
-		jsonStringWriter = new JsonStringWriter(writer);
+		super.start(writer, charset);
+		jsonStringWriter = new JsonStringWriter(this.writer, instrumentation, encodableCharacters);
+		subsequentProperty = false;
+		shapeCursor = null;
+		if (sharedReferences != null)
+		{
+			sharedReferences.reset();
+		}
+	}
+
+	@Override
+	public void attach(@NotNull final Writer writer, @NotNull final Charset charset)
+	{
+		super.attach(writer, charset);
+		jsonStringWriter = new JsonStringWriter(this.writer, instrumentation, encodableCharacters);
+		subsequentProperty = false;
+		shapeCursor = null;
+		if (sharedReferences != null)
+		{
+			sharedReferences.reset();
+		}
+	}
+
+	@Override
+	protected boolean outputDependsOnDocument()
+	{
+		return sharedReferences != null;
+	}
+
+	@Override
+	protected void beforeGraph(@NotNull final Serializable graph)
+	{
+		if (sharedReferences != null)
+		{
+			sharedReferences.count(graph);
+		}
 	}
 
 	@Override
 	public void writeProperty(@NotNull final String name, @NotNull final String value, final boolean isMapEntry) throws CouldNotWritePropertyException
 	{
+		instrumentation.value(StringValue);
 		try
 		{
-			if (current.hasSubsequentProperty())
-			{
-				write(CommaDoubleQuote);
-			}
-			else
-			{
-				write(DoubleQuote);
-				current.setHasSubsequentProperty();
-			}
-			jsonStringWriter.writeString(name);
-			write(DoubleQuoteColonDoubleQuote);
+			writePropertyName(name, isMapEntry);
+			write(DoubleQuote);
 			jsonStringWriter.writeString(value);
 			write(DoubleQuote);
 		}
@@ -101,17 +163,7 @@ public class JsonSerializer extends AbstractSerializer
 	{
 		try
 		{
-			if (current.hasSubsequentProperty())
-			{
-				write(CommaDoubleQuote);
-			}
-			else
-			{
-				write(DoubleQuote);
-				current.setHasSubsequentProperty();
-			}
-			jsonStringWriter.writeString(name);
-			write(DoubleQuoteColon);
+			writePropertyName(name, isMapEntry);
 			writeValue(value);
 		}
 		catch (CouldNotWriteDataException | CouldNotWriteValueException e)
@@ -125,17 +177,21 @@ public class JsonSerializer extends AbstractSerializer
 	{
 		try
 		{
-			if (current.hasSubsequentProperty())
-			{
-				write(CommaDoubleQuote);
-			}
-			else
-			{
-				write(DoubleQuote);
-				current.setHasSubsequentProperty();
-			}
-			jsonStringWriter.writeString(name);
-			write(DoubleQuoteColon);
+			writePropertyName(name, isMapEntry);
+			writeValue(value);
+		}
+		catch (CouldNotWriteDataException | CouldNotWriteValueException e)
+		{
+			throw new CouldNotWritePropertyException(name, value, e);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final RawFragment value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		try
+		{
+			writePropertyName(name, isMapEntry);
 			writeValue(value);
 		}
 		catch (CouldNotWriteDataException | CouldNotWriteValueException e)
@@ -149,17 +205,7 @@ public class JsonSerializer extends AbstractSerializer
 	{
 		try
 		{
-			if (current.hasSubsequentProperty())
-			{
-				write(CommaDoubleQuote);
-			}
-			else
-			{
-				write(DoubleQuote);
-				current.setHasSubsequentProperty();
-			}
-			jsonStringWriter.writeString(name);
-			write(DoubleQuoteColon);
+			writePropertyName(name, isMapEntry);
 			writeValue(values);
 		}
 		catch (CouldNotWriteDataException | CouldNotWriteValueException e)
@@ -173,17 +219,7 @@ public class JsonSerializer extends AbstractSerializer
 	{
 		try
 		{
-			if (current.hasSubsequentProperty())
-			{
-				write(CommaDoubleQuote);
-			}
-			else
-			{
-				write(DoubleQuote);
-				current.setHasSubsequentProperty();
-			}
-			jsonStringWriter.writeString(name);
-			write(DoubleQuoteColon);
+			writePropertyName(name, isMapEntry);
 			writeValue(values);
 		}
 		catch (CouldNotWriteDataException | CouldNotWriteValueException e)
@@ -197,17 +233,7 @@ public class JsonSerializer extends AbstractSerializer
 	{
 		try
 		{
-			if (current.hasSubsequentProperty())
-			{
-				write(CommaDoubleQuote);
-			}
-			else
-			{
-				write(DoubleQuote);
-				current.setHasSubsequentProperty();
-			}
-			jsonStringWriter.writeString(name);
-			write(DoubleQuoteColon);
+			writePropertyName(name, isMapEntry);
 			writeValue(values);
 		}
 		catch (CouldNotWriteDataException | CouldNotWriteValueException e)
@@ -221,17 +247,7 @@ public class JsonSerializer extends AbstractSerializer
 	{
 		try
 		{
-			if (current.hasSubsequentProperty())
-			{
-				write(CommaDoubleQuote);
-			}
-			else
-			{
-				write(DoubleQuote);
-				current.setHasSubsequentProperty();
-			}
-			jsonStringWriter.writeString(name);
-			write(DoubleQuoteColon);
+			writePropertyName(name, isMapEntry);
 			writeValue(values);
 		}
 		catch (CouldNotWriteDataException | CouldNotWriteValueException e)
@@ -245,17 +261,7 @@ public class JsonSerializer extends AbstractSerializer
 	{
 		try
 		{
-			if (current.hasSubsequentProperty())
-			{
-				write(CommaDoubleQuote);
-			}
-			else
-			{
-				write(DoubleQuote);
-				current.setHasSubsequentProperty();
-			}
-			jsonStringWriter.writeString(name);
-			write(DoubleQuoteColon);
+			writePropertyName(name, isMapEntry);
 			writeValue(value);
 		}
 		catch (CouldNotWriteDataException | CouldNotWriteValueException e)
@@ -269,17 +275,7 @@ public class JsonSerializer extends AbstractSerializer
 	{
 		try
 		{
-			if (current.hasSubsequentProperty())
-			{
-				write(CommaDoubleQuote);
-			}
-			else
-			{
-				write(DoubleQuote);
-				current.setHasSubsequentProperty();
-			}
-			jsonStringWriter.writeString(name);
-			write(DoubleQuoteColon);
+			writePropertyName(name, isMapEntry);
 			writeValue(value);
 		}
 		catch (CouldNotWriteDataException | CouldNotWriteValueException e)
@@ -293,17 +289,7 @@ public class JsonSerializer extends AbstractSerializer
 	{
 		try
 		{
-			if (current.hasSubsequentProperty())
-			{
-				write(CommaDoubleQuote);
-			}
-			else
-			{
-				write(DoubleQuote);
-				current.setHasSubsequentProperty();
-			}
-			jsonStringWriter.writeString(name);
-			write(DoubleQuoteColon);
+			writePropertyName(name, isMapEntry);
 			writeValueNull();
 		}
 		catch (CouldNotWriteDataException | CouldNotWriteValueException e)
@@ -315,10 +301,13 @@ public class JsonSerializer extends AbstractSerializer
 	@Override
 	public <S extends MapSerializable> void writeValue(@NotNull final S[] values) throws CouldNotWriteValueException
 	{
-		depth.push(current);
+		final boolean enclosingSubsequentProperty = subsequentProperty;
+		@Nullable final PropertyShapeCursor<char[]> enclosingShapeCursor = shapeCursor;
+		instrumentation.enteredNesting(ArrayValue, values);
 		try
 		{
-			current = new JsonNodeState();
+			subsequentProperty = false;
+			shapeCursor = null;
 			write(OpenArray);
 			final int length = values.length;
 			if (length != 0)
@@ -336,16 +325,21 @@ public class JsonSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(values, e);
 		}
-		current = depth.pop();
+		instrumentation.leftNesting(ArrayValue, values);
+		subsequentProperty = enclosingSubsequentProperty;
+		shapeCursor = enclosingShapeCursor;
 	}
 
 	@Override
 	public <S extends ValueSerializable> void writeValue(@NotNull final S[] values) throws CouldNotWriteValueException
 	{
-		depth.push(current);
+		final boolean enclosingSubsequentProperty = subsequentProperty;
+		@Nullable final PropertyShapeCursor<char[]> enclosingShapeCursor = shapeCursor;
+		instrumentation.enteredNesting(ArrayValue, values);
 		try
 		{
-			current = new JsonNodeState();
+			subsequentProperty = false;
+			shapeCursor = null;
 			write(OpenArray);
 			final int length = values.length;
 			if (length != 0)
@@ -363,16 +357,21 @@ public class JsonSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(values, e);
 		}
-		current = depth.pop();
+		instrumentation.leftNesting(ArrayValue, values);
+		subsequentProperty = enclosingSubsequentProperty;
+		shapeCursor = enclosingShapeCursor;
 	}
 
 	@Override
 	public void writeValue(@NotNull final List<?> values) throws CouldNotWriteValueException
 	{
-		depth.push(current);
+		final boolean enclosingSubsequentProperty = subsequentProperty;
+		@Nullable final PropertyShapeCursor<char[]> enclosingShapeCursor = shapeCursor;
+		instrumentation.enteredNesting(ArrayValue, values);
 		try
 		{
-			current = new JsonNodeState();
+			subsequentProperty = false;
+			shapeCursor = null;
 			write(OpenArray);
 			final int length = values.size();
 			if (length != 0)
@@ -390,16 +389,21 @@ public class JsonSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(values, e);
 		}
-		current = depth.pop();
+		instrumentation.leftNesting(ArrayValue, values);
+		subsequentProperty = enclosingSubsequentProperty;
+		shapeCursor = enclosingShapeCursor;
 	}
 
 	@Override
 	public void writeValue(@NotNull final Set<?> values) throws CouldNotWriteValueException
 	{
-		depth.push(current);
+		final boolean enclosingSubsequentProperty = subsequentProperty;
+		@Nullable final PropertyShapeCursor<char[]> enclosingShapeCursor = shapeCursor;
+		instrumentation.enteredNesting(ArrayValue, values);
 		try
 		{
-			current = new JsonNodeState();
+			subsequentProperty = false;
+			shapeCursor = null;
 			write(OpenArray);
 			boolean afterFirst = false;
 			for (final Object value : values)
@@ -420,18 +424,23 @@ public class JsonSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(values, e);
 		}
-		current = depth.pop();
+		instrumentation.leftNesting(ArrayValue, values);
+		subsequentProperty = enclosingSubsequentProperty;
+		shapeCursor = enclosingShapeCursor;
 	}
 
-	@SuppressWarnings("OverloadedVarargsMethod")
+	@SuppressWarnings({"OverloadedVarargsMethod", "varargs"})
 	@SafeVarargs
 	@Override
 	public final <S extends Serializable> void writeValue(@NotNull final S... values) throws CouldNotWriteValueException
 	{
-		depth.push(current);
+		final boolean enclosingSubsequentProperty = subsequentProperty;
+		@Nullable final PropertyShapeCursor<char[]> enclosingShapeCursor = shapeCursor;
+		instrumentation.enteredNesting(ArrayValue, values);
 		try
 		{
-			current = new JsonNodeState();
+			subsequentProperty = false;
+			shapeCursor = null;
 			write(OpenArray);
 			boolean afterFirst = false;
 			for (final Object value : values)
@@ -452,12 +461,15 @@ public class JsonSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(values, e);
 		}
-		current = depth.pop();
+		instrumentation.leftNesting(ArrayValue, values);
+		subsequentProperty = enclosingSubsequentProperty;
+		shapeCursor = enclosingShapeCursor;
 	}
 
 	@Override
 	public void writeValue(final int value) throws CouldNotWriteValueException
 	{
+		instrumentation.value(IntegerValue);
 		try
 		{
 			write(Integer.toString(value));
@@ -471,6 +483,7 @@ public class JsonSerializer extends AbstractSerializer
 	@Override
 	public void writeValue(final long value) throws CouldNotWriteValueException
 	{
+		instrumentation.value(LongValue);
 		try
 		{
 			write(Long.toString(value));
@@ -484,6 +497,7 @@ public class JsonSerializer extends AbstractSerializer
 	@Override
 	public void writeValue(@NotNull final BigDecimal value) throws CouldNotWriteValueException
 	{
+		instrumentation.value(BigDecimalValue);
 		try
 		{
 			write(value.toString());
@@ -497,6 +511,7 @@ public class JsonSerializer extends AbstractSerializer
 	@Override
 	public void writeValue(@NotNull final String value) throws CouldNotWriteValueException
 	{
+		instrumentation.value(StringValue);
 		try
 		{
 			write(DoubleQuote);
@@ -511,15 +526,72 @@ public class JsonSerializer extends AbstractSerializer
 
 	@Override
 	public void writeValue(@NotNull final MapSerializable value) throws CouldNotWriteValueException
+	{
+		if (sharedReferences != null)
+		{
+			writeSharedValue(sharedReferences, value);
+			return;
+		}
+
+		if (writeCachedFragment(value))
+		{
+			return;
+		}
+
+		final int fragmentStart = startFragment(value);
+		writeMap(value, null);
+		finishFragment(value, fragmentStart);
+	}
+
+	private void writeSharedValue(@NotNull final SharedReferences sharedReferences, @NotNull final MapSerializable value) throws CouldNotWriteValueException
+	{
+		try
+		{
+			@Nullable final String reference = sharedReferences.identifier(value);
+			if (reference != null)
+			{
+				write(OpenObjectReference);
+				write(reference);
+				write(DoubleQuoteCloseObject);
+				return;
+			}
+			@Nullable final String identifier = sharedReferences.isShared(value) ? sharedReferences.identify(value) : null;
+			sharedReferences.enter(value);
+			writeMap(value, identifier);
+			sharedReferences.leave(value);
+		}
+		catch (CouldNotWriteDataException | CouldNotEncodeDataException e)
+		{
+			throw new CouldNotWriteValueException(value, e);
+		}
+	}
+
+	private void writeMap(@NotNull final MapSerializable value, @Nullable final String identifier) throws CouldNotWriteValueException
 	{
 		try
 		{
-			depth.push(current);
-			current = new JsonNodeState();
+			final boolean enclosingSubsequentProperty = subsequentProperty;
+			@Nullable final PropertyShapeCursor<char[]> enclosingShapeCursor = shapeCursor;
+			instrumentation.enteredNesting(MapValue, value);
+			subsequentProperty = false;
+			shapeCursor = propertyShapes == null || !encodableCharacters.encodesEverything() ? null : propertyShapes.cursor(value.getClass());
 			write(OpenObject);
+			if (identifier != null)
+			{
+				writePropertyName(IdentifierPropertyName, false);
+				write(DoubleQuote);
+				write(identifier);
+				write(DoubleQuote);
+			}
 			value.serialiseMap(this);
 			write(CloseObject);
-			depth.pop();
+			if (shapeCursor != null)
+			{
+				shapeCursor.finish();
+			}
+			instrumentation.leftNesting(MapValue, value);
+			subsequentProperty = enclosingSubsequentProperty;
+			shapeCursor = enclosingShapeCursor;
 		}
 		catch (CouldNotWriteDataException | CouldNotSerializeMapException e)
 		{
@@ -530,6 +602,13 @@ public class JsonSerializer extends AbstractSerializer
 	@Override
 	public void writeValue(@NotNull final ValueSerializable value) throws CouldNotWriteValueException
 	{
+		if (writeCachedFragment(value))
+		{
+			return;
+		}
+
+		final int fragmentStart = startFragment(value);
+		instrumentation.enteredValue(value);
 		try
 		{
 			value.serialiseValue(this);
@@ -538,6 +617,26 @@ public class JsonSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(value, e);
 		}
+		instrumentation.leftValue(value);
+		finishFragment(value, fragmentStart);
+	}
+
+	@Override
+	public void writeValue(@NotNull final RawFragment value) throws CouldNotWriteValueException
+	{
+		if (value.rawFragmentFormat() != Json)
+		{
+			throw new CouldNotWriteValueException(value, "it is not a JSON fragment");
+		}
+		instrumentation.value(RawValue);
+		try
+		{
+			writeRawFragment(value);
+		}
+		catch (final CouldNotWriteDataException e)
+		{
+			throw new CouldNotWriteValueException(value, e);
+		}
 	}
 
 	@Override
@@ -549,6 +648,7 @@ public class JsonSerializer extends AbstractSerializer
 	@Override
 	public void writeValueNull() throws CouldNotWriteValueException
 	{
+		instrumentation.value(NullValue);
 		try
 		{
 			write(Null);
@@ -559,6 +659,39 @@ public class JsonSerializer extends AbstractSerializer
 		}
 	}
 
+	private void writePropertyName(@NotNull final String name, final boolean isMapEntry) throws CouldNotWriteDataException
+	{
+		if (shapeCursor != null)
+		{
+			if (isMapEntry)
+			{
+				shapeCursor.deviate();
+			}
+			else
+			{
+				@Nullable final char[] separatorAndName = shapeCursor.next(name);
+				if (separatorAndName != null)
+				{
+					write(separatorAndName);
+					subsequentProperty = true;
+					return;
+				}
+			}
+		}
+
+		if (subsequentProperty)
+		{
+			write(CommaDoubleQuote);
+		}
+		else
+		{
+			write(DoubleQuote);
+			subsequentProperty = true;
+		}
+		jsonStringWriter.writeString(name);
+		write(DoubleQuoteColon);
+	}
+
 	private void write(final int character) throws CouldNotWriteDataException
 	{
 		try
@@ -26,10 +26,15 @@ import com.stormmq.string.Padding;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import com.stormmq.serializers.CouldNotWriteDataException;
+import com.stormmq.serializers.EncodableCharacters;
+import com.stormmq.serializers.SerializerInstrumentation;
 
 import java.io.IOException;
 import java.io.Writer;
 
+import static com.stormmq.serializers.EncodableCharacters.EverythingEncodable;
+import static com.stormmq.serializers.NoSerializerInstrumentation.NoSerializerInstrumentationInstance;
+
 @SuppressWarnings("ConstantNamingConvention")
 public final class JsonStringWriter
 {
@@ -62,6 +67,8 @@ public final class JsonStringWriter
 	@SuppressWarnings("HardcodedFileSeparator") private static final char[] ReverseSolidus = replacement('/');
 	@SuppressWarnings("HardcodedFileSeparator") private static final char[] Solidus = replacement('\\');
 	private static final char[] DoubleQuote = replacement('"');
+	private static final int UnicodeEscapeDigits = 2;
+	private static final char[] HexadecimalDigits = "0123456789ABCDEF".toCharArray();
 
 	@SuppressWarnings("HardcodedFileSeparator")
 	private static char[] replacement(final int controlCode)
@@ -82,21 +89,46 @@ public final class JsonStringWriter
 
 	@NotNull
 	private final Writer writer;
+	@NotNull
+	private final SerializerInstrumentation instrumentation;
+	@NotNull
+	private final EncodableCharacters encodableCharacters;
+	@NotNull
+	private final char[] unicodeEscape;
 
 	public JsonStringWriter(@NotNull final Writer writer)
+	{
+		this(writer, NoSerializerInstrumentationInstance);
+	}
+
+	public JsonStringWriter(@NotNull final Writer writer, @NotNull final SerializerInstrumentation instrumentation)
+	{
+		this(writer, instrumentation, EverythingEncodable);
+	}
+
+	// Characters the output charset can not encode are written as unicode escapes rather than being replaced by the encoder
+	public JsonStringWriter(@NotNull final Writer writer, @NotNull final SerializerInstrumentation instrumentation, @NotNull final EncodableCharacters encodableCharacters)
 	{
 		this.writer = writer;
+		this.instrumentation = instrumentation;
+		this.encodableCharacters = encodableCharacters;
+		unicodeEscape = replacement(0x00);
 	}
 
 	public void writeString(@NotNull final CharSequence value) throws CouldNotWriteDataException
 	{
 		// JSON encodes strings as UTF-16 surrogates pairs, not code points
 		final int length = value.length();
+		int escapes = 0;
 		for (int index = 0; index < length; index++)
 		{
 			final char character = value.charAt(index);
-			writeCharacter(character);
+			if (writeCharacter(character))
+			{
+				escapes++;
+			}
 		}
+		instrumentation.stringEscaped(escapes);
 	}
 
 	@SuppressWarnings({
@@ -107,7 +139,7 @@ public final class JsonStringWriter
 	"MagicCharacter"
 	, "HardcodedFileSeparator"
 	})
-	private void writeCharacter(final char character) throws CouldNotWriteDataException
+	private boolean writeCharacter(final char character) throws CouldNotWriteDataException
 	{
 		final char[] replacement;
 		switch (character)
@@ -229,6 +261,11 @@ public final class JsonStringWriter
 				break;
 
 			default:
+				if (!encodableCharacters.encodable(character))
+				{
+					replacement = unicodeEscape(character);
+					break;
+				}
 				try
 				{
 					writer.write(character);
@@ -237,7 +274,7 @@ public final class JsonStringWriter
 				{
 					throw new CouldNotWriteDataException(e);
 				}
-				return;
+				return false;
 		}
 		try
 		{
@@ -247,5 +284,17 @@ public final class JsonStringWriter
 		{
 			throw new CouldNotWriteDataException(e);
 		}
+		return true;
+	}
+
+	@SuppressWarnings("MagicNumber")
+	@NotNull
+	private char[] unicodeEscape(final char character)
+	{
+		unicodeEscape[UnicodeEscapeDigits] = HexadecimalDigits[character >>> 12];
+		unicodeEscape[UnicodeEscapeDigits + 1] = HexadecimalDigits[character >>> 8 & 0x0F];
+		unicodeEscape[UnicodeEscapeDigits + 2] = HexadecimalDigits[character >>> 4 & 0x0F];
+		unicodeEscape[UnicodeEscapeDigits + 3] = HexadecimalDigits[character & 0x0F];
+		return unicodeEscape;
 	}
 }
@@ -43,6 +43,7 @@ public final class FlatteningValueSerializer extends AbstractValueSerializer
 		this.separator = copyOf(separator, separator.length);
 	}
 
+	@Override
 	public void start(@NotNull final Writer writer, @NotNull final Charset charset)
 	{
 		this.writer = writer;
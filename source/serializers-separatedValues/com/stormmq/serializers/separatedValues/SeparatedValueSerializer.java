@@ -29,11 +29,13 @@ import com.stormmq.serializers.separatedValues.matchers.Matcher;
 
 import java.io.OutputStream;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.nio.charset.Charset;
 import java.util.*;
 
 import static com.stormmq.functions.collections.ArraysHelper.*;
+import static com.stormmq.serializers.ValueType.*;
 import static java.lang.System.out;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static com.stormmq.serializers.separatedValues.fieldEscapers.CommaSeparatedFieldEscaper.CommaSeparatedFieldEscaperInstance;
@@ -54,22 +56,23 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 		return new SeparatedValueSerializer(CommaSeparatedFieldEscaperInstance, root, writeHeaderLine, headings);
 	}
 
+	@NotNull private final Matcher root;
+	// The enclosing matcher is kept in a local while a nested property is written, so nesting neither allocates nor locks
 	@NotNull private Matcher current;
 	private final boolean writeHeaderLine;
 	@NotNull private final String[] headings;
-	@NotNull private final Stack<Matcher> stack;
 	private final int numberOfFields;
 	@NotNull private final FieldEscaper fieldEscaper;
 	@Nullable private SeparatedValuesLine separatedValuesLine;
 
 	private SeparatedValueSerializer(@NotNull final FieldEscaper fieldEscaper, @NotNull final Matcher root, final boolean writeHeaderLine, @NotNull final String... headings)
 	{
+		this.root = root;
 		current = root;
 		this.writeHeaderLine = writeHeaderLine;
 		this.headings = copyOf(headings);
 		numberOfFields = headings.length;
 		this.fieldEscaper = fieldEscaper;
-		stack = new Stack<>();
 	}
 
 	@SafeVarargs
@@ -94,9 +97,11 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 	}
 
 	@Override
-	public void start(@NotNull final OutputStream outputStream, @NotNull final Charset charset) throws CouldNotWriteDataException
+	public void start(@NotNull final Writer writer, @NotNull final Charset charset) throws CouldNotWriteDataException
 	{
-		super.start(outputStream, charset);
+		super.start(writer, charset);
+		current = root;
+		separatedValuesLine = null;
 		if (writeHeaderLine)
 		{
 			final SeparatedValuesLine headerLine = new FixedArraySeparatedValuesLine(numberOfFields);
@@ -106,7 +111,7 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 			}
 			try
 			{
-				headerLine.writeLine(writer, fieldEscaper);
+				headerLine.writeLine(this.writer, fieldEscaper);
 			}
 			catch (final CouldNotEncodeDataException e)
 			{
@@ -122,6 +127,7 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 		{
 			writeNestedMapSerializableValues(values);
 		}
+		instrumentation.enteredNesting(ArrayValue, values);
 		for (final S value : values)
 		{
 			separatedValuesLine = new FixedArraySeparatedValuesLine(numberOfFields);
@@ -138,6 +144,7 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 			}
 			separatedValuesLine = null;
 		}
+		instrumentation.leftNesting(ArrayValue, values);
 	}
 
 	@Override
@@ -148,6 +155,7 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 			writeNestedValueSerializableValues(values);
 			return;
 		}
+		instrumentation.enteredNesting(ArrayValue, values);
 		for (final S value : values)
 		{
 			separatedValuesLine = new FixedArraySeparatedValuesLine(numberOfFields);
@@ -164,6 +172,7 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 			}
 			separatedValuesLine = null;
 		}
+		instrumentation.leftNesting(ArrayValue, values);
 	}
 
 	@Override
@@ -174,6 +183,7 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 			writeNestedValueObjectValues(values);
 			return;
 		}
+		instrumentation.enteredNesting(ArrayValue, values);
 		for (final Object value : values)
 		{
 			separatedValuesLine = new FixedArraySeparatedValuesLine(numberOfFields);
@@ -190,6 +200,7 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 			}
 			separatedValuesLine = null;
 		}
+		instrumentation.leftNesting(ArrayValue, values);
 	}
 
 	@Override
@@ -200,6 +211,7 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 			writeNestedValueObjectValues(values);
 			return;
 		}
+		instrumentation.enteredNesting(ArrayValue, values);
 		for (final Object value : values)
 		{
 			separatedValuesLine = new FixedArraySeparatedValuesLine(numberOfFields);
@@ -216,8 +228,10 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 			}
 			separatedValuesLine = null;
 		}
+		instrumentation.leftNesting(ArrayValue, values);
 	}
 
+	@SuppressWarnings("varargs")
 	@SafeVarargs
 	@Override
 	public final <S extends Serializable> void writeValue(@NotNull final S... values) throws CouldNotWriteValueException
@@ -227,6 +241,7 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 			writeNestedValueObjectValues(values);
 			return;
 		}
+		instrumentation.enteredNesting(ArrayValue, values);
 		for (final Object value : values)
 		{
 			separatedValuesLine = new FixedArraySeparatedValuesLine(numberOfFields);
@@ -243,6 +258,7 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 			}
 			separatedValuesLine = null;
 		}
+		instrumentation.leftNesting(ArrayValue, values);
 	}
 
 	private <S extends MapSerializable> void writeNestedMapSerializableValues(final S[] values, final char... separator) throws CouldNotWriteValueException
@@ -297,6 +313,12 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 
 	@Override
 	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final String value, final boolean isMapEntry)
+	{
+		instrumentation.value(StringValue);
+		recordProperty(name, value);
+	}
+
+	private void recordProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final String value)
 	{
 		final Matcher matcher = current.matchChild(name);
 		matcher.recordValue(value, separatedValuesLine);
@@ -305,14 +327,15 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 	@Override
 	public void writePropertyNull(@FieldTokenName @NonNls @NotNull final String name, final boolean isMapEntry)
 	{
-		writeProperty(name, "", isMapEntry);
+		instrumentation.value(NullValue);
+		recordProperty(name, "");
 	}
 
 	@Override
 	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final MapSerializable value, final boolean isMapEntry) throws CouldNotWritePropertyException
 	{
 		final Matcher matcher = current.matchChild(name);
-		stack.push(current);
+		final Matcher enclosing = current;
 		current = matcher;
 		try
 		{
@@ -322,14 +345,14 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWritePropertyException(name, value, e);
 		}
-		current = stack.pop();
+		current = enclosing;
 	}
 
 	@Override
 	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final ValueSerializable value, final boolean isMapEntry) throws CouldNotWritePropertyException
 	{
 		final Matcher matcher = current.matchChild(name);
-		stack.push(current);
+		final Matcher enclosing = current;
 		current = matcher;
 		try
 		{
@@ -339,26 +362,28 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWritePropertyException(name, value, e);
 		}
-		current = stack.pop();
+		current = enclosing;
 	}
 
 	@Override
 	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final int value, final boolean isMapEntry)
 	{
-		writeProperty(name, Integer.toString(value), isMapEntry);
+		instrumentation.value(IntegerValue);
+		recordProperty(name, Integer.toString(value));
 	}
 
 	@Override
 	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final long value, final boolean isMapEntry)
 	{
-		writeProperty(name, Long.toString(value), isMapEntry);
+		instrumentation.value(LongValue);
+		recordProperty(name, Long.toString(value));
 	}
 
 	@Override
 	public <S extends MapSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values, final boolean isMapEntry) throws CouldNotWritePropertyException
 	{
 		final Matcher matcher = current.matchChild(name);
-		stack.push(current);
+		final Matcher enclosing = current;
 		current = matcher;
 		try
 		{
@@ -368,14 +393,14 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWritePropertyException(name, values, e);
 		}
-		current = stack.pop();
+		current = enclosing;
 	}
 
 	@Override
 	public <S extends ValueSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values, final boolean isMapEntry) throws CouldNotWritePropertyException
 	{
 		final Matcher matcher = current.matchChild(name);
-		stack.push(current);
+		final Matcher enclosing = current;
 		current = matcher;
 		try
 		{
@@ -385,14 +410,14 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWritePropertyException(name, values, e);
 		}
-		current = stack.pop();
+		current = enclosing;
 	}
 
 	@Override
 	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final List<?> values, final boolean isMapEntry) throws CouldNotWritePropertyException
 	{
 		final Matcher matcher = current.matchChild(name);
-		stack.push(current);
+		final Matcher enclosing = current;
 		current = matcher;
 		try
 		{
@@ -402,14 +427,14 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWritePropertyException(name, values, e);
 		}
-		current = stack.pop();
+		current = enclosing;
 	}
 
 	@Override
 	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final Set<?> values, final boolean isMapEntry) throws CouldNotWritePropertyException
 	{
 		final Matcher matcher = current.matchChild(name);
-		stack.push(current);
+		final Matcher enclosing = current;
 		current = matcher;
 		try
 		{
@@ -419,11 +444,17 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWritePropertyException(name, values, e);
 		}
-		current = stack.pop();
+		current = enclosing;
 	}
 
 	@Override
 	public void writeValue(@NotNull final String value)
+	{
+		instrumentation.value(StringValue);
+		recordValue(value);
+	}
+
+	private void recordValue(@NotNull final String value)
 	{
 		current.recordValue(value, separatedValuesLine);
 	}
@@ -431,30 +462,35 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 	@Override
 	public void writeValue(final int value)
 	{
-		writeValue(Integer.toString(value));
+		instrumentation.value(IntegerValue);
+		recordValue(Integer.toString(value));
 	}
 
 	@Override
 	public void writeValue(final long value)
 	{
-		writeValue(Long.toString(value));
+		instrumentation.value(LongValue);
+		recordValue(Long.toString(value));
 	}
 
 	@Override
 	public void writeValue(@NotNull final BigDecimal value)
 	{
-		writeValue(value.toString());
+		instrumentation.value(BigDecimalValue);
+		recordValue(value.toString());
 	}
 
 	@Override
 	public void writeValueNull()
 	{
-		writeValue("");
+		instrumentation.value(NullValue);
+		recordValue("");
 	}
 
 	@Override
 	public void writeValue(@NotNull final MapSerializable value) throws CouldNotWriteValueException
 	{
+		instrumentation.enteredNesting(MapValue, value);
 		try
 		{
 			value.serialiseMap(this);
@@ -463,11 +499,13 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(value, e);
 		}
+		instrumentation.leftNesting(MapValue, value);
 	}
 
 	@Override
 	public void writeValue(@NotNull final ValueSerializable value) throws CouldNotWriteValueException
 	{
+		instrumentation.enteredValue(value);
 		try
 		{
 			value.serialiseValue(this);
@@ -476,6 +514,7 @@ public final class SeparatedValueSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(value, e);
 		}
+		instrumentation.leftValue(value);
 	}
 
 	@Override
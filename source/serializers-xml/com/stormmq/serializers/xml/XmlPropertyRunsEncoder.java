@@ -0,0 +1,61 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.xml;
+
+import com.stormmq.serializers.AbstractDataException;
+import com.stormmq.serializers.shapes.PropertyShapeEncoder;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.CharArrayWriter;
+
+// Encodes <name>, </name> and <name/> once, so learned properties skip node name validation
+public final class XmlPropertyRunsEncoder implements PropertyShapeEncoder<XmlPropertyRuns>
+{
+	@NotNull public static final XmlPropertyRunsEncoder XmlPropertyRunsEncoderInstance = new XmlPropertyRunsEncoder();
+
+	private XmlPropertyRunsEncoder()
+	{
+	}
+
+	@NotNull
+	@Override
+	public XmlPropertyRuns encode(final int index, @NonNls @NotNull final String name) throws AbstractDataException
+	{
+		final CharArrayWriter writer = new CharArrayWriter(name.length());
+		new XmlStringWriter(writer).writeNodeName(name);
+		final char[] nodeName = writer.toCharArray();
+		return new XmlPropertyRuns(run("<", nodeName, ">"), run("</", nodeName, ">"), run("<", nodeName, "/>"));
+	}
+
+	@NotNull
+	private static char[] run(@NonNls @NotNull final String before, @NotNull final char[] nodeName, @NonNls @NotNull final String after)
+	{
+		final int beforeLength = before.length();
+		final char[] run = new char[beforeLength + nodeName.length + after.length()];
+		before.getChars(0, beforeLength, run, 0);
+		System.arraycopy(nodeName, 0, run, beforeLength, nodeName.length);
+		after.getChars(0, after.length(), run, beforeLength + nodeName.length);
+		return run;
+	}
+}
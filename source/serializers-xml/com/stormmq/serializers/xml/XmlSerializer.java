@@ -25,22 +25,31 @@ package com.stormmq.serializers.xml;
 import com.stormmq.tuples.Pair;
 import org.jetbrains.annotations.*;
 import com.stormmq.serializers.*;
+import com.stormmq.serializers.raw.RawFragment;
+import com.stormmq.serializers.raw.RawFragmentSerializer;
+import com.stormmq.serializers.references.SharedReferences;
+import com.stormmq.serializers.shapes.PropertyShapeCursor;
+import com.stormmq.serializers.shapes.PropertyShapes;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.nio.charset.Charset;
 import java.util.*;
 import java.util.Map.Entry;
 
 import static com.stormmq.functions.collections.ArraysHelper.of;
+import static com.stormmq.serializers.ValueType.*;
+import static com.stormmq.serializers.raw.RawFragmentFormat.Xml;
+import static com.stormmq.serializers.xml.XmlPropertyRunsEncoder.XmlPropertyRunsEncoderInstance;
 import static com.stormmq.string.StringConstants._true;
 import static java.lang.String.format;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Locale.ENGLISH;
 
 @SuppressWarnings({"ClassNamePrefixedWithPackageName", "ClassWithTooManyMethods"})
-public final class XmlSerializer extends AbstractSerializer
+public final class XmlSerializer extends AbstractSerializer implements RawFragmentSerializer
 {
 	@NotNull @NonNls private static final String XmlSchemaInstanceNamespace = "http://www.w3.org/2001/XMLSchema-instance";
 	@SuppressWarnings("unchecked") @NotNull private static final Pair<String, String>[] Empty = new Pair[0];
@@ -55,6 +64,8 @@ public final class XmlSerializer extends AbstractSerializer
 	private static final char[] LessThanSlash = characters("</");
 	private static final char[] SlashGreaterThan = characters("/>");
 	private static final String ListElementNodeName = "element";
+	@NonNls private static final String IdentifierAttributeName = "id";
+	@NonNls private static final String IdentifierReferenceAttributeName = "idref";
 
 	@SuppressWarnings("OverloadedVarargsMethod")
 	@SafeVarargs
@@ -81,6 +92,14 @@ public final class XmlSerializer extends AbstractSerializer
 	private final Pair<String, String> xsiNilAttribute;
 	@NotNull
 	private final Pair<String, String>[] rootAttributes;
+	@NotNull
+	private final String fragmentFormat;
+	@Nullable
+	private PropertyShapes<XmlPropertyRuns> propertyShapes;
+	@Nullable
+	private PropertyShapeCursor<XmlPropertyRuns> shapeCursor;
+	@Nullable
+	private SharedReferences sharedReferences;
 
 	@SuppressWarnings("InstanceVariableMayNotBeInitialized")
 	@NotNull
@@ -130,32 +149,52 @@ public final class XmlSerializer extends AbstractSerializer
 			index++;
 		}
 		xsiNilAttribute = xmlSchemaInstancePrefix == null ? null : new Pair<>(xmlSchemaInstancePrefix + ":nil", _true);
+		fragmentFormat = format(ENGLISH, "%1$s(%2$s)", getClass().getName(), xmlSchemaInstancePrefix);
+		propertyShapes = null;
+		shapeCursor = null;
+		sharedReferences = null;
 	}
 
-	private void serialise(@NotNull final Serializable graph, @NotNull final OutputStream outputStream, @NotNull final Charset charset) throws CouldNotSerialiseException
+	// Learns the property names of each MapSerializable class, and afterwards writes each open, close and empty tag as one precomputed run while the names keep matching
+	// Precomputed runs are not charset aware, so are only used for charsets that can encode everything
+	public void useShapeLearning(final int maximumShapes)
 	{
-		try
-		{
-			start(outputStream, charset);
-			graph.serialise(this);
-			finish();
-		}
-		catch (final CouldNotWriteDataException e)
-		{
-			throw new CouldNotSerialiseException(graph, e);
-		}
+		propertyShapes = new PropertyShapes<>(XmlPropertyRuns.class, XmlPropertyRunsEncoderInstance, maximumShapes);
+	}
+
+	// Gives each map the graph holds more than once an id attribute the first time it is written and writes an empty element with an idref attribute for every repeat of the same instance; a cycle fails rather than overflowing the stack
+	// This covers maps written as properties and as elements of arrays, lists and sets; a map written directly with writeValue() has no element of its own to carry an id, so it is always written in full
+	// The graph is walked once before it is written to find shared maps; a value written after attach() is not walked, so every map in it is given an id
+	// That walk is a second pass: every map's serialiseMap() is called twice, so maps that compute their properties as they write them pay for it twice, and every map is held in an identity set until the document finishes
+	// Maps are not taken from or put into a fragment cache while this is in use, as their output depends on what has already been written
+	// It can not be combined with useProjection(), as repeats of a projected map can not be recognised
+	public void useReferenceDeduplication()
+	{
+		sharedReferences = new SharedReferences();
+	}
+
+	@NotNull
+	@Override
+	protected Object fragmentFormat()
+	{
+		return fragmentFormat;
 	}
 
 	@Override
-	public void start(@NotNull final OutputStream outputStream, @NotNull final Charset charset) throws CouldNotWriteDataException
+	public void start(@NotNull final Writer writer, @NotNull final Charset charset) throws CouldNotWriteDataException
 	{
-		super.start(outputStream, charset);
-		xmlStringWriter = new XmlStringWriter(writer);
+		super.start(writer, charset);
+		xmlStringWriter = new XmlStringWriter(this.writer, instrumentation, encodableCharacters);
+		shapeCursor = null;
+		if (sharedReferences != null)
+		{
+			sharedReferences.reset();
+		}
 		if (xmlDeclaration)
 		{
 			try
 			{
-				writer.write(format(ENGLISH, "<?xml version=\"1.0\" encoding=\"%1$s\" standalone=\"yes\"?>", charset.name().toUpperCase(ENGLISH)));
+				this.writer.write(format(ENGLISH, "<?xml version=\"1.0\" encoding=\"%1$s\" standalone=\"yes\"?>", charset.name().toUpperCase(ENGLISH)));
 			}
 			catch (final IOException e)
 			{
@@ -176,7 +215,34 @@ public final class XmlSerializer extends AbstractSerializer
 		}
 	}
 
-	@SuppressWarnings("ThrowFromFinallyBlock")
+	@Override
+	public void attach(@NotNull final Writer writer, @NotNull final Charset charset)
+	{
+		super.attach(writer, charset);
+		xmlStringWriter = new XmlStringWriter(this.writer, instrumentation, encodableCharacters);
+		shapeCursor = null;
+		if (sharedReferences != null)
+		{
+			sharedReferences.reset();
+		}
+	}
+
+	@Override
+	protected boolean outputDependsOnDocument()
+	{
+		return sharedReferences != null;
+	}
+
+	@Override
+	protected void beforeGraph(@NotNull final Serializable graph)
+	{
+		if (sharedReferences != null)
+		{
+			sharedReferences.count(graph);
+		}
+	}
+
+	// The document is only finished once its root closes; a failure to close it is reported, as any other, by whoever started the document
 	@Override
 	public void finish() throws CouldNotWriteDataException
 	{
@@ -188,15 +254,13 @@ public final class XmlSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteDataException(e);
 		}
-		finally
-		{
-			super.finish();
-		}
+		super.finish();
 	}
 
 	@Override
 	public void writeProperty(@NotNull final String name, @NotNull final String value, final boolean isMapEntry) throws CouldNotWritePropertyException
 	{
+		instrumentation.value(StringValue);
 		if (value.isEmpty())
 		{
 			writeEmptyProperty(name, isMapEntry);
@@ -204,9 +268,9 @@ public final class XmlSerializer extends AbstractSerializer
 		}
 		try
 		{
-			writeOpen(name, isMapEntry);
+			@Nullable final XmlPropertyRuns propertyRuns = writeOpenProperty(name, isMapEntry);
 			writeText(value);
-			writeClose(name, isMapEntry);
+			writeCloseProperty(propertyRuns, name, isMapEntry);
 		}
 		catch (CouldNotWriteDataException | CouldNotEncodeDataException e)
 		{
@@ -217,9 +281,38 @@ public final class XmlSerializer extends AbstractSerializer
 	@Override
 	public void writeProperty(@NotNull final String name, @NotNull final MapSerializable value, final boolean isMapEntry) throws CouldNotWritePropertyException
 	{
+		if (sharedReferences != null && sharedReferences.isShared(value))
+		{
+			writeSharedProperty(sharedReferences, name, value, isMapEntry);
+			return;
+		}
+
 		try
 		{
-			writeOpen(name, isMapEntry);
+			@Nullable final XmlPropertyRuns propertyRuns = writeOpenProperty(name, isMapEntry);
+			writeValue(value);
+			writeCloseProperty(propertyRuns, name, isMapEntry);
+		}
+		catch (CouldNotWriteDataException | CouldNotEncodeDataException | CouldNotWriteValueException e)
+		{
+			throw new CouldNotWritePropertyException(name, value, e);
+		}
+	}
+
+	private void writeSharedProperty(@NotNull final SharedReferences sharedReferences, @NotNull final String name, @NotNull final MapSerializable value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		try
+		{
+			@Nullable final String reference = sharedReferences.identifier(value);
+			if (reference != null)
+			{
+				writeEmptyProperty(name, isMapEntry, new Pair<>(IdentifierReferenceAttributeName, reference));
+				return;
+			}
+
+			// Precomputed runs can not carry the attribute, but the cursor still has to see the name
+			nextPropertyRuns(name, isMapEntry);
+			writeOpen(name, isMapEntry, new Pair<>(IdentifierAttributeName, sharedReferences.identify(value)));
 			writeValue(value);
 			writeClose(name, isMapEntry);
 		}
@@ -234,9 +327,24 @@ public final class XmlSerializer extends AbstractSerializer
 	{
 		try
 		{
-			writeOpen(name, isMapEntry);
+			@Nullable final XmlPropertyRuns propertyRuns = writeOpenProperty(name, isMapEntry);
 			writeValue(value);
-			writeClose(name, isMapEntry);
+			writeCloseProperty(propertyRuns, name, isMapEntry);
+		}
+		catch (CouldNotWriteDataException | CouldNotEncodeDataException | CouldNotWriteValueException e)
+		{
+			throw new CouldNotWritePropertyException(name, value, e);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final RawFragment value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		try
+		{
+			@Nullable final XmlPropertyRuns propertyRuns = writeOpenProperty(name, isMapEntry);
+			writeValue(value);
+			writeCloseProperty(propertyRuns, name, isMapEntry);
 		}
 		catch (CouldNotWriteDataException | CouldNotEncodeDataException | CouldNotWriteValueException e)
 		{
@@ -249,9 +357,9 @@ public final class XmlSerializer extends AbstractSerializer
 	{
 		try
 		{
-			writeOpen(name, isMapEntry);
+			@Nullable final XmlPropertyRuns propertyRuns = writeOpenProperty(name, isMapEntry);
 			writeValue(value);
-			writeClose(name, isMapEntry);
+			writeCloseProperty(propertyRuns, name, isMapEntry);
 		}
 		catch (CouldNotWriteDataException | CouldNotEncodeDataException | CouldNotWriteValueException e)
 		{
@@ -264,9 +372,9 @@ public final class XmlSerializer extends AbstractSerializer
 	{
 		try
 		{
-			writeOpen(name, isMapEntry);
+			@Nullable final XmlPropertyRuns propertyRuns = writeOpenProperty(name, isMapEntry);
 			writeValue(value);
-			writeClose(name, isMapEntry);
+			writeCloseProperty(propertyRuns, name, isMapEntry);
 		}
 		catch (CouldNotWriteDataException | CouldNotEncodeDataException | CouldNotWriteValueException e)
 		{
@@ -277,6 +385,7 @@ public final class XmlSerializer extends AbstractSerializer
 	@Override
 	public void writePropertyNull(@NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
 	{
+		instrumentation.value(NullValue);
 		if (xsiNilAttribute == null)
 		{
 			writeEmptyProperty(name, isMapEntry);
@@ -292,9 +401,9 @@ public final class XmlSerializer extends AbstractSerializer
 	{
 		try
 		{
-			writeOpen(name, isMapEntry);
+			@Nullable final XmlPropertyRuns propertyRuns = writeOpenProperty(name, isMapEntry);
 			writeValue(values);
-			writeClose(name, isMapEntry);
+			writeCloseProperty(propertyRuns, name, isMapEntry);
 		}
 		catch (CouldNotWriteDataException | CouldNotEncodeDataException | CouldNotWriteValueException e)
 		{
@@ -307,9 +416,9 @@ public final class XmlSerializer extends AbstractSerializer
 	{
 		try
 		{
-			writeOpen(name, isMapEntry);
+			@Nullable final XmlPropertyRuns propertyRuns = writeOpenProperty(name, isMapEntry);
 			writeValue(values);
-			writeClose(name, isMapEntry);
+			writeCloseProperty(propertyRuns, name, isMapEntry);
 		}
 		catch (CouldNotWriteDataException | CouldNotEncodeDataException | CouldNotWriteValueException e)
 		{
@@ -322,9 +431,9 @@ public final class XmlSerializer extends AbstractSerializer
 	{
 		try
 		{
-			writeOpen(name, isMapEntry);
+			@Nullable final XmlPropertyRuns propertyRuns = writeOpenProperty(name, isMapEntry);
 			writeValue(values);
-			writeClose(name, isMapEntry);
+			writeCloseProperty(propertyRuns, name, isMapEntry);
 		}
 		catch (CouldNotWriteDataException | CouldNotEncodeDataException | CouldNotWriteValueException e)
 		{
@@ -337,9 +446,9 @@ public final class XmlSerializer extends AbstractSerializer
 	{
 		try
 		{
-			writeOpen(name, isMapEntry);
+			@Nullable final XmlPropertyRuns propertyRuns = writeOpenProperty(name, isMapEntry);
 			writeValue(values);
-			writeClose(name, isMapEntry);
+			writeCloseProperty(propertyRuns, name, isMapEntry);
 		}
 		catch (CouldNotWriteDataException | CouldNotEncodeDataException | CouldNotWriteValueException e)
 		{
@@ -350,6 +459,9 @@ public final class XmlSerializer extends AbstractSerializer
 	@Override
 	public <S extends MapSerializable> void writeValue(@NotNull final S[] values) throws CouldNotWriteValueException
 	{
+		instrumentation.enteredNesting(ArrayValue, values);
+		@Nullable final PropertyShapeCursor<XmlPropertyRuns> enclosingShapeCursor = shapeCursor;
+		shapeCursor = null;
 		try
 		{
 			for (final S value : values)
@@ -368,11 +480,16 @@ public final class XmlSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(values, e);
 		}
+		shapeCursor = enclosingShapeCursor;
+		instrumentation.leftNesting(ArrayValue, values);
 	}
 
 	@Override
 	public <S extends ValueSerializable> void writeValue(@NotNull final S[] values) throws CouldNotWriteValueException
 	{
+		instrumentation.enteredNesting(ArrayValue, values);
+		@Nullable final PropertyShapeCursor<XmlPropertyRuns> enclosingShapeCursor = shapeCursor;
+		shapeCursor = null;
 		try
 		{
 			for (final S value : values)
@@ -391,11 +508,16 @@ public final class XmlSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(values, e);
 		}
+		shapeCursor = enclosingShapeCursor;
+		instrumentation.leftNesting(ArrayValue, values);
 	}
 
 	@Override
 	public void writeValue(@NotNull final List<?> values) throws CouldNotWriteValueException
 	{
+		instrumentation.enteredNesting(ArrayValue, values);
+		@Nullable final PropertyShapeCursor<XmlPropertyRuns> enclosingShapeCursor = shapeCursor;
+		shapeCursor = null;
 		try
 		{
 			for (final Object value : values)
@@ -414,11 +536,16 @@ public final class XmlSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(values, e);
 		}
+		shapeCursor = enclosingShapeCursor;
+		instrumentation.leftNesting(ArrayValue, values);
 	}
 
 	@Override
 	public void writeValue(@NotNull final Set<?> values) throws CouldNotWriteValueException
 	{
+		instrumentation.enteredNesting(ArrayValue, values);
+		@Nullable final PropertyShapeCursor<XmlPropertyRuns> enclosingShapeCursor = shapeCursor;
+		shapeCursor = null;
 		try
 		{
 			for (final Object value : values)
@@ -437,28 +564,39 @@ public final class XmlSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(values, e);
 		}
+		shapeCursor = enclosingShapeCursor;
+		instrumentation.leftNesting(ArrayValue, values);
 	}
 
 	@Override
 	public void writeValue(final int value) throws CouldNotWriteValueException
 	{
-		writeValue(Integer.toString(value));
+		instrumentation.value(IntegerValue);
+		writeTextValue(Integer.toString(value));
 	}
 
 	@Override
 	public void writeValue(final long value) throws CouldNotWriteValueException
 	{
-		writeValue(Long.toString(value));
+		instrumentation.value(LongValue);
+		writeTextValue(Long.toString(value));
 	}
 
 	@Override
 	public void writeValue(@NotNull final BigDecimal value) throws CouldNotWriteValueException
 	{
-		writeValue(value.toString());
+		instrumentation.value(BigDecimalValue);
+		writeTextValue(value.toString());
 	}
 
 	@Override
 	public void writeValue(@NotNull final String value) throws CouldNotWriteValueException
+	{
+		instrumentation.value(StringValue);
+		writeTextValue(value);
+	}
+
+	private void writeTextValue(@NotNull final String value) throws CouldNotWriteValueException
 	{
 		try
 		{
@@ -473,6 +611,36 @@ public final class XmlSerializer extends AbstractSerializer
 	@Override
 	public void writeValue(@NotNull final MapSerializable value) throws CouldNotWriteValueException
 	{
+		if (sharedReferences != null)
+		{
+			try
+			{
+				sharedReferences.enter(value);
+			}
+			catch (final CouldNotEncodeDataException e)
+			{
+				throw new CouldNotWriteValueException(value, e);
+			}
+			writeMap(value);
+			sharedReferences.leave(value);
+			return;
+		}
+
+		if (writeCachedFragment(value))
+		{
+			return;
+		}
+
+		final int fragmentStart = startFragment(value);
+		writeMap(value);
+		finishFragment(value, fragmentStart);
+	}
+
+	private void writeMap(@NotNull final MapSerializable value) throws CouldNotWriteValueException
+	{
+		instrumentation.enteredNesting(MapValue, value);
+		@Nullable final PropertyShapeCursor<XmlPropertyRuns> enclosingShapeCursor = shapeCursor;
+		shapeCursor = propertyShapes == null || !encodableCharacters.encodesEverything() ? null : propertyShapes.cursor(value.getClass());
 		try
 		{
 			value.serialiseMap(this);
@@ -481,11 +649,24 @@ public final class XmlSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(value, e);
 		}
+		if (shapeCursor != null)
+		{
+			shapeCursor.finish();
+		}
+		shapeCursor = enclosingShapeCursor;
+		instrumentation.leftNesting(MapValue, value);
 	}
 
 	@Override
 	public void writeValue(@NotNull final ValueSerializable value) throws CouldNotWriteValueException
 	{
+		if (writeCachedFragment(value))
+		{
+			return;
+		}
+
+		final int fragmentStart = startFragment(value);
+		instrumentation.enteredValue(value);
 		try
 		{
 			value.serialiseValue(this);
@@ -494,6 +675,26 @@ public final class XmlSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(value, e);
 		}
+		instrumentation.leftValue(value);
+		finishFragment(value, fragmentStart);
+	}
+
+	@Override
+	public void writeValue(@NotNull final RawFragment value) throws CouldNotWriteValueException
+	{
+		if (value.rawFragmentFormat() != Xml)
+		{
+			throw new CouldNotWriteValueException(value, "it is not an XML fragment");
+		}
+		instrumentation.value(RawValue);
+		try
+		{
+			writeRawFragment(value);
+		}
+		catch (final CouldNotWriteDataException e)
+		{
+			throw new CouldNotWriteValueException(value, e);
+		}
 	}
 
 	@Override
@@ -505,12 +706,17 @@ public final class XmlSerializer extends AbstractSerializer
 	@Override
 	public void writeValueNull()
 	{
+		instrumentation.value(NullValue);
 	}
 
+	@SuppressWarnings("varargs")
 	@SafeVarargs
 	@Override
 	public final <S extends Serializable> void writeValue(@NotNull final S... values) throws CouldNotWriteValueException
 	{
+		instrumentation.enteredNesting(ArrayValue, values);
+		@Nullable final PropertyShapeCursor<XmlPropertyRuns> enclosingShapeCursor = shapeCursor;
+		shapeCursor = null;
 		try
 		{
 			for (final Object value : values)
@@ -529,6 +735,50 @@ public final class XmlSerializer extends AbstractSerializer
 		{
 			throw new CouldNotWriteValueException(values, e);
 		}
+		shapeCursor = enclosingShapeCursor;
+		instrumentation.leftNesting(ArrayValue, values);
+	}
+
+	@Nullable
+	private XmlPropertyRuns writeOpenProperty(@NotNull final String name, final boolean isMapEntry) throws CouldNotWriteDataException, CouldNotEncodeDataException
+	{
+		@Nullable final XmlPropertyRuns propertyRuns = nextPropertyRuns(name, isMapEntry);
+		if (propertyRuns == null)
+		{
+			writeOpen(name, isMapEntry);
+		}
+		else
+		{
+			write(propertyRuns.open);
+		}
+		return propertyRuns;
+	}
+
+	private void writeCloseProperty(@Nullable final XmlPropertyRuns propertyRuns, @NotNull final String name, final boolean isMapEntry) throws CouldNotWriteDataException, CouldNotEncodeDataException
+	{
+		if (propertyRuns == null)
+		{
+			writeClose(name, isMapEntry);
+		}
+		else
+		{
+			write(propertyRuns.close);
+		}
+	}
+
+	@Nullable
+	private XmlPropertyRuns nextPropertyRuns(@NotNull final String name, final boolean isMapEntry)
+	{
+		if (shapeCursor == null)
+		{
+			return null;
+		}
+		if (isMapEntry)
+		{
+			shapeCursor.deviate();
+			return null;
+		}
+		return shapeCursor.next(name);
 	}
 
 	// final is required for @SafeVarargs
@@ -592,7 +842,15 @@ public final class XmlSerializer extends AbstractSerializer
 	{
 		try
 		{
-			writeEmpty(name, isMapEntry, attributes);
+			@Nullable final XmlPropertyRuns propertyRuns = nextPropertyRuns(name, isMapEntry);
+			if (propertyRuns == null || attributes.length != 0)
+			{
+				writeEmpty(name, isMapEntry, attributes);
+			}
+			else
+			{
+				write(propertyRuns.empty);
+			}
 		}
 		catch (CouldNotWriteDataException | CouldNotEncodeDataException e)
 		{
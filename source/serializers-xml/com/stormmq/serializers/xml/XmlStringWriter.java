@@ -27,10 +27,14 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import com.stormmq.serializers.CouldNotEncodeDataException;
 import com.stormmq.serializers.CouldNotWriteDataException;
+import com.stormmq.serializers.EncodableCharacters;
+import com.stormmq.serializers.SerializerInstrumentation;
 
 import java.io.IOException;
 import java.io.Writer;
 
+import static com.stormmq.serializers.EncodableCharacters.EverythingEncodable;
+import static com.stormmq.serializers.NoSerializerInstrumentation.NoSerializerInstrumentationInstance;
 import static java.lang.Character.*;
 
 @SuppressWarnings("ConstantNamingConvention")
@@ -99,6 +103,7 @@ public final class XmlStringWriter
 	private static final char[] x9D = replacement(0x9D);
 	private static final char[] x9E = replacement(0x9E);
 	private static final char[] x9F = replacement(0x9F);
+	private static final int MaximumCharacterReferenceLength = 10;
 
 	private static char[] replacement(final int controlCode)
 	{
@@ -112,22 +117,58 @@ public final class XmlStringWriter
 
 	@NotNull
 	private final Writer writer;
+	@NotNull
+	private final SerializerInstrumentation instrumentation;
+	@NotNull
+	private final EncodableCharacters encodableCharacters;
+	@NotNull
+	private final char[] characterReference;
 
 	public XmlStringWriter(@NotNull final Writer writer)
+	{
+		this(writer, NoSerializerInstrumentationInstance);
+	}
+
+	public XmlStringWriter(@NotNull final Writer writer, @NotNull final SerializerInstrumentation instrumentation)
+	{
+		this(writer, instrumentation, EverythingEncodable);
+	}
+
+	// Characters the output charset can not encode are written as character references in text and attribute values rather than being replaced by the encoder; names can not contain references, so fail instead
+	public XmlStringWriter(@NotNull final Writer writer, @NotNull final SerializerInstrumentation instrumentation, @NotNull final EncodableCharacters encodableCharacters)
 	{
 		this.writer = writer;
+		this.instrumentation = instrumentation;
+		this.encodableCharacters = encodableCharacters;
+		characterReference = new char[MaximumCharacterReferenceLength];
 	}
 
 	// Does not check for ':' in name
 	// Does not check that name starts (xml, XML or any other variant)
 	public void writeNodeName(@NonNls @NotNull final CharSequence value) throws CouldNotWriteDataException, CouldNotEncodeDataException
 	{
-		writeText(value);
+		writeName(value);
 	}
 
 	public void writeAttributeName(@NonNls @NotNull final CharSequence attributeName) throws CouldNotEncodeDataException, CouldNotWriteDataException
 	{
-		writeText(attributeName);
+		writeName(attributeName);
+	}
+
+	private void writeName(@NonNls @NotNull final CharSequence name) throws CouldNotWriteDataException, CouldNotEncodeDataException
+	{
+		if (!encodableCharacters.encodesEverything())
+		{
+			final int length = name.length();
+			for (int index = 0; index < length; index++)
+			{
+				if (!encodableCharacters.encodable(name.charAt(index)))
+				{
+					throw new CouldNotEncodeDataException("name contains a character that the charset can not encode");
+				}
+			}
+		}
+		writeText(name);
 	}
 
 	public void writeAttributeValue(@NotNull final CharSequence attributeValue) throws CouldNotEncodeDataException, CouldNotWriteDataException
@@ -139,6 +180,7 @@ public final class XmlStringWriter
 	{
 		final int length = value.length();
 		boolean previousWasHighSurrogate = false;
+		int escapes = 0;
 		for (int index = 0; index < length; index++)
 		{
 			final char character = value.charAt(index);
@@ -149,6 +191,12 @@ public final class XmlStringWriter
 					throw new CouldNotEncodeDataException("high surrogate not followed by low surrogate");
 				}
 				previousWasHighSurrogate = false;
+				if (!encodableCharacters.encodable(character))
+				{
+					writeCharacterReference(toCodePoint(value.charAt(index - 1), character));
+					escapes++;
+					continue;
+				}
 			}
 			else if (isSurrogate(character))
 			{
@@ -157,13 +205,21 @@ public final class XmlStringWriter
 					throw new CouldNotEncodeDataException("low surrogate is leading surrogate pair");
 				}
 				previousWasHighSurrogate = true;
+				if (!encodableCharacters.encodable(character))
+				{
+					continue;
+				}
+			}
+			if (writeCharacter(character))
+			{
+				escapes++;
 			}
-			writeCharacter(character);
 		}
 		if (previousWasHighSurrogate)
 		{
 			throw new CouldNotEncodeDataException("string ends with an orphaned high surrogate");
 		}
+		instrumentation.stringEscaped(escapes);
 	}
 
 	// Strictly speaking, these are only valid in XML 1.1. Frankly, XML's rules on character data are pretty broken - it wouldn't have been very hard to support anything in Unicode for names, attributes and text
@@ -174,7 +230,7 @@ public final class XmlStringWriter
 	"MagicNumber",
 	"MagicCharacter"
 	})
-	private void writeCharacter(final char character) throws CouldNotWriteDataException, CouldNotEncodeDataException
+	private boolean writeCharacter(final char character) throws CouldNotWriteDataException, CouldNotEncodeDataException
 	{
 		final char[] replacement;
 		switch (character)
@@ -437,6 +493,11 @@ public final class XmlStringWriter
 				throw new CouldNotEncodeDataException("0x0000, 0xFFFF and 0xFFFE are not valid in XML");
 
 			default:
+				if (!encodableCharacters.encodable(character))
+				{
+					writeCharacterReference(character);
+					return true;
+				}
 				try
 				{
 					writer.write(character);
@@ -445,7 +506,7 @@ public final class XmlStringWriter
 				{
 					throw new CouldNotWriteDataException(e);
 				}
-				return;
+				return false;
 		}
 		try
 		{
@@ -455,5 +516,33 @@ public final class XmlStringWriter
 		{
 			throw new CouldNotWriteDataException(e);
 		}
+		return true;
+	}
+
+	@SuppressWarnings("MagicNumber")
+	private void writeCharacterReference(final int codePoint) throws CouldNotWriteDataException
+	{
+		int start = MaximumCharacterReferenceLength - 1;
+		characterReference[start] = ';';
+		int remaining = codePoint;
+		do
+		{
+			start--;
+			characterReference[start] = (char) ('0' + remaining % 10);
+			remaining /= 10;
+		}
+		while (remaining != 0);
+		start--;
+		characterReference[start] = '#';
+		start--;
+		characterReference[start] = '&';
+		try
+		{
+			writer.write(characterReference, start, MaximumCharacterReferenceLength - start);
+		}
+		catch (final IOException e)
+		{
+			throw new CouldNotWriteDataException(e);
+		}
 	}
 }
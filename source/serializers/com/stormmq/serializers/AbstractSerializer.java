@@ -23,10 +23,18 @@
 package com.stormmq.serializers;
 
 import org.jetbrains.annotations.*;
+import com.stormmq.serializers.projections.Projection;
+import com.stormmq.serializers.projections.ProjectingSerializer;
 import com.stormmq.serializers.unknown.IsUnknown;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.*;
 
+import static com.stormmq.serializers.ObjectKind.kindOf;
+import static com.stormmq.serializers.NoSerializerInstrumentation.NoSerializerInstrumentationInstance;
 import static com.stormmq.serializers.ValueSerializable.NullNumber;
 
 public abstract class AbstractSerializer extends AbstractValueSerializer implements Serializer
@@ -92,6 +100,22 @@ public abstract class AbstractSerializer extends AbstractValueSerializer impleme
 		mapSerializer.writeProperty(name, valueSerializable);
 	}
 
+	@Nullable
+	private Projection projection;
+
+	protected AbstractSerializer()
+	{
+		projection = null;
+	}
+
+	// Only the properties the projection selects are written; the rest, and everything nested beneath them, are never visited
+	// Each nested map is written through a new wrapper and each list or set holding maps is copied, so a projected map is never Cacheable and never the instance the graph holds
+	// A projection can not be used with a serializer whose output depends on the document, such as one deduplicating references, as repeats of a map can not be recognised through the wrappers
+	public final void useProjection(@Nullable final Projection projection)
+	{
+		this.projection = projection;
+	}
+
 	@Override
 	public final void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final String value) throws CouldNotWritePropertyException
 	{
@@ -170,118 +194,112 @@ public abstract class AbstractSerializer extends AbstractValueSerializer impleme
 		writeProperty(name, value, false);
 	}
 
-	@SuppressWarnings("MethodWithMultipleReturnPoints")
 	@Override
 	public final void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
 	{
-		if (value == null)
-		{
-			writePropertyNull(name, isMapEntry);
-			return;
-		}
-
-		if (value instanceof MapSerializable)
-		{
-			writeProperty(name, (MapSerializable) value, isMapEntry);
-			return;
-		}
-
-		if (value instanceof ValueSerializable)
-		{
-			writeProperty(name, (ValueSerializable) value, isMapEntry);
-			return;
-		}
+		kindOf(value).writeProperty(this, name, value, isMapEntry);
+	}
 
-		if (value instanceof MapSerializable[])
-		{
-			writeProperty(name, (MapSerializable[]) value, isMapEntry);
-			return;
-		}
+	@Override
+	public final void writeValue(@Nullable final Object value) throws CouldNotWriteValueException
+	{
+		kindOf(value).writeValue(this, value);
+	}
 
-		if (value instanceof ValueSerializable[])
-		{
-			writeProperty(name, (ValueSerializable[]) value, isMapEntry);
-			return;
-		}
+	@Override
+	public final <S extends Serializable> void writeValue(@NotNull final S value) throws CouldNotWriteValueException
+	{
+		value.serialise(this);
+	}
 
-		if (value instanceof Integer)
-		{
-			writeProperty(name, (int) value, isMapEntry);
-			return;
-		}
+	@NotNull
+	private Serializer projected()
+	{
+		return projection == null ? this : new ProjectingSerializer(this, projection);
+	}
 
-		if (value instanceof Long)
-		{
-			writeProperty(name, (long) value, isMapEntry);
-			return;
-		}
+	// Called once a document has started and before the graph writes itself, for serializers that need to look over the whole graph first
+	protected void beforeGraph(@NotNull final Serializable graph)
+	{
+	}
 
-		if (value instanceof String)
-		{
-			writeProperty(name, (String) value, isMapEntry);
-			return;
-		}
+	public final void serialise(@NotNull final Serializable graph, @NotNull final OutputStream outputStream, @NotNull final Charset charset) throws CouldNotSerialiseException
+	{
+		serialise(graph, outputStream, null, charset);
+	}
 
-		if (value instanceof Boolean)
-		{
-			writeProperty(name, (boolean) value, isMapEntry);
-			return;
-		}
+	// For callers that keep one Writer across many documents rather than paying for an OutputStreamWriter per document
+	public final void serialise(@NotNull final Serializable graph, @NotNull final Writer writer, @NotNull final Charset charset) throws CouldNotSerialiseException
+	{
+		serialise(graph, null, writer, charset);
+	}
 
-		if (value instanceof UUID)
+	// Walks the graph with the same escaping rules as serialise(), but only counts the bytes that would be written
+	// Instrumentation is not told of the walk, so a size computed ahead of a document is not recorded as a document of its own
+	public final long serialisedSize(@NotNull final Serializable graph, @NotNull final Charset charset) throws CouldNotSerialiseException
+	{
+		final ByteCountingWriter byteCountingWriter = new ByteCountingWriter(charset);
+		final SerializerInstrumentation configuredInstrumentation = instrumentation;
+		instrumentation = NoSerializerInstrumentationInstance;
+		try
 		{
-			writeProperty(name, value, isMapEntry);
-			return;
+			serialise(graph, null, byteCountingWriter, charset);
 		}
-
-		if (value instanceof Map)
+		finally
 		{
-			writeProperty(name, new GenericMapSerializable((Map<?, ?>) value), isMapEntry);
-			return;
+			instrumentation = configuredInstrumentation;
 		}
-
-		if (value instanceof List)
+		try
 		{
-			writeProperty(name, (List<?>) value, isMapEntry);
-			return;
+			return byteCountingWriter.byteCount();
 		}
-
-		if (value instanceof Set)
+		catch (final IOException e)
 		{
-			writeProperty(name, (Set<?>) value, isMapEntry);
-			return;
+			throw new CouldNotSerialiseException(graph, e);
 		}
-
-		throw new CouldNotWritePropertyException(name, value, "do not know how to write properties for this class");
 	}
 
-	@Override
-	public final void writeValue(@Nullable final Object value) throws CouldNotWriteValueException
+	// Exactly one of outputStream and writer is given; a failed document is reported to instrumentation here and only here
+	private void serialise(@NotNull final Serializable graph, @Nullable final OutputStream outputStream, @Nullable final Writer writer, @NotNull final Charset charset) throws CouldNotSerialiseException
 	{
-		if (value == null)
+		if (projection != null && outputDependsOnDocument())
 		{
-			writeValueNull();
-			return;
+			throw new IllegalStateException("A projection can not be used when the output depends on the document, as when references are deduplicated");
 		}
 
-		if (value instanceof Serializable)
+		try
 		{
-			writeValue((Serializable) value);
-			return;
+			if (outputStream == null)
+			{
+				assert writer != null;
+				start(writer, charset);
+			}
+			else
+			{
+				start(outputStream, charset);
+			}
+			beforeGraph(graph);
+			graph.serialise(projected());
+			finish();
 		}
-
-		if (value instanceof Serializable[])
+		catch (final CouldNotWriteDataException e)
 		{
-			writeValue((Serializable[]) value);
-			return;
+			documentFailed(graph, e);
+			throw new CouldNotSerialiseException(graph, e);
+		}
+		catch (final RuntimeException e)
+		{
+			documentFailed(graph, e);
+			throw e;
 		}
-
-		super.writeValue(value);
 	}
 
-	@Override
-	public final <S extends Serializable> void writeValue(@NotNull final S value) throws CouldNotWriteValueException
+	private void documentFailed(@NotNull final Serializable graph, @NotNull final Exception cause) throws SerializationCancelledException
 	{
-		value.serialise(this);
+		instrumentation.documentFailed(cause);
+		if (wasCancelled())
+		{
+			throw new SerializationCancelledException(graph, charactersWrittenBeforeCancellation(), cause);
+		}
 	}
 }
@@ -22,18 +22,25 @@
 
 package com.stormmq.serializers;
 
+import com.stormmq.serializers.cancellation.CancellableWriter;
+import com.stormmq.serializers.cancellation.Cancellation;
+import com.stormmq.serializers.fragments.FragmentCache;
+import com.stormmq.serializers.fragments.FragmentCapturingWriter;
+import com.stormmq.serializers.fragments.FragmentFormat;
+import com.stormmq.serializers.raw.RawFragment;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.math.BigDecimal;
 import java.nio.charset.Charset;
-import java.util.*;
 
+import static com.stormmq.serializers.EncodableCharacters.encodableCharacters;
+import static com.stormmq.serializers.NoSerializerInstrumentation.NoSerializerInstrumentationInstance;
+import static com.stormmq.serializers.ObjectKind.kindOf;
+import static com.stormmq.serializers.cancellation.NoCancellation.NoCancellationInstance;
+import static com.stormmq.serializers.fragments.FragmentCapturingWriter.NotCapturing;
 import static com.stormmq.string.StringConstants._false;
 import static com.stormmq.string.StringConstants._true;
-import static java.lang.String.format;
-import static java.util.Locale.ENGLISH;
 
 public abstract class AbstractValueSerializer implements ValueSerializer, StartFinish
 {
@@ -43,6 +50,8 @@ public abstract class AbstractValueSerializer implements ValueSerializer, StartF
 	@NotNull
 	private static final String FALSE = _false;
 
+	private static final int CharactersBetweenCancellationChecks = 4096;
+
 	@SuppressWarnings("InstanceVariableMayNotBeInitialized")
 	@NotNull
 	protected Charset charset;
@@ -51,128 +60,231 @@ public abstract class AbstractValueSerializer implements ValueSerializer, StartF
 	@NotNull
 	protected Writer writer;
 
+	@SuppressWarnings("InstanceVariableMayNotBeInitialized")
+	@NotNull
+	protected EncodableCharacters encodableCharacters;
+
+	@NotNull
+	protected SerializerInstrumentation instrumentation;
+
+	@Nullable
+	private FragmentCache fragmentCache;
+
+	@Nullable
+	private FragmentCapturingWriter fragmentCapturingWriter;
+
+	@Nullable
+	private FragmentFormat currentFragmentFormat;
+
+	@Nullable
+	private OutputStream directOutputStream;
+
+	@NotNull
+	private Cancellation cancellation;
+
+	@Nullable
+	private CancellableWriter cancellableWriter;
+
 	protected AbstractValueSerializer()
 	{
+		instrumentation = NoSerializerInstrumentationInstance;
+		fragmentCache = null;
+		fragmentCapturingWriter = null;
+		currentFragmentFormat = null;
+		directOutputStream = null;
+		cancellation = NoCancellationInstance;
+		cancellableWriter = null;
 	}
 
-	@Override
-	public void start(@NotNull final OutputStream outputStream, @NotNull final Charset charset) throws CouldNotWriteDataException
+	public final void useInstrumentation(@NotNull final SerializerInstrumentation instrumentation)
 	{
-		this.charset = charset;
-		writer = new OutputStreamWriter(outputStream, charset);
+		this.instrumentation = instrumentation;
 	}
 
-	@Override
-	public void finish() throws CouldNotWriteDataException
+	// Checked every few thousand characters written from the next start(); use a new Deadline or CancellationToken for each document
+	public final void useCancellation(@NotNull final Cancellation cancellation)
 	{
-		try
-		{
-			writer.flush();
-		}
-		catch (final IOException e)
-		{
-			throw new CouldNotWriteDataException(e);
-		}
+		this.cancellation = cancellation;
 	}
 
-	@SuppressWarnings("ConditionalExpression")
-	@Override
-	public void writeValue(final boolean value) throws CouldNotWriteValueException
+	public final void useFragmentCache(@Nullable final FragmentCache fragmentCache)
 	{
-		writeValue(convertBooleanToString(value));
+		this.fragmentCache = fragmentCache;
 	}
 
-	@NotNull
-	protected static String convertBooleanToString(final boolean value)
+	@Override
+	public void start(@NotNull final OutputStream outputStream, @NotNull final Charset charset) throws CouldNotWriteDataException
 	{
-		return value ? TRUE : FALSE;
+		final OutputStream instrumented = instrumentation.instrument(outputStream);
+		final OutputStreamWriter outputStreamWriter = new OutputStreamWriter(instrumented, charset);
+		start(outputStreamWriter, charset);
+		if (writer == outputStreamWriter)
+		{
+			directOutputStream = instrumented;
+		}
 	}
 
-	// TODO: Needs to be be pulled out and abstracted so that different rules can apply for different serialisations
 	@Override
-	public void writeValue(@Nullable final Object value) throws CouldNotWriteValueException
+	public void start(@NotNull final Writer writer, @NotNull final Charset charset) throws CouldNotWriteDataException
 	{
-		if (value == null)
+		this.charset = charset;
+		encodableCharacters = encodableCharacters(charset);
+		directOutputStream = null;
+		final Writer instrumented = instrumentation.instrument(writer);
+		final Writer cancellable;
+		if (cancellation == NoCancellationInstance)
 		{
-			writeValueNull();
-			return;
+			cancellableWriter = null;
+			cancellable = instrumented;
 		}
-
-		if (value instanceof MapSerializable)
+		else
 		{
-			writeValue((MapSerializable) value);
-			return;
+			cancellableWriter = new CancellableWriter(instrumented, cancellation, CharactersBetweenCancellationChecks);
+			cancellable = cancellableWriter;
 		}
-
-		if (value instanceof ValueSerializable)
+		if (fragmentCache == null || outputDependsOnDocument())
 		{
-			writeValue((ValueSerializable) value);
-			return;
+			fragmentCapturingWriter = null;
+			currentFragmentFormat = null;
+			this.writer = cancellable;
 		}
-
-		if (value instanceof MapSerializable[])
+		else
 		{
-			writeValue((MapSerializable[]) value);
-			return;
+			fragmentCapturingWriter = new FragmentCapturingWriter(cancellable);
+			currentFragmentFormat = new FragmentFormat(fragmentFormat(), encodableCharacters);
+			this.writer = fragmentCapturingWriter;
 		}
+		instrumentation.documentStarted();
+	}
+
+	// Points this serializer at writer outside of any document, so single values can be written with its escaping, as when filling template holes
+	public void attach(@NotNull final Writer writer, @NotNull final Charset charset)
+	{
+		this.charset = charset;
+		encodableCharacters = encodableCharacters(charset);
+		directOutputStream = null;
+		cancellableWriter = null;
+		fragmentCapturingWriter = null;
+		currentFragmentFormat = null;
+		this.writer = writer;
+	}
 
-		if (value instanceof ValueSerializable[])
+	// Raw fragments bypass the writer only when nothing (instrumentation, cancellation or fragment capture) wraps it
+	protected final void writeRawFragment(@NotNull final RawFragment value) throws CouldNotWriteDataException
+	{
+		try
 		{
-			writeValue((ValueSerializable[]) value);
-			return;
+			value.splice(writer, directOutputStream, charset);
 		}
-
-		if (value instanceof Integer)
+		catch (final IOException e)
 		{
-			writeValue((int) value);
-			return;
+			throw new CouldNotWriteDataException(e);
 		}
+	}
+
+	protected final boolean wasCancelled()
+	{
+		return cancellableWriter != null && cancellableWriter.cancelled();
+	}
 
-		if (value instanceof Long)
+	protected final long charactersWrittenBeforeCancellation()
+	{
+		return cancellableWriter == null ? 0L : cancellableWriter.charactersWritten();
+	}
+
+	// True if what is written for a map can depend on what has already been written in the document, as it does when references are deduplicated
+	// Such output is neither captured into nor taken from a fragment cache, as a fragment from one document could be wrong in another
+	protected boolean outputDependsOnDocument()
+	{
+		return false;
+	}
+
+	// Identifies output that is interchangeable between serializers; override if configuration changes what a fragment looks like
+	// The output charset's encodable characters are added to this, as they change what is escaped
+	@NotNull
+	protected Object fragmentFormat()
+	{
+		return getClass();
+	}
+
+	// Cached fragments are spliced in without re-running the value's serialisation, so instrumentation does not see their values
+	protected final boolean writeCachedFragment(@NotNull final Object value) throws CouldNotWriteValueException
+	{
+		if (fragmentCache == null || currentFragmentFormat == null || !(value instanceof Cacheable))
 		{
-			writeValue((long) value);
-			return;
+			return false;
 		}
 
-		if (value instanceof BigDecimal)
+		@Nullable final char[] fragment = fragmentCache.get(currentFragmentFormat, value);
+		if (fragment == null)
 		{
-			writeValue((BigDecimal) value);
-			return;
+			return false;
 		}
 
-		if (value instanceof String)
+		try
 		{
-			writeValue((String) value);
-			return;
+			writer.write(fragment);
 		}
-
-		if (value instanceof Boolean)
+		catch (final IOException e)
 		{
-			writeValue((boolean) value);
-			return;
+			throw new CouldNotWriteValueException(value, new CouldNotWriteDataException(e));
 		}
+		return true;
+	}
 
-		if (value instanceof Enum)
+	protected final int startFragment(@NotNull final Object value)
+	{
+		if (fragmentCapturingWriter == null || !(value instanceof Cacheable))
 		{
-			writeValue(((Enum<?>) value).name());
-			return;
+			return NotCapturing;
 		}
+		return fragmentCapturingWriter.startCapture();
+	}
 
-		if (value instanceof List)
+	protected final void finishFragment(@NotNull final Object value, final int start)
+	{
+		if (start == NotCapturing)
 		{
-			writeValue((List<?>) value);
+			return;
 		}
+		assert fragmentCache != null;
+		assert fragmentCapturingWriter != null;
+		assert currentFragmentFormat != null;
+		fragmentCache.put(currentFragmentFormat, value, fragmentCapturingWriter.finishCapture(start));
+	}
 
-		if (value instanceof Set)
+	@Override
+	public void finish() throws CouldNotWriteDataException
+	{
+		try
 		{
-			writeValue((Set<?>) value);
+			writer.flush();
 		}
-
-		if (value instanceof Map)
+		catch (final IOException e)
 		{
-			writeValue(new GenericMapSerializable((Map<?, ?>) value));
+			// Reported to instrumentation by whoever started the document, as is any other failure
+			throw new CouldNotWriteDataException(e);
 		}
+		instrumentation.documentFinished();
+	}
+
+	@SuppressWarnings("ConditionalExpression")
+	@Override
+	public void writeValue(final boolean value) throws CouldNotWriteValueException
+	{
+		writeValue(convertBooleanToString(value));
+	}
+
+	@NotNull
+	protected static String convertBooleanToString(final boolean value)
+	{
+		return value ? TRUE : FALSE;
+	}
 
-		throw new CouldNotWriteValueException(value, format(ENGLISH, "do not know how to write values for this class %1$s", value.getClass().getSimpleName()));
+	// TODO: Needs to be be pulled out and abstracted so that different rules can apply for different serialisations
+	@Override
+	public void writeValue(@Nullable final Object value) throws CouldNotWriteValueException
+	{
+		kindOf(value).writeValue(this, value);
 	}
 }
@@ -0,0 +1,203 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import static java.lang.Character.isHighSurrogate;
+import static java.lang.Character.isLowSurrogate;
+import static java.nio.charset.StandardCharsets.*;
+
+// Counts the bytes that an OutputStreamWriter would produce for the same characters, without producing them
+// Replacement of unmappable and malformed characters (including surrogates held back until a later write) mirrors the JDK's encoders
+// Charsets other than UTF-8, UTF-16BE, UTF-16LE, US-ASCII and ISO-8859-1 are counted by encoding and then discarding
+public final class ByteCountingWriter extends Writer
+{
+	private static final int VariableLength = 0;
+	private static final int OneByte = 1;
+	private static final int TwoBytes = 2;
+	private static final int FourBytes = 4;
+
+	private final int basicMultilingualPlaneLength;
+	private final int supplementaryLength;
+	private final int malformedLength;
+	@Nullable private final ByteCountingOutputStream encodedByteCountingOutputStream;
+	@Nullable private final Writer encodingWriter;
+	private long byteCount;
+	private boolean pendingHighSurrogate;
+
+	public ByteCountingWriter(@NotNull final Charset charset)
+	{
+		if (charset.equals(UTF_8))
+		{
+			basicMultilingualPlaneLength = VariableLength;
+			supplementaryLength = FourBytes;
+			malformedLength = OneByte;
+		}
+		else if (charset.equals(UTF_16BE) || charset.equals(UTF_16LE))
+		{
+			basicMultilingualPlaneLength = TwoBytes;
+			supplementaryLength = FourBytes;
+			malformedLength = TwoBytes;
+		}
+		else if (charset.equals(US_ASCII) || charset.equals(ISO_8859_1))
+		{
+			basicMultilingualPlaneLength = OneByte;
+			supplementaryLength = OneByte;
+			malformedLength = OneByte;
+		}
+		else
+		{
+			basicMultilingualPlaneLength = VariableLength;
+			supplementaryLength = VariableLength;
+			malformedLength = VariableLength;
+			encodedByteCountingOutputStream = new ByteCountingOutputStream();
+			encodingWriter = new OutputStreamWriter(encodedByteCountingOutputStream, charset);
+			byteCount = 0L;
+			pendingHighSurrogate = false;
+			return;
+		}
+		encodedByteCountingOutputStream = null;
+		encodingWriter = null;
+		byteCount = 0L;
+		pendingHighSurrogate = false;
+	}
+
+	@Override
+	public void write(final int c) throws IOException
+	{
+		if (encodingWriter != null)
+		{
+			encodingWriter.write(c);
+			return;
+		}
+		count((char) c);
+	}
+
+	@Override
+	public void write(@NotNull final char[] cbuf, final int off, final int len) throws IOException
+	{
+		if (encodingWriter != null)
+		{
+			encodingWriter.write(cbuf, off, len);
+			return;
+		}
+		final int end = off + len;
+		for (int index = off; index < end; index++)
+		{
+			count(cbuf[index]);
+		}
+	}
+
+	@Override
+	public void write(@NotNull final String str, final int off, final int len) throws IOException
+	{
+		if (encodingWriter != null)
+		{
+			encodingWriter.write(str, off, len);
+			return;
+		}
+		final int end = off + len;
+		for (int index = off; index < end; index++)
+		{
+			count(str.charAt(index));
+		}
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		if (encodingWriter != null)
+		{
+			encodingWriter.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		flush();
+	}
+
+	public long byteCount() throws IOException
+	{
+		if (encodingWriter == null || encodedByteCountingOutputStream == null)
+		{
+			return byteCount;
+		}
+		encodingWriter.flush();
+		return encodedByteCountingOutputStream.byteCount();
+	}
+
+	@SuppressWarnings("MagicNumber")
+	private void count(final char character)
+	{
+		if (pendingHighSurrogate)
+		{
+			pendingHighSurrogate = false;
+			if (isLowSurrogate(character))
+			{
+				byteCount += supplementaryLength;
+				return;
+			}
+			byteCount += malformedLength;
+		}
+
+		if (isHighSurrogate(character))
+		{
+			pendingHighSurrogate = true;
+			return;
+		}
+
+		if (isLowSurrogate(character))
+		{
+			byteCount += malformedLength;
+			return;
+		}
+
+		if (basicMultilingualPlaneLength != VariableLength)
+		{
+			byteCount += basicMultilingualPlaneLength;
+			return;
+		}
+
+		if (character < 0x80)
+		{
+			byteCount += 1;
+		}
+		else if (character < 0x800)
+		{
+			byteCount += 2;
+		}
+		else
+		{
+			byteCount += 3;
+		}
+	}
+}
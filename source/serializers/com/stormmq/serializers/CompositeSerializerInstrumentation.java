@@ -0,0 +1,145 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+import static java.util.Arrays.copyOf;
+
+public final class CompositeSerializerInstrumentation implements SerializerInstrumentation
+{
+	@NotNull private final SerializerInstrumentation[] serializerInstrumentations;
+
+	public CompositeSerializerInstrumentation(@NotNull final SerializerInstrumentation... serializerInstrumentations)
+	{
+		this.serializerInstrumentations = copyOf(serializerInstrumentations, serializerInstrumentations.length);
+	}
+
+	@NotNull
+	@Override
+	public OutputStream instrument(@NotNull final OutputStream outputStream)
+	{
+		OutputStream instrumented = outputStream;
+		for (final SerializerInstrumentation serializerInstrumentation : serializerInstrumentations)
+		{
+			instrumented = serializerInstrumentation.instrument(instrumented);
+		}
+		return instrumented;
+	}
+
+	@NotNull
+	@Override
+	public Writer instrument(@NotNull final Writer writer)
+	{
+		Writer instrumented = writer;
+		for (final SerializerInstrumentation serializerInstrumentation : serializerInstrumentations)
+		{
+			instrumented = serializerInstrumentation.instrument(instrumented);
+		}
+		return instrumented;
+	}
+
+	@Override
+	public void documentStarted()
+	{
+		for (final SerializerInstrumentation serializerInstrumentation : serializerInstrumentations)
+		{
+			serializerInstrumentation.documentStarted();
+		}
+	}
+
+	@Override
+	public void documentFinished()
+	{
+		for (final SerializerInstrumentation serializerInstrumentation : serializerInstrumentations)
+		{
+			serializerInstrumentation.documentFinished();
+		}
+	}
+
+	@Override
+	public void documentFailed(@NotNull final Exception cause)
+	{
+		for (final SerializerInstrumentation serializerInstrumentation : serializerInstrumentations)
+		{
+			serializerInstrumentation.documentFailed(cause);
+		}
+	}
+
+	@Override
+	public void value(@NotNull final ValueType valueType)
+	{
+		for (final SerializerInstrumentation serializerInstrumentation : serializerInstrumentations)
+		{
+			serializerInstrumentation.value(valueType);
+		}
+	}
+
+	@Override
+	public void enteredNesting(@NotNull final ValueType valueType, @NotNull final Object value)
+	{
+		for (final SerializerInstrumentation serializerInstrumentation : serializerInstrumentations)
+		{
+			serializerInstrumentation.enteredNesting(valueType, value);
+		}
+	}
+
+	@Override
+	public void leftNesting(@NotNull final ValueType valueType, @NotNull final Object value)
+	{
+		for (final SerializerInstrumentation serializerInstrumentation : serializerInstrumentations)
+		{
+			serializerInstrumentation.leftNesting(valueType, value);
+		}
+	}
+
+	@Override
+	public void enteredValue(@NotNull final ValueSerializable value)
+	{
+		for (final SerializerInstrumentation serializerInstrumentation : serializerInstrumentations)
+		{
+			serializerInstrumentation.enteredValue(value);
+		}
+	}
+
+	@Override
+	public void leftValue(@NotNull final ValueSerializable value)
+	{
+		for (final SerializerInstrumentation serializerInstrumentation : serializerInstrumentations)
+		{
+			serializerInstrumentation.leftValue(value);
+		}
+	}
+
+	@Override
+	public void stringEscaped(final int escapes)
+	{
+		for (final SerializerInstrumentation serializerInstrumentation : serializerInstrumentations)
+		{
+			serializerInstrumentation.stringEscaped(escapes);
+		}
+	}
+}
@@ -22,6 +22,7 @@
 
 package com.stormmq.serializers;
 
+import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
@@ -29,7 +30,7 @@ import java.io.IOException;
 import static java.lang.String.format;
 import static java.util.Locale.ENGLISH;
 
-public final class CouldNotSerialiseException extends AbstractDataException
+public class CouldNotSerialiseException extends AbstractDataException
 {
 	public CouldNotSerialiseException(@NotNull final Serializable value, @NotNull final AbstractDataException cause)
 	{
@@ -40,4 +41,9 @@ public final class CouldNotSerialiseException extends AbstractDataException
 	{
 		super(format(ENGLISH, "Could not serialise %1$s because of IOException", value), cause);
 	}
+
+	protected CouldNotSerialiseException(@NonNls @NotNull final String message, @NotNull final Exception cause)
+	{
+		super(message, cause);
+	}
 }
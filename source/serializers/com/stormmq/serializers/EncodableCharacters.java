@@ -0,0 +1,121 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.lang.Character.*;
+import static java.nio.charset.StandardCharsets.*;
+
+// Which UTF-16 chars a charset can encode, worked out once per charset, so escaping can use JSON and XML character escapes rather than letting the encoder substitute '?'
+// Everything below a charset's first unencodable char is encodable without consulting the bitmap, so UTF-8, US-ASCII and ISO-8859-1 never need one
+// Surrogates are either all encodable or all not, depending on whether the charset can encode supplementary code points
+public final class EncodableCharacters
+{
+	private static final int Chars = MAX_VALUE + 1;
+	private static final int BitsPerWord = 64;
+	@NonNls private static final String SupplementaryCodePoint = "\uD83D\uDE00";
+
+	@NotNull public static final EncodableCharacters EverythingEncodable = new EncodableCharacters(Chars, null);
+	@NotNull public static final EncodableCharacters AsciiEncodable = new EncodableCharacters(0x80, null);
+	@NotNull public static final EncodableCharacters Latin1Encodable = new EncodableCharacters(0x100, null);
+
+	@NotNull private static final ConcurrentMap<Charset, EncodableCharacters> Cache = new ConcurrentHashMap<>(16);
+
+	@NotNull
+	public static EncodableCharacters encodableCharacters(@NotNull final Charset charset)
+	{
+		if (charset.equals(UTF_8) || charset.equals(UTF_16) || charset.equals(UTF_16BE) || charset.equals(UTF_16LE))
+		{
+			return EverythingEncodable;
+		}
+		if (charset.equals(US_ASCII))
+		{
+			return AsciiEncodable;
+		}
+		if (charset.equals(ISO_8859_1))
+		{
+			return Latin1Encodable;
+		}
+		return Cache.computeIfAbsent(charset, EncodableCharacters::compute);
+	}
+
+	@NotNull
+	private static EncodableCharacters compute(@NotNull final Charset charset)
+	{
+		if (!charset.canEncode())
+		{
+			throw new IllegalArgumentException("charset can not encode");
+		}
+		final CharsetEncoder encoder = charset.newEncoder();
+		final boolean supplementaryEncodable = encoder.canEncode(SupplementaryCodePoint);
+
+		final long[] bitmap = new long[Chars / BitsPerWord];
+		int firstUnencodable = Chars;
+		boolean anyEncodableAfterFirstUnencodable = false;
+		for (int character = 0; character < Chars; character++)
+		{
+			final boolean encodable = isSurrogate((char) character) ? supplementaryEncodable : encoder.canEncode((char) character);
+			if (encodable)
+			{
+				bitmap[character / BitsPerWord] |= 1L << character;
+				if (firstUnencodable != Chars)
+				{
+					anyEncodableAfterFirstUnencodable = true;
+				}
+			}
+			else if (firstUnencodable == Chars)
+			{
+				firstUnencodable = character;
+			}
+		}
+		return new EncodableCharacters(firstUnencodable, anyEncodableAfterFirstUnencodable ? bitmap : null);
+	}
+
+	private final int allEncodableBelow;
+	@Nullable private final long[] bitmap;
+
+	@SuppressWarnings("AssignmentToCollectionOrArrayFieldFromParameter")
+	private EncodableCharacters(final int allEncodableBelow, @Nullable final long[] bitmap)
+	{
+		this.allEncodableBelow = allEncodableBelow;
+		this.bitmap = bitmap;
+	}
+
+	public boolean encodesEverything()
+	{
+		return allEncodableBelow == Chars;
+	}
+
+	public boolean encodable(final char character)
+	{
+		return character < allEncodableBelow || bitmap != null && (bitmap[character / BitsPerWord] & 1L << character) != 0L;
+	}
+}
@@ -0,0 +1,408 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.stormmq.serializers;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+// The one set of rules for writing a value or property whose class is only known at runtime; kindOf() finds the kind, and each kind calls the matching typed method
+// A Serializable is written as a graph only by a Serializer; anywhere else it is written as whatever else it is
+public enum ObjectKind
+{
+	NullObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValueNull();
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writePropertyNull(name, isMapEntry);
+		}
+	},
+	SerializableObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			if (valueSerializer instanceof Serializer)
+			{
+				((Serializer) valueSerializer).writeValue((Serializable) value);
+				return;
+			}
+			kindOfUnlessSerializable(value).writeValue(valueSerializer, value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			kindOfUnlessSerializable(value).writeProperty(mapSerializer, name, value, isMapEntry);
+		}
+	},
+	SerializablesObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			if (valueSerializer instanceof Serializer)
+			{
+				((Serializer) valueSerializer).writeValue((Serializable[]) value);
+				return;
+			}
+			kindOfUnlessSerializable(value).writeValue(valueSerializer, value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			kindOfUnlessSerializable(value).writeProperty(mapSerializer, name, value, isMapEntry);
+		}
+	},
+	MapSerializableObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue((MapSerializable) value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, (MapSerializable) value, isMapEntry);
+		}
+	},
+	ValueSerializableObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue((ValueSerializable) value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, (ValueSerializable) value, isMapEntry);
+		}
+	},
+	MapSerializablesObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue((MapSerializable[]) value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, (MapSerializable[]) value, isMapEntry);
+		}
+	},
+	ValueSerializablesObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue((ValueSerializable[]) value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, (ValueSerializable[]) value, isMapEntry);
+		}
+	},
+	IntegerObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue((int) value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, (int) value, isMapEntry);
+		}
+	},
+	LongObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue((long) value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, (long) value, isMapEntry);
+		}
+	},
+	// A MapSerializer has no way to write a BigDecimal property
+	BigDecimalObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue((BigDecimal) value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			UnknownObject.writeProperty(mapSerializer, name, value, isMapEntry);
+		}
+	},
+	StringObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue((String) value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, (String) value, isMapEntry);
+		}
+	},
+	BooleanObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue((boolean) value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, (boolean) value, isMapEntry);
+		}
+	},
+	EnumObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(((Enum<?>) value).name());
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, ((Enum<?>) value).name(), isMapEntry);
+		}
+	},
+	UUIDObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue((UUID) value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, value.toString(), isMapEntry);
+		}
+	},
+	ListObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue((List<?>) value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, (List<?>) value, isMapEntry);
+		}
+	},
+	SetObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue((Set<?>) value);
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, (Set<?>) value, isMapEntry);
+		}
+	},
+	MapObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(new GenericMapSerializable((Map<?, ?>) value));
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, new GenericMapSerializable((Map<?, ?>) value), isMapEntry);
+		}
+	},
+	UnknownObject
+	{
+		@Override
+		public void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException
+		{
+			assert value != null;
+			throw new CouldNotWriteValueException(value, format(ENGLISH, "do not know how to write values for this class %1$s", value.getClass().getSimpleName()));
+		}
+
+		@Override
+		public void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			throw new CouldNotWritePropertyException(name, value, "do not know how to write properties for this class");
+		}
+	},
+	;
+
+	@SuppressWarnings("MethodWithMultipleReturnPoints")
+	@NotNull
+	public static ObjectKind kindOf(@Nullable final Object value)
+	{
+		if (value == null)
+		{
+			return NullObject;
+		}
+
+		if (value instanceof Serializable)
+		{
+			return SerializableObject;
+		}
+
+		if (value instanceof Serializable[])
+		{
+			return SerializablesObject;
+		}
+
+		return kindOfUnlessSerializable(value);
+	}
+
+	@SuppressWarnings("MethodWithMultipleReturnPoints")
+	@NotNull
+	private static ObjectKind kindOfUnlessSerializable(@Nullable final Object value)
+	{
+		if (value instanceof MapSerializable)
+		{
+			return MapSerializableObject;
+		}
+
+		if (value instanceof ValueSerializable)
+		{
+			return ValueSerializableObject;
+		}
+
+		if (value instanceof MapSerializable[])
+		{
+			return MapSerializablesObject;
+		}
+
+		if (value instanceof ValueSerializable[])
+		{
+			return ValueSerializablesObject;
+		}
+
+		if (value instanceof Integer)
+		{
+			return IntegerObject;
+		}
+
+		if (value instanceof Long)
+		{
+			return LongObject;
+		}
+
+		if (value instanceof BigDecimal)
+		{
+			return BigDecimalObject;
+		}
+
+		if (value instanceof String)
+		{
+			return StringObject;
+		}
+
+		if (value instanceof Boolean)
+		{
+			return BooleanObject;
+		}
+
+		if (value instanceof Enum)
+		{
+			return EnumObject;
+		}
+
+		if (value instanceof UUID)
+		{
+			return UUIDObject;
+		}
+
+		if (value instanceof List)
+		{
+			return ListObject;
+		}
+
+		if (value instanceof Set)
+		{
+			return SetObject;
+		}
+
+		if (value instanceof Map)
+		{
+			return MapObject;
+		}
+
+		return UnknownObject;
+	}
+
+	public abstract void writeValue(@NotNull final ValueSerializer valueSerializer, @Nullable final Object value) throws CouldNotWriteValueException;
+
+	public abstract void writeProperty(@NotNull final MapSerializer mapSerializer, @FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException;
+}
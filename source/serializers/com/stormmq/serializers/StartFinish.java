@@ -25,11 +25,14 @@ package com.stormmq.serializers;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.OutputStream;
+import java.io.Writer;
 import java.nio.charset.Charset;
 
 public interface StartFinish
 {
 	void start(@NotNull final OutputStream outputStream, @NotNull final Charset charset) throws CouldNotWriteDataException;
 
+	void start(@NotNull final Writer writer, @NotNull final Charset charset) throws CouldNotWriteDataException;
+
 	void finish() throws CouldNotWriteDataException;
 }
@@ -0,0 +1,144 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.batching;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.Serializable;
+import com.stormmq.serializers.framing.FrameBuffer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+import static java.lang.Math.max;
+import static java.nio.ByteBuffer.wrap;
+import static java.util.Arrays.copyOf;
+
+// Serializes many documents back to back into one growable buffer with one serializer and one Writer, remembering where each ends
+// The batch can then be written in one go, or each document handed out as a view onto the buffer; not thread safe
+public final class SerializedBatch
+{
+	@NotNull private final AbstractSerializer serializer;
+	@NotNull private final Charset charset;
+	@NotNull private final FrameBuffer buffer;
+	@NotNull private Writer writer;
+	@NotNull private int[] ends;
+	private int documents;
+
+	public SerializedBatch(@NotNull final AbstractSerializer serializer, @NotNull final Charset charset, final int initialDocuments, final int initialCapacity)
+	{
+		this.serializer = serializer;
+		this.charset = charset;
+		buffer = new FrameBuffer(initialCapacity);
+		writer = new OutputStreamWriter(buffer, charset);
+		ends = new int[max(initialDocuments, 1)];
+		documents = 0;
+	}
+
+	// Returns the document's index; a document that fails to serialise is not added
+	public int add(@NotNull final Serializable document) throws CouldNotSerialiseException
+	{
+		final int start = buffer.size();
+		try
+		{
+			serializer.serialise(document, writer, charset);
+		}
+		catch (CouldNotSerialiseException | RuntimeException e)
+		{
+			// The writer may still hold part of the failed document
+			writer = new OutputStreamWriter(buffer, charset);
+			buffer.truncate(start);
+			throw e;
+		}
+
+		if (documents == ends.length)
+		{
+			ends = copyOf(ends, documents * 2);
+		}
+		ends[documents] = buffer.size();
+		return documents++;
+	}
+
+	public int documents()
+	{
+		return documents;
+	}
+
+	public int offset(final int index)
+	{
+		checkIndex(index);
+		return index == 0 ? 0 : ends[index - 1];
+	}
+
+	public int length(final int index)
+	{
+		return ends[index] - offset(index);
+	}
+
+	public int size()
+	{
+		return buffer.size();
+	}
+
+	// Shares the batch's bytes, so is only valid until the batch is cleared or added to
+	@NotNull
+	public ByteBuffer document(final int index)
+	{
+		final int offset = offset(index);
+		return wrap(buffer.bytes(), offset, ends[index] - offset).slice();
+	}
+
+	public void writeTo(@NotNull final OutputStream outputStream) throws IOException
+	{
+		outputStream.write(buffer.bytes(), 0, buffer.size());
+	}
+
+	public void writeTo(@NotNull final WritableByteChannel channel) throws IOException
+	{
+		final ByteBuffer all = wrap(buffer.bytes(), 0, buffer.size());
+		while (all.hasRemaining())
+		{
+			channel.write(all);
+		}
+	}
+
+	public void clear()
+	{
+		buffer.reset();
+		documents = 0;
+	}
+
+	private void checkIndex(final int index)
+	{
+		if (index < 0 || index >= documents)
+		{
+			throw new IndexOutOfBoundsException(Integer.toString(index));
+		}
+	}
+}
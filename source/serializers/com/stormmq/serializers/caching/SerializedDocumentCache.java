@@ -0,0 +1,376 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.caching;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.Serializable;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.channels.Channels.newChannel;
+import static java.nio.channels.Channels.newOutputStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.*;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Comparator.comparing;
+
+// Documents are only ever made visible by an atomic rename of a completely written temporary file, so a crash leaves at worst a stray temporary file, which is removed on construction once it is an hour old
+// Younger temporary files may belong to another cache, in this or another process, that is still writing into the same directory, so they are left alone
+// Keys must change whenever the graph, or the serializer's configuration, changes; a version number or a hash of the graph both work
+public final class SerializedDocumentCache
+{
+	@NonNls @NotNull private static final String DocumentSuffix = ".document";
+	@NonNls @NotNull private static final String TemporarySuffix = ".tmp";
+	@NonNls @NotNull private static final String TemporaryPrefix = "partial-";
+	private static final char[] Hexadecimal = "0123456789abcdef".toCharArray();
+	private static final long StrayTemporaryFileAgeMilliseconds = 60L * 60L * 1000L;
+
+	@NotNull private final Path directory;
+	private final long maximumBytes;
+	@NotNull private final AtomicLong bytes;
+	@NotNull private final AtomicLong hits;
+	@NotNull private final AtomicLong misses;
+	@NotNull private final AtomicLong evictions;
+
+	public SerializedDocumentCache(@NotNull final Path directory, final long maximumBytes) throws IOException
+	{
+		if (maximumBytes < 1L)
+		{
+			throw new IllegalArgumentException("maximumBytes must be positive");
+		}
+		this.directory = createDirectories(directory);
+		this.maximumBytes = maximumBytes;
+		bytes = new AtomicLong(0L);
+		hits = new AtomicLong(0L);
+		misses = new AtomicLong(0L);
+		evictions = new AtomicLong(0L);
+
+		final long strayBefore = System.currentTimeMillis() - StrayTemporaryFileAgeMilliseconds;
+		try (final DirectoryStream<Path> temporaryFiles = newDirectoryStream(directory, TemporaryPrefix + '*' + TemporarySuffix))
+		{
+			for (final Path temporaryFile : temporaryFiles)
+			{
+				final FileTime lastModified;
+				try
+				{
+					lastModified = getLastModifiedTime(temporaryFile);
+				}
+				catch (final NoSuchFileException ignored)
+				{
+					continue;
+				}
+				if (lastModified.toMillis() < strayBefore)
+				{
+					deleteIfExists(temporaryFile);
+				}
+			}
+		}
+		for (final Path document : documents())
+		{
+			bytes.addAndGet(size(document));
+		}
+	}
+
+	public void serialise(@NotNull final AbstractSerializer serializer, @NonNls @NotNull final String key, @NotNull final Serializable graph, @NotNull final OutputStream outputStream, @NotNull final Charset charset) throws CouldNotSerialiseException
+	{
+		serialise(serializer, key, graph, newChannel(outputStream), charset);
+	}
+
+	// When the channel is a socket or file channel, a hit is served by the kernel without copying through the heap
+	public void serialise(@NotNull final AbstractSerializer serializer, @NonNls @NotNull final String key, @NotNull final Serializable graph, @NotNull final WritableByteChannel channel, @NotNull final Charset charset) throws CouldNotSerialiseException
+	{
+		final Path document = directory.resolve(fileName(serializer, key, charset));
+		try
+		{
+			if (!transferIfPresent(document, channel))
+			{
+				misses.incrementAndGet();
+				store(serializer, graph, charset, document, channel);
+			}
+			else
+			{
+				hits.incrementAndGet();
+			}
+		}
+		catch (final IOException e)
+		{
+			throw new CouldNotSerialiseException(graph, e);
+		}
+	}
+
+	public void invalidate(@NotNull final AbstractSerializer serializer, @NonNls @NotNull final String key, @NotNull final Charset charset) throws IOException
+	{
+		final Path document = directory.resolve(fileName(serializer, key, charset));
+		final long size;
+		try
+		{
+			size = size(document);
+		}
+		catch (final NoSuchFileException ignored)
+		{
+			return;
+		}
+		if (deleteIfExists(document))
+		{
+			bytes.addAndGet(-size);
+		}
+	}
+
+	public long hits()
+	{
+		return hits.get();
+	}
+
+	public long misses()
+	{
+		return misses.get();
+	}
+
+	public long evictions()
+	{
+		return evictions.get();
+	}
+
+	public long bytes()
+	{
+		return bytes.get();
+	}
+
+	// The document is streamed from the temporary file before it is published, so neither eviction nor a concurrent writer can take it away first; a document larger than the whole cache is streamed but not kept
+	private void store(@NotNull final AbstractSerializer serializer, @NotNull final Serializable graph, @NotNull final Charset charset, @NotNull final Path document, @NotNull final WritableByteChannel channel) throws CouldNotSerialiseException, IOException
+	{
+		final Path temporaryFile = createTempFile(directory, TemporaryPrefix, TemporarySuffix);
+		try
+		{
+			final long size;
+			try (final FileChannel fileChannel = FileChannel.open(temporaryFile, READ, WRITE))
+			{
+				final OutputStream outputStream = new BufferedOutputStream(newOutputStream(fileChannel), 8192);
+				serializer.serialise(graph, outputStream, charset);
+				outputStream.flush();
+				fileChannel.force(true);
+				size = fileChannel.size();
+				transfer(fileChannel, size, channel);
+			}
+			if (size > maximumBytes)
+			{
+				return;
+			}
+			try
+			{
+				move(temporaryFile, document, ATOMIC_MOVE);
+			}
+			catch (final AtomicMoveNotSupportedException ignored)
+			{
+				move(temporaryFile, document, REPLACE_EXISTING);
+			}
+			forceDirectory();
+			bytes.addAndGet(size);
+		}
+		finally
+		{
+			deleteIfExists(temporaryFile);
+		}
+		evict(document);
+	}
+
+	// Makes the rename durable; some platforms, such as Windows, can not open a directory, and there the rename is left to the file system
+	private void forceDirectory() throws IOException
+	{
+		final FileChannel directoryChannel;
+		try
+		{
+			directoryChannel = FileChannel.open(directory, READ);
+		}
+		catch (final AccessDeniedException ignored)
+		{
+			return;
+		}
+		try
+		{
+			directoryChannel.force(true);
+		}
+		finally
+		{
+			directoryChannel.close();
+		}
+	}
+
+	// The channel is opened before anything else, so a concurrent eviction can not remove the document part way through a transfer
+	private boolean transferIfPresent(@NotNull final Path document, @NotNull final WritableByteChannel channel) throws IOException
+	{
+		final FileChannel fileChannel;
+		try
+		{
+			fileChannel = FileChannel.open(document, READ);
+		}
+		catch (final NoSuchFileException ignored)
+		{
+			return false;
+		}
+
+		try
+		{
+			try
+			{
+				setLastModifiedTime(document, FileTime.fromMillis(System.currentTimeMillis()));
+			}
+			catch (final NoSuchFileException ignored)
+			{
+			}
+
+			transfer(fileChannel, fileChannel.size(), channel);
+		}
+		finally
+		{
+			fileChannel.close();
+		}
+		return true;
+	}
+
+	private static void transfer(@NotNull final FileChannel fileChannel, final long size, @NotNull final WritableByteChannel channel) throws IOException
+	{
+		long position = 0L;
+		while (position < size)
+		{
+			position += fileChannel.transferTo(position, size - position, channel);
+		}
+	}
+
+	// Least recently used by last modified time, which every hit refreshes; the document just written is evicted last
+	private synchronized void evict(@NotNull final Path justWritten) throws IOException
+	{
+		if (bytes.get() <= maximumBytes)
+		{
+			return;
+		}
+
+		// Concurrent writers of the same key replace each other's documents, so the running total drifts and is corrected here
+		final List<Path> documents = documents();
+		final List<Candidate> candidates = new ArrayList<>(documents.size());
+		long total = 0L;
+		for (final Path document : documents)
+		{
+			try
+			{
+				final long lastModified = document.equals(justWritten) ? Long.MAX_VALUE : getLastModifiedTime(document).toMillis();
+				final long size = size(document);
+				candidates.add(new Candidate(document, lastModified, size));
+				total += size;
+			}
+			catch (final NoSuchFileException ignored)
+			{
+			}
+		}
+		bytes.set(total);
+		candidates.sort(comparing(candidate -> candidate.lastModified));
+
+		for (final Candidate candidate : candidates)
+		{
+			if (bytes.get() <= maximumBytes)
+			{
+				return;
+			}
+			if (deleteIfExists(candidate.document))
+			{
+				bytes.addAndGet(-candidate.size);
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	@NotNull
+	private List<Path> documents() throws IOException
+	{
+		final List<Path> documents = new ArrayList<>(64);
+		try (final DirectoryStream<Path> directoryStream = newDirectoryStream(directory, '*' + DocumentSuffix))
+		{
+			for (final Path document : directoryStream)
+			{
+				documents.add(document);
+			}
+		}
+		return documents;
+	}
+
+	@NonNls
+	@NotNull
+	private static String fileName(@NotNull final AbstractSerializer serializer, @NonNls @NotNull final String key, @NotNull final Charset charset)
+	{
+		final MessageDigest messageDigest;
+		try
+		{
+			messageDigest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (final NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException("Every JVM should support SHA-256", e);
+		}
+		messageDigest.update(serializer.getClass().getName().getBytes(UTF_8));
+		messageDigest.update((byte) 0);
+		messageDigest.update(charset.name().getBytes(UTF_8));
+		messageDigest.update((byte) 0);
+		final byte[] digest = messageDigest.digest(key.getBytes(UTF_8));
+
+		final char[] fileName = new char[digest.length * 2];
+		for (int index = 0; index < digest.length; index++)
+		{
+			final int octet = digest[index] & 0xFF;
+			fileName[index * 2] = Hexadecimal[octet >>> 4];
+			fileName[index * 2 + 1] = Hexadecimal[octet & 0x0F];
+		}
+		return new String(fileName) + DocumentSuffix;
+	}
+
+	private static final class Candidate
+	{
+		@NotNull private final Path document;
+		private final long lastModified;
+		private final long size;
+
+		private Candidate(@NotNull final Path document, final long lastModified, final long size)
+		{
+			this.document = document;
+			this.lastModified = lastModified;
+			this.size = size;
+		}
+	}
+}
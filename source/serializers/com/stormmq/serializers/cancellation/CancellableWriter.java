@@ -0,0 +1,119 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.cancellation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+
+// Consults the cancellation once every so many characters rather than once per write; once cancelled, every later write fails too, so a graph that swallows the first failure still stops
+public final class CancellableWriter extends Writer
+{
+	@NotNull private final Writer writer;
+	@NotNull private final Cancellation cancellation;
+	private final int charactersBetweenChecks;
+	private int charactersUntilCheck;
+	private long charactersWritten;
+	private boolean cancelled;
+
+	public CancellableWriter(@NotNull final Writer writer, @NotNull final Cancellation cancellation, final int charactersBetweenChecks)
+	{
+		if (charactersBetweenChecks < 1)
+		{
+			throw new IllegalArgumentException("charactersBetweenChecks must be at least 1");
+		}
+		this.writer = writer;
+		this.cancellation = cancellation;
+		this.charactersBetweenChecks = charactersBetweenChecks;
+		charactersUntilCheck = charactersBetweenChecks;
+		charactersWritten = 0L;
+		cancelled = false;
+	}
+
+	@Override
+	public void write(final int c) throws IOException
+	{
+		guard(1);
+		writer.write(c);
+		charactersWritten++;
+	}
+
+	@Override
+	public void write(@NotNull final char[] cbuf, final int off, final int len) throws IOException
+	{
+		guard(len);
+		writer.write(cbuf, off, len);
+		charactersWritten += len;
+	}
+
+	@Override
+	public void write(@NotNull final String str, final int off, final int len) throws IOException
+	{
+		guard(len);
+		writer.write(str, off, len);
+		charactersWritten += len;
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		writer.close();
+	}
+
+	public boolean cancelled()
+	{
+		return cancelled;
+	}
+
+	public long charactersWritten()
+	{
+		return charactersWritten;
+	}
+
+	private void guard(final int length) throws InterruptedIOException
+	{
+		if (!cancelled)
+		{
+			charactersUntilCheck -= length;
+			if (charactersUntilCheck > 0)
+			{
+				return;
+			}
+			charactersUntilCheck = charactersBetweenChecks;
+			cancelled = cancellation.isCancelled();
+			if (!cancelled)
+			{
+				return;
+			}
+		}
+		throw new InterruptedIOException("Serialisation was cancelled");
+	}
+}
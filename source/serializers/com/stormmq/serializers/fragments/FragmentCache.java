@@ -0,0 +1,255 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.fragments;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.management.*;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static java.lang.management.ManagementFactory.getPlatformMBeanServer;
+import static java.util.Locale.ENGLISH;
+
+// Values are keyed by identity, not equals(), and held strongly until evicted; formats are keyed by equals(); weight is the number of characters held
+public final class FragmentCache implements FragmentCacheMXBean
+{
+	@NonNls @NotNull private final String name;
+	private final long maximumWeight;
+	@NotNull private final Map<Object, Map<Object, Entry>> formats;
+	@NotNull private final Entry sentinel;
+	private int size;
+	private long weight;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public FragmentCache(@NonNls @NotNull final String name, final long maximumWeight)
+	{
+		if (maximumWeight < 1L)
+		{
+			throw new IllegalArgumentException("maximumWeight must be positive");
+		}
+		this.name = name;
+		this.maximumWeight = maximumWeight;
+		formats = new HashMap<>(4);
+		sentinel = new Entry(null, null, null);
+		sentinel.previous = sentinel;
+		sentinel.next = sentinel;
+		size = 0;
+		weight = 0L;
+		hits = 0L;
+		misses = 0L;
+		evictions = 0L;
+	}
+
+	public void registerPlatformMBean()
+	{
+		final MBeanServer mBeanServer = getPlatformMBeanServer();
+		try
+		{
+			final ObjectName objectName = new ObjectName(format(ENGLISH, "com.stormmq.serializers:type=FragmentCache,name=%1$s", ObjectName.quote(name)));
+			if (!mBeanServer.isRegistered(objectName))
+			{
+				mBeanServer.registerMBean(this, objectName);
+			}
+		}
+		catch (final InstanceAlreadyExistsException ignored)
+		{
+		}
+		catch (final MalformedObjectNameException | MBeanRegistrationException | NotCompliantMBeanException e)
+		{
+			throw new IllegalStateException(format(ENGLISH, "Could not register fragment cache %1$s", name), e);
+		}
+	}
+
+	// format distinguishes serializers whose output differs, eg the serializer's class; an entry written by another format is a miss
+	@Nullable
+	public synchronized char[] get(@NotNull final Object format, @NotNull final Object value)
+	{
+		@Nullable final Map<Object, Entry> entries = formats.get(format);
+		@Nullable final Entry entry = entries == null ? null : entries.get(value);
+		if (entry == null)
+		{
+			misses++;
+			return null;
+		}
+		hits++;
+		entry.unlink();
+		entry.linkBefore(sentinel);
+		return entry.fragment;
+	}
+
+	public synchronized void put(@NotNull final Object format, @NotNull final Object value, @NotNull final char[] fragment)
+	{
+		final int fragmentWeight = fragment.length;
+		if (fragmentWeight > maximumWeight)
+		{
+			return;
+		}
+
+		@Nullable Map<Object, Entry> entries = formats.get(format);
+		if (entries == null)
+		{
+			entries = new IdentityHashMap<>(64);
+			formats.put(format, entries);
+		}
+		final Entry entry = new Entry(format, value, fragment);
+		@Nullable final Entry previous = entries.put(value, entry);
+		if (previous == null)
+		{
+			size++;
+		}
+		else
+		{
+			previous.unlink();
+			weight -= previous.fragment.length;
+		}
+		entry.linkBefore(sentinel);
+		weight += fragmentWeight;
+
+		while (weight > maximumWeight)
+		{
+			remove(sentinel.next);
+			evictions++;
+		}
+	}
+
+	public synchronized void invalidate(@NotNull final Object value)
+	{
+		for (final Map<Object, Entry> entries : formats.values())
+		{
+			@Nullable final Entry entry = entries.get(value);
+			if (entry != null)
+			{
+				remove(entry);
+			}
+		}
+	}
+
+	private void remove(@NotNull final Entry entry)
+	{
+		entry.unlink();
+		formats.get(entry.format).remove(entry.value);
+		size--;
+		weight -= entry.fragment.length;
+	}
+
+	@Override
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	@Override
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	@Override
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	@Override
+	public synchronized double getHitRatio()
+	{
+		final long lookups = hits + misses;
+		return lookups == 0L ? 0.0 : (double) hits / lookups;
+	}
+
+	@Override
+	public synchronized int getEntries()
+	{
+		return size;
+	}
+
+	@Override
+	public synchronized long getWeight()
+	{
+		return weight;
+	}
+
+	@Override
+	public long getMaximumWeight()
+	{
+		return maximumWeight;
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		formats.clear();
+		sentinel.previous = sentinel;
+		sentinel.next = sentinel;
+		size = 0;
+		weight = 0L;
+	}
+
+	@Override
+	@NotNull
+	public String toString()
+	{
+		return format(ENGLISH, "%1$s(%2$s)", getClass().getSimpleName(), name);
+	}
+
+	private static final class Entry
+	{
+		private final Object format;
+		private final Object value;
+		private final char[] fragment;
+		private Entry previous;
+		private Entry next;
+
+		private Entry(@Nullable final Object format, @Nullable final Object value, @Nullable final char[] fragment)
+		{
+			this.format = format;
+			this.value = value;
+			this.fragment = fragment;
+			previous = null;
+			next = null;
+		}
+
+		private void unlink()
+		{
+			previous.next = next;
+			next.previous = previous;
+			previous = null;
+			next = null;
+		}
+
+		private void linkBefore(@NotNull final Entry entry)
+		{
+			previous = entry.previous;
+			next = entry;
+			entry.previous.next = this;
+			entry.previous = this;
+		}
+	}
+}
@@ -0,0 +1,129 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.fragments;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import static java.lang.System.arraycopy;
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.copyOfRange;
+
+// Passes everything through; while at least one capture is open, also keeps a copy so nested fragments share one buffer
+public final class FragmentCapturingWriter extends Writer
+{
+	public static final int NotCapturing = -1;
+
+	@NotNull private final Writer writer;
+	@NotNull private char[] buffer;
+	private int length;
+	private int openCaptures;
+
+	public FragmentCapturingWriter(@NotNull final Writer writer)
+	{
+		this.writer = writer;
+		buffer = new char[256];
+		length = 0;
+		openCaptures = 0;
+	}
+
+	public int startCapture()
+	{
+		openCaptures++;
+		return length;
+	}
+
+	@NotNull
+	public char[] finishCapture(final int start)
+	{
+		if (openCaptures == 0)
+		{
+			throw new IllegalStateException("No capture is open");
+		}
+		final char[] fragment = copyOfRange(buffer, start, length);
+		openCaptures--;
+		if (openCaptures == 0)
+		{
+			length = 0;
+		}
+		return fragment;
+	}
+
+	@Override
+	public void write(final int c) throws IOException
+	{
+		writer.write(c);
+		if (openCaptures != 0)
+		{
+			ensureCapacity(1);
+			buffer[length++] = (char) c;
+		}
+	}
+
+	@Override
+	public void write(@NotNull final char[] cbuf, final int off, final int len) throws IOException
+	{
+		writer.write(cbuf, off, len);
+		if (openCaptures != 0)
+		{
+			ensureCapacity(len);
+			arraycopy(cbuf, off, buffer, length, len);
+			length += len;
+		}
+	}
+
+	@Override
+	public void write(@NotNull final String str, final int off, final int len) throws IOException
+	{
+		writer.write(str, off, len);
+		if (openCaptures != 0)
+		{
+			ensureCapacity(len);
+			str.getChars(off, off + len, buffer, length);
+			length += len;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		writer.close();
+	}
+
+	private void ensureCapacity(final int additional)
+	{
+		final int required = length + additional;
+		if (required > buffer.length)
+		{
+			buffer = copyOf(buffer, Math.max(required, buffer.length * 2));
+		}
+	}
+}
@@ -0,0 +1,66 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.fragments;
+
+import com.stormmq.serializers.EncodableCharacters;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Fragments escape whatever the output charset can not encode, so a fragment is only interchangeable between serializers of the same format writing to charsets that encode the same characters
+public final class FragmentFormat
+{
+	@NotNull private final Object serializerFormat;
+	@NotNull private final EncodableCharacters encodableCharacters;
+
+	public FragmentFormat(@NotNull final Object serializerFormat, @NotNull final EncodableCharacters encodableCharacters)
+	{
+		this.serializerFormat = serializerFormat;
+		this.encodableCharacters = encodableCharacters;
+	}
+
+	@Override
+	public boolean equals(@Nullable final Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass())
+		{
+			return false;
+		}
+
+		final FragmentFormat that = (FragmentFormat) obj;
+
+		// EncodableCharacters are shared per charset, so identity suffices
+		return encodableCharacters == that.encodableCharacters && serializerFormat.equals(that.serializerFormat);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int result = serializerFormat.hashCode();
+		result = 31 * result + System.identityHashCode(encodableCharacters);
+		return result;
+	}
+}
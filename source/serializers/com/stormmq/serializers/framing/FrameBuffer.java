@@ -0,0 +1,99 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.framing;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+
+import static java.lang.Math.max;
+import static java.lang.System.arraycopy;
+import static java.util.Arrays.copyOf;
+
+// An OutputStream into a growable array that is reused for every batch; unlike ByteArrayOutputStream, room can be reserved and the array is handed out rather than copied
+public final class FrameBuffer extends OutputStream
+{
+	@NotNull private byte[] bytes;
+	private int size;
+
+	public FrameBuffer(final int initialCapacity)
+	{
+		bytes = new byte[initialCapacity];
+		size = 0;
+	}
+
+	@NotNull
+	public byte[] bytes()
+	{
+		return bytes;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public void reset()
+	{
+		size = 0;
+	}
+
+	public void truncate(final int size)
+	{
+		if (size < 0 || size > this.size)
+		{
+			throw new IllegalArgumentException("size can not be negative or grow the buffer");
+		}
+		this.size = size;
+	}
+
+	public void reserve(final int length)
+	{
+		ensureCapacity(size + length);
+		size += length;
+	}
+
+	@Override
+	public void write(final int b)
+	{
+		ensureCapacity(size + 1);
+		bytes[size] = (byte) b;
+		size++;
+	}
+
+	@Override
+	public void write(@NotNull final byte[] b, final int off, final int len)
+	{
+		ensureCapacity(size + len);
+		arraycopy(b, off, bytes, size, len);
+		size += len;
+	}
+
+	private void ensureCapacity(final int capacity)
+	{
+		if (capacity > bytes.length)
+		{
+			bytes = copyOf(bytes, max(capacity, bytes.length * 2));
+		}
+	}
+}
@@ -0,0 +1,141 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.framing;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+public enum FrameLengthPrefix
+{
+	// Unsigned LEB128, as used by Protocol Buffers' delimited streams
+	Varint
+	{
+		@Override
+		public int maximumSize()
+		{
+			return 5;
+		}
+
+		@Override
+		public int writeEndingAt(@NotNull final byte[] bytes, final int end, final int length)
+		{
+			int size = 1;
+			for (int remaining = length >>> 7; remaining != 0; remaining >>>= 7)
+			{
+				size++;
+			}
+			final int start = end - size;
+			int remaining = length;
+			for (int index = start; index < end - 1; index++)
+			{
+				bytes[index] = (byte) ((remaining & 0x7F) | 0x80);
+				remaining >>>= 7;
+			}
+			bytes[end - 1] = (byte) remaining;
+			return start;
+		}
+
+		@Override
+		public int readLength(@NotNull final ByteBuffer buffer) throws CouldNotReadFrameException
+		{
+			final int start = buffer.position();
+			final int limit = buffer.limit();
+			int length = 0;
+			for (int index = 0; index < maximumSize(); index++)
+			{
+				if (start + index == limit)
+				{
+					return Incomplete;
+				}
+				final int octet = buffer.get(start + index);
+				// The last byte holds bits 28 to 34, of which only 28 to 30 fit; any others would be shifted out and read as a smaller, valid length
+				if (index == LastVarintByte && (octet & 0x78) != 0)
+				{
+					throw new CouldNotReadFrameException("the varint length prefix is greater than 2^31 - 1");
+				}
+				length |= (octet & 0x7F) << (7 * index);
+				if ((octet & 0x80) == 0)
+				{
+					buffer.position(start + index + 1);
+					return length;
+				}
+			}
+			throw new CouldNotReadFrameException(format(ENGLISH, "the varint length prefix is longer than %1$s bytes", maximumSize()));
+		}
+	},
+
+	// Big endian, as used by most length-field based decoders
+	FixedFourBytes
+	{
+		@Override
+		public int maximumSize()
+		{
+			return 4;
+		}
+
+		@Override
+		public int writeEndingAt(@NotNull final byte[] bytes, final int end, final int length)
+		{
+			final int start = end - 4;
+			bytes[start] = (byte) (length >>> 24);
+			bytes[start + 1] = (byte) (length >>> 16);
+			bytes[start + 2] = (byte) (length >>> 8);
+			bytes[start + 3] = (byte) length;
+			return start;
+		}
+
+		@Override
+		public int readLength(@NotNull final ByteBuffer buffer) throws CouldNotReadFrameException
+		{
+			final int start = buffer.position();
+			if (buffer.limit() - start < 4)
+			{
+				return Incomplete;
+			}
+			final int length = ((buffer.get(start) & 0xFF) << 24) | ((buffer.get(start + 1) & 0xFF) << 16) | ((buffer.get(start + 2) & 0xFF) << 8) | (buffer.get(start + 3) & 0xFF);
+			if (length < 0)
+			{
+				throw new CouldNotReadFrameException("the fixed length prefix is greater than 2^31 - 1");
+			}
+			buffer.position(start + 4);
+			return length;
+		}
+	},
+	;
+
+	public static final int Incomplete = -1;
+
+	private static final int LastVarintByte = 4;
+
+	public abstract int maximumSize();
+
+	// Writes the prefix so that it finishes at end, which is where the document starts, and returns where the prefix starts
+	public abstract int writeEndingAt(@NotNull final byte[] bytes, final int end, final int length);
+
+	// Moves the buffer past the prefix and returns the length; if the prefix has not all arrived yet, returns Incomplete and leaves the buffer as it was
+	public abstract int readLength(@NotNull final ByteBuffer buffer) throws CouldNotReadFrameException;
+}
@@ -0,0 +1,71 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.framing;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+import static com.stormmq.serializers.framing.FrameLengthPrefix.Incomplete;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+// Splits frames out of a buffer being filled from a stream; compact() the buffer between reads once the frames taken from it are no longer needed
+public final class FrameReader
+{
+	@NotNull private final FrameLengthPrefix lengthPrefix;
+	private final int maximumFrameLength;
+
+	public FrameReader(@NotNull final FrameLengthPrefix lengthPrefix, final int maximumFrameLength)
+	{
+		this.lengthPrefix = lengthPrefix;
+		this.maximumFrameLength = maximumFrameLength;
+	}
+
+	// A slice sharing the buffer's content that holds the next document, with the buffer moved past it; null, with the buffer as it was, if the whole frame has not arrived yet
+	@Nullable
+	public ByteBuffer nextFrame(@NotNull final ByteBuffer buffer) throws CouldNotReadFrameException
+	{
+		final int start = buffer.position();
+		final int length = lengthPrefix.readLength(buffer);
+		if (length == Incomplete)
+		{
+			return null;
+		}
+		if (length > maximumFrameLength)
+		{
+			throw new CouldNotReadFrameException(format(ENGLISH, "its length %1$s exceeds the maximum of %2$s", length, maximumFrameLength));
+		}
+		if (buffer.remaining() < length)
+		{
+			buffer.position(start);
+			return null;
+		}
+
+		final ByteBuffer frame = buffer.slice();
+		frame.limit(length);
+		buffer.position(buffer.position() + length);
+		return frame;
+	}
+}
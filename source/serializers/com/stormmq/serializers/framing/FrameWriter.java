@@ -0,0 +1,153 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.framing;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.CouldNotWriteDataException;
+import com.stormmq.serializers.Serializable;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.Charset;
+
+import static java.nio.ByteBuffer.wrap;
+import static java.util.Arrays.fill;
+
+// Serializes each document straight into one reusable buffer after room for the largest length prefix, then fills the prefix in just before the document once its length is known
+// Frames are batched and written with one gathering write of views onto the buffer, so a document's bytes are never copied to learn its length
+// The channel must be blocking; not thread safe
+// Once a write to the channel fails the channel may hold part of a frame, so the writer refuses any further use rather than resend or drop what is pending
+public final class FrameWriter
+{
+	@NotNull private final AbstractSerializer serializer;
+	@NotNull private final Charset charset;
+	@NotNull private final FrameLengthPrefix lengthPrefix;
+	@NotNull private final GatheringByteChannel channel;
+	@NotNull private final FrameBuffer frameBuffer;
+	@NotNull private final int[] frameStarts;
+	@NotNull private final int[] frameEnds;
+	@NotNull private final ByteBuffer[] frames;
+	private int pendingFrames;
+	private boolean failed;
+
+	public FrameWriter(@NotNull final AbstractSerializer serializer, @NotNull final Charset charset, @NotNull final FrameLengthPrefix lengthPrefix, @NotNull final GatheringByteChannel channel, final int maximumFramesPerWrite, final int initialCapacity)
+	{
+		if (maximumFramesPerWrite < 1)
+		{
+			throw new IllegalArgumentException("maximumFramesPerWrite must be at least 1");
+		}
+		this.serializer = serializer;
+		this.charset = charset;
+		this.lengthPrefix = lengthPrefix;
+		this.channel = channel;
+		frameBuffer = new FrameBuffer(initialCapacity);
+		frameStarts = new int[maximumFramesPerWrite];
+		frameEnds = new int[maximumFramesPerWrite];
+		frames = new ByteBuffer[maximumFramesPerWrite];
+		pendingFrames = 0;
+		failed = false;
+	}
+
+	public int pendingFrames()
+	{
+		return pendingFrames;
+	}
+
+	// Writes the batch once it holds maximumFramesPerWrite frames; a document that fails to serialise leaves the batch as it was
+	public void write(@NotNull final Serializable document) throws CouldNotSerialiseException, CouldNotWriteDataException
+	{
+		guardNotFailed();
+		final int prefixStart = frameBuffer.size();
+		frameBuffer.reserve(lengthPrefix.maximumSize());
+		final int documentStart = frameBuffer.size();
+		try
+		{
+			serializer.serialise(document, frameBuffer, charset);
+		}
+		catch (CouldNotSerialiseException | RuntimeException e)
+		{
+			frameBuffer.truncate(prefixStart);
+			throw e;
+		}
+		final int documentEnd = frameBuffer.size();
+
+		frameStarts[pendingFrames] = lengthPrefix.writeEndingAt(frameBuffer.bytes(), documentStart, documentEnd - documentStart);
+		frameEnds[pendingFrames] = documentEnd;
+		pendingFrames++;
+
+		if (pendingFrames == frames.length)
+		{
+			flush();
+		}
+	}
+
+	public void flush() throws CouldNotWriteDataException
+	{
+		guardNotFailed();
+		if (pendingFrames == 0)
+		{
+			return;
+		}
+
+		final byte[] bytes = frameBuffer.bytes();
+		for (int index = 0; index < pendingFrames; index++)
+		{
+			frames[index] = wrap(bytes, frameStarts[index], frameEnds[index] - frameStarts[index]);
+		}
+
+		try
+		{
+			int first = 0;
+			while (first < pendingFrames)
+			{
+				channel.write(frames, first, pendingFrames - first);
+				while (first < pendingFrames && !frames[first].hasRemaining())
+				{
+					first++;
+				}
+			}
+		}
+		catch (final IOException e)
+		{
+			failed = true;
+			throw new CouldNotWriteDataException(e);
+		}
+		finally
+		{
+			fill(frames, 0, pendingFrames, null);
+		}
+		pendingFrames = 0;
+		frameBuffer.reset();
+	}
+
+	private void guardNotFailed()
+	{
+		if (failed)
+		{
+			throw new IllegalStateException("An earlier write to the channel failed");
+		}
+	}
+}
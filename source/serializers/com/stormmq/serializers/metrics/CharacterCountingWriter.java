@@ -0,0 +1,78 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public final class CharacterCountingWriter extends Writer
+{
+	@NotNull private final Writer writer;
+	private long characterCount;
+
+	public CharacterCountingWriter(@NotNull final Writer writer)
+	{
+		this.writer = writer;
+		characterCount = 0L;
+	}
+
+	@Override
+	public void write(final int c) throws IOException
+	{
+		writer.write(c);
+		characterCount++;
+	}
+
+	@Override
+	public void write(@NotNull final char[] cbuf, final int off, final int len) throws IOException
+	{
+		writer.write(cbuf, off, len);
+		characterCount += len;
+	}
+
+	@Override
+	public void write(@NotNull final String str, final int off, final int len) throws IOException
+	{
+		writer.write(str, off, len);
+		characterCount += len;
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		writer.close();
+	}
+
+	public long characterCount()
+	{
+		return characterCount;
+	}
+}
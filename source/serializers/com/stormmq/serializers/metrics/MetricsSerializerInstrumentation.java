@@ -0,0 +1,157 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.metrics;
+
+import com.stormmq.serializers.SerializerInstrumentation;
+import com.stormmq.serializers.ValueSerializable;
+import com.stormmq.serializers.ValueType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+import static com.stormmq.serializers.metrics.SerializationMetrics.MaximumTrackedNestingDepth;
+import static java.lang.System.nanoTime;
+import static java.util.Arrays.fill;
+
+// One instance per serializer; counts in plain fields and only touches the shared LongAdders once per document
+public final class MetricsSerializerInstrumentation implements SerializerInstrumentation
+{
+	@NotNull private final SerializationMetrics serializationMetrics;
+	@NotNull private final long[] valuesByType;
+	@NotNull private final long[] nestingDepthHistogram;
+	@Nullable private TimedByteCountingOutputStream timedByteCountingOutputStream;
+	@Nullable private CharacterCountingWriter characterCountingWriter;
+	private long startedNanoseconds;
+	private long stringsEscaped;
+	private long escapeHits;
+	private int depth;
+
+	public MetricsSerializerInstrumentation(@NotNull final SerializationMetrics serializationMetrics)
+	{
+		this.serializationMetrics = serializationMetrics;
+		valuesByType = new long[ValueType.values().length];
+		nestingDepthHistogram = new long[MaximumTrackedNestingDepth + 1];
+		timedByteCountingOutputStream = null;
+		characterCountingWriter = null;
+		startedNanoseconds = 0L;
+		stringsEscaped = 0L;
+		escapeHits = 0L;
+		depth = 0;
+	}
+
+	@NotNull
+	@Override
+	public OutputStream instrument(@NotNull final OutputStream outputStream)
+	{
+		timedByteCountingOutputStream = new TimedByteCountingOutputStream(outputStream);
+		return timedByteCountingOutputStream;
+	}
+
+	@NotNull
+	@Override
+	public Writer instrument(@NotNull final Writer writer)
+	{
+		characterCountingWriter = new CharacterCountingWriter(writer);
+		return characterCountingWriter;
+	}
+
+	@Override
+	public void documentStarted()
+	{
+		fill(valuesByType, 0L);
+		fill(nestingDepthHistogram, 0L);
+		stringsEscaped = 0L;
+		escapeHits = 0L;
+		depth = 0;
+		startedNanoseconds = nanoTime();
+	}
+
+	@Override
+	public void documentFinished()
+	{
+		final long totalNanoseconds = nanoTime() - startedNanoseconds;
+		final long inputOutputNanoseconds;
+		final long bytesWritten;
+		if (timedByteCountingOutputStream == null)
+		{
+			inputOutputNanoseconds = 0L;
+			bytesWritten = 0L;
+		}
+		else
+		{
+			inputOutputNanoseconds = timedByteCountingOutputStream.nanoseconds();
+			bytesWritten = timedByteCountingOutputStream.byteCount();
+		}
+		final long charactersWritten = characterCountingWriter == null ? 0L : characterCountingWriter.characterCount();
+		serializationMetrics.recordDocument(totalNanoseconds - inputOutputNanoseconds, inputOutputNanoseconds, bytesWritten, charactersWritten, stringsEscaped, escapeHits, valuesByType, nestingDepthHistogram);
+		timedByteCountingOutputStream = null;
+		characterCountingWriter = null;
+	}
+
+	@Override
+	public void documentFailed(@NotNull final Exception cause)
+	{
+		serializationMetrics.recordFailure(cause);
+		timedByteCountingOutputStream = null;
+		characterCountingWriter = null;
+	}
+
+	@Override
+	public void value(@NotNull final ValueType valueType)
+	{
+		valuesByType[valueType.ordinal()]++;
+	}
+
+	@Override
+	public void enteredNesting(@NotNull final ValueType valueType, @NotNull final Object value)
+	{
+		valuesByType[valueType.ordinal()]++;
+		depth++;
+		nestingDepthHistogram[depth > MaximumTrackedNestingDepth ? MaximumTrackedNestingDepth : depth]++;
+	}
+
+	@Override
+	public void leftNesting(@NotNull final ValueType valueType, @NotNull final Object value)
+	{
+		depth--;
+	}
+
+	@Override
+	public void enteredValue(@NotNull final ValueSerializable value)
+	{
+	}
+
+	@Override
+	public void leftValue(@NotNull final ValueSerializable value)
+	{
+	}
+
+	@Override
+	public void stringEscaped(final int escapes)
+	{
+		stringsEscaped++;
+		escapeHits += escapes;
+	}
+}
@@ -0,0 +1,285 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.metrics;
+
+import com.stormmq.serializers.ValueType;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.management.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+import static java.lang.management.ManagementFactory.getPlatformMBeanServer;
+import static java.util.Locale.ENGLISH;
+
+public final class SerializationMetrics implements SerializationMetricsMXBean
+{
+	// The last bucket also counts everything nested more deeply
+	public static final int MaximumTrackedNestingDepth = 63;
+
+	@NotNull private static final ValueType[] ValueTypes = ValueType.values();
+
+	@NotNull public static final SerializationMetrics GlobalSerializationMetrics = new SerializationMetrics("global", null);
+
+	@NotNull private static final ConcurrentMap<String, SerializationMetrics> Registry = new ConcurrentHashMap<>(8);
+
+	@NotNull
+	public static SerializationMetrics serializationMetrics(@NonNls @NotNull final String serializerName)
+	{
+		return Registry.computeIfAbsent(serializerName, name -> new SerializationMetrics(name, GlobalSerializationMetrics));
+	}
+
+	public static void registerPlatformMBeans()
+	{
+		GlobalSerializationMetrics.registerPlatformMBean();
+		for (final SerializationMetrics serializationMetrics : Registry.values())
+		{
+			serializationMetrics.registerPlatformMBean();
+		}
+	}
+
+	@NonNls @NotNull private final String name;
+	@Nullable private final SerializationMetrics parent;
+	@NotNull private final LongAdder documents;
+	@NotNull private final ConcurrentMap<String, LongAdder> failuresByExceptionType;
+	@NotNull private final LongAdder bytesWritten;
+	@NotNull private final LongAdder charactersWritten;
+	@NotNull private final LongAdder[] valuesByType;
+	@NotNull private final LongAdder stringsEscaped;
+	@NotNull private final LongAdder escapeHits;
+	@NotNull private final LongAdder[] nestingDepthHistogram;
+	@NotNull private final LongAdder serialiseNanoseconds;
+	@NotNull private final LongAdder inputOutputNanoseconds;
+
+	private SerializationMetrics(@NonNls @NotNull final String name, @Nullable final SerializationMetrics parent)
+	{
+		this.name = name;
+		this.parent = parent;
+		documents = new LongAdder();
+		failuresByExceptionType = new ConcurrentHashMap<>(4);
+		bytesWritten = new LongAdder();
+		charactersWritten = new LongAdder();
+		valuesByType = longAdders(ValueTypes.length);
+		stringsEscaped = new LongAdder();
+		escapeHits = new LongAdder();
+		nestingDepthHistogram = longAdders(MaximumTrackedNestingDepth + 1);
+		serialiseNanoseconds = new LongAdder();
+		inputOutputNanoseconds = new LongAdder();
+	}
+
+	@NotNull
+	private static LongAdder[] longAdders(final int length)
+	{
+		final LongAdder[] longAdders = new LongAdder[length];
+		for (int index = 0; index < length; index++)
+		{
+			longAdders[index] = new LongAdder();
+		}
+		return longAdders;
+	}
+
+	public void registerPlatformMBean()
+	{
+		final MBeanServer mBeanServer = getPlatformMBeanServer();
+		try
+		{
+			final ObjectName objectName = new ObjectName(format(ENGLISH, "com.stormmq.serializers:type=SerializationMetrics,name=%1$s", ObjectName.quote(name)));
+			if (!mBeanServer.isRegistered(objectName))
+			{
+				mBeanServer.registerMBean(this, objectName);
+			}
+		}
+		catch (final InstanceAlreadyExistsException ignored)
+		{
+		}
+		catch (final MalformedObjectNameException | MBeanRegistrationException | NotCompliantMBeanException e)
+		{
+			throw new IllegalStateException(format(ENGLISH, "Could not register serialization metrics %1$s", name), e);
+		}
+	}
+
+	@SuppressWarnings({"MethodWithTooManyParameters", "FeatureEnvy"})
+	void recordDocument(final long serialiseNanoseconds, final long inputOutputNanoseconds, final long bytesWritten, final long charactersWritten, final long stringsEscaped, final long escapeHits, @NotNull final long[] valuesByType, @NotNull final long[] nestingDepthHistogram)
+	{
+		documents.increment();
+		this.serialiseNanoseconds.add(serialiseNanoseconds);
+		this.inputOutputNanoseconds.add(inputOutputNanoseconds);
+		this.bytesWritten.add(bytesWritten);
+		this.charactersWritten.add(charactersWritten);
+		this.stringsEscaped.add(stringsEscaped);
+		this.escapeHits.add(escapeHits);
+		add(this.valuesByType, valuesByType);
+		add(this.nestingDepthHistogram, nestingDepthHistogram);
+
+		if (parent != null)
+		{
+			parent.recordDocument(serialiseNanoseconds, inputOutputNanoseconds, bytesWritten, charactersWritten, stringsEscaped, escapeHits, valuesByType, nestingDepthHistogram);
+		}
+	}
+
+	void recordFailure(@NotNull final Exception cause)
+	{
+		failuresByExceptionType.computeIfAbsent(cause.getClass().getName(), key -> new LongAdder()).increment();
+
+		if (parent != null)
+		{
+			parent.recordFailure(cause);
+		}
+	}
+
+	private static void add(@NotNull final LongAdder[] longAdders, @NotNull final long[] values)
+	{
+		final int length = longAdders.length;
+		for (int index = 0; index < length; index++)
+		{
+			final long value = values[index];
+			if (value != 0L)
+			{
+				longAdders[index].add(value);
+			}
+		}
+	}
+
+	@Override
+	public long getDocuments()
+	{
+		return documents.sum();
+	}
+
+	@Override
+	public long getFailures()
+	{
+		long failures = 0L;
+		for (final LongAdder longAdder : failuresByExceptionType.values())
+		{
+			failures += longAdder.sum();
+		}
+		return failures;
+	}
+
+	@NotNull
+	@Override
+	public Map<String, Long> getFailuresByExceptionType()
+	{
+		final Map<String, Long> snapshot = new TreeMap<>();
+		for (final Map.Entry<String, LongAdder> entry : failuresByExceptionType.entrySet())
+		{
+			snapshot.put(entry.getKey(), entry.getValue().sum());
+		}
+		return snapshot;
+	}
+
+	@Override
+	public long getBytesWritten()
+	{
+		return bytesWritten.sum();
+	}
+
+	@Override
+	public long getCharactersWritten()
+	{
+		return charactersWritten.sum();
+	}
+
+	@NotNull
+	@Override
+	public Map<String, Long> getValuesByType()
+	{
+		final Map<String, Long> snapshot = new LinkedHashMap<>(ValueTypes.length);
+		for (final ValueType valueType : ValueTypes)
+		{
+			snapshot.put(valueType.name(), valuesByType[valueType.ordinal()].sum());
+		}
+		return snapshot;
+	}
+
+	@Override
+	public long getStringsEscaped()
+	{
+		return stringsEscaped.sum();
+	}
+
+	@Override
+	public long getEscapeHits()
+	{
+		return escapeHits.sum();
+	}
+
+	@NotNull
+	@Override
+	public long[] getNestingDepthHistogram()
+	{
+		final int length = nestingDepthHistogram.length;
+		final long[] snapshot = new long[length];
+		for (int index = 0; index < length; index++)
+		{
+			snapshot[index] = nestingDepthHistogram[index].sum();
+		}
+		return snapshot;
+	}
+
+	@Override
+	public long getSerialiseNanoseconds()
+	{
+		return serialiseNanoseconds.sum();
+	}
+
+	@Override
+	public long getInputOutputNanoseconds()
+	{
+		return inputOutputNanoseconds.sum();
+	}
+
+	@Override
+	public void reset()
+	{
+		documents.reset();
+		failuresByExceptionType.clear();
+		bytesWritten.reset();
+		charactersWritten.reset();
+		for (final LongAdder longAdder : valuesByType)
+		{
+			longAdder.reset();
+		}
+		stringsEscaped.reset();
+		escapeHits.reset();
+		for (final LongAdder longAdder : nestingDepthHistogram)
+		{
+			longAdder.reset();
+		}
+		serialiseNanoseconds.reset();
+		inputOutputNanoseconds.reset();
+	}
+
+	@Override
+	@NotNull
+	public String toString()
+	{
+		return format(ENGLISH, "%1$s(%2$s)", getClass().getSimpleName(), name);
+	}
+}
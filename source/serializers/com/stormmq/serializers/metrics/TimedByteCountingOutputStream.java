@@ -0,0 +1,112 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.lang.System.nanoTime;
+
+public final class TimedByteCountingOutputStream extends OutputStream
+{
+	@NotNull private final OutputStream outputStream;
+	private long byteCount;
+	private long nanoseconds;
+
+	public TimedByteCountingOutputStream(@NotNull final OutputStream outputStream)
+	{
+		this.outputStream = outputStream;
+		byteCount = 0L;
+		nanoseconds = 0L;
+	}
+
+	@Override
+	public void write(final int b) throws IOException
+	{
+		final long started = nanoTime();
+		try
+		{
+			outputStream.write(b);
+		}
+		finally
+		{
+			nanoseconds += nanoTime() - started;
+		}
+		byteCount++;
+	}
+
+	@Override
+	public void write(@NotNull final byte[] b, final int off, final int len) throws IOException
+	{
+		final long started = nanoTime();
+		try
+		{
+			outputStream.write(b, off, len);
+		}
+		finally
+		{
+			nanoseconds += nanoTime() - started;
+		}
+		byteCount += len;
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		final long started = nanoTime();
+		try
+		{
+			outputStream.flush();
+		}
+		finally
+		{
+			nanoseconds += nanoTime() - started;
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		final long started = nanoTime();
+		try
+		{
+			outputStream.close();
+		}
+		finally
+		{
+			nanoseconds += nanoTime() - started;
+		}
+	}
+
+	public long byteCount()
+	{
+		return byteCount;
+	}
+
+	public long nanoseconds()
+	{
+		return nanoseconds;
+	}
+}
@@ -0,0 +1,205 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.nonblocking;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import static java.lang.Math.min;
+import static java.nio.ByteBuffer.allocateDirect;
+import static java.util.Arrays.fill;
+
+// Holds serialized bytes in fixed size direct chunks until a non-blocking channel will take them; drained chunks are kept for reuse rather than freed
+// A partial write leaves the first chunk's position where the channel stopped, so draining resumes from exactly that byte
+// Not thread safe
+public final class ChannelOutputQueue extends OutputStream
+{
+	private final int chunkSize;
+	@NotNull private final ArrayDeque<ByteBuffer> pending;
+	@NotNull private final ArrayDeque<ByteBuffer> spare;
+	@NotNull private final ByteBuffer[] gather;
+	@Nullable private ByteBuffer filling;
+	private long appended;
+	private long drained;
+
+	public ChannelOutputQueue(final int chunkSize, final int maximumChunksPerWrite)
+	{
+		if (chunkSize < 1)
+		{
+			throw new IllegalArgumentException("chunkSize must be at least 1");
+		}
+		if (maximumChunksPerWrite < 1)
+		{
+			throw new IllegalArgumentException("maximumChunksPerWrite must be at least 1");
+		}
+		this.chunkSize = chunkSize;
+		pending = new ArrayDeque<>(maximumChunksPerWrite);
+		spare = new ArrayDeque<>(maximumChunksPerWrite);
+		gather = new ByteBuffer[maximumChunksPerWrite];
+		filling = null;
+		appended = 0L;
+		drained = 0L;
+	}
+
+	public long remaining()
+	{
+		return appended - drained;
+	}
+
+	public boolean isEmpty()
+	{
+		return appended == drained;
+	}
+
+	// Everything appended after mark() can be removed with truncate(mark) until the next drainTo()
+	public long mark()
+	{
+		return appended;
+	}
+
+	public void truncate(final long mark)
+	{
+		if (mark < drained || mark > appended)
+		{
+			throw new IllegalArgumentException("mark is not in the undrained part of the queue");
+		}
+		long excess = appended - mark;
+		while (excess != 0L)
+		{
+			if (filling == null || filling.position() == 0)
+			{
+				if (filling != null)
+				{
+					spare.addLast(filling);
+				}
+				filling = pending.removeLast();
+				filling.position(filling.limit());
+				filling.limit(filling.capacity());
+			}
+			final int dropped = (int) min(excess, (long) filling.position());
+			filling.position(filling.position() - dropped);
+			excess -= dropped;
+		}
+		appended = mark;
+	}
+
+	@Override
+	public void write(final int b)
+	{
+		fillable().put((byte) b);
+		appended++;
+	}
+
+	@Override
+	public void write(@NotNull final byte[] b, final int off, final int len)
+	{
+		int offset = off;
+		int remaining = len;
+		while (remaining != 0)
+		{
+			final ByteBuffer chunk = fillable();
+			final int length = min(remaining, chunk.remaining());
+			chunk.put(b, offset, length);
+			offset += length;
+			remaining -= length;
+		}
+		appended += len;
+	}
+
+	// Returns true once everything has been written; false means the channel's send buffer is full and this should be called again when it is writable
+	public boolean drainTo(@NotNull final GatheringByteChannel channel) throws IOException
+	{
+		seal();
+		while (!pending.isEmpty())
+		{
+			int count = 0;
+			final Iterator<ByteBuffer> iterator = pending.iterator();
+			while (count < gather.length && iterator.hasNext())
+			{
+				gather[count] = iterator.next();
+				count++;
+			}
+
+			final long written;
+			try
+			{
+				written = channel.write(gather, 0, count);
+			}
+			finally
+			{
+				fill(gather, 0, count, null);
+			}
+			drained += written;
+
+			while (!pending.isEmpty() && !pending.peekFirst().hasRemaining())
+			{
+				final ByteBuffer chunk = pending.removeFirst();
+				chunk.clear();
+				spare.addLast(chunk);
+			}
+
+			if (written == 0L)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@NotNull
+	private ByteBuffer fillable()
+	{
+		if (filling == null || !filling.hasRemaining())
+		{
+			seal();
+			@Nullable final ByteBuffer reused = spare.pollFirst();
+			filling = reused == null ? allocateDirect(chunkSize) : reused;
+		}
+		return filling;
+	}
+
+	private void seal()
+	{
+		if (filling == null)
+		{
+			return;
+		}
+		if (filling.position() == 0)
+		{
+			spare.addLast(filling);
+		}
+		else
+		{
+			filling.flip();
+			pending.addLast(filling);
+		}
+		filling = null;
+	}
+}
@@ -0,0 +1,116 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.nonblocking;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.CouldNotWriteDataException;
+import com.stormmq.serializers.Serializable;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.charset.Charset;
+
+import static java.nio.channels.SelectionKey.OP_WRITE;
+
+// Writes documents to a non-blocking channel from a selector thread without ever waiting for the peer
+// A document is serialized whole into a ChannelOutputQueue, then as much as the socket will take is written; whatever is left waits for OP_WRITE, which is registered only while bytes are queued
+// Serializers run to completion rather than pausing part way through a graph, so a slow reader costs memory for its queued bytes rather than a blocked thread
+// Call only from the thread that owns the selector; not thread safe
+public final class NonBlockingChannelWriter
+{
+	@NotNull private final AbstractSerializer serializer;
+	@NotNull private final Charset charset;
+	@NotNull private final SelectionKey selectionKey;
+	@NotNull private final GatheringByteChannel channel;
+	@NotNull private final ChannelOutputQueue outputQueue;
+
+	public NonBlockingChannelWriter(@NotNull final AbstractSerializer serializer, @NotNull final Charset charset, @NotNull final SelectionKey selectionKey, final int chunkSize, final int maximumChunksPerWrite)
+	{
+		final SelectableChannel selectableChannel = selectionKey.channel();
+		if (!(selectableChannel instanceof GatheringByteChannel))
+		{
+			throw new IllegalArgumentException("selectionKey's channel must be a GatheringByteChannel, such as a SocketChannel");
+		}
+		if (selectableChannel.isBlocking())
+		{
+			throw new IllegalArgumentException("selectionKey's channel must be non-blocking");
+		}
+		this.serializer = serializer;
+		this.charset = charset;
+		this.selectionKey = selectionKey;
+		channel = (GatheringByteChannel) selectableChannel;
+		outputQueue = new ChannelOutputQueue(chunkSize, maximumChunksPerWrite);
+	}
+
+	public long queuedBytes()
+	{
+		return outputQueue.remaining();
+	}
+
+	// Returns true if the document, and everything queued before it, has been written; a document that fails to serialise leaves the queue as it was
+	public boolean write(@NotNull final Serializable document) throws CouldNotSerialiseException, CouldNotWriteDataException
+	{
+		final long mark = outputQueue.mark();
+		try
+		{
+			serializer.serialise(document, outputQueue, charset);
+		}
+		catch (CouldNotSerialiseException | RuntimeException e)
+		{
+			outputQueue.truncate(mark);
+			throw e;
+		}
+		return drain();
+	}
+
+	// Call when the selector reports the key as writable
+	public boolean writable() throws CouldNotWriteDataException
+	{
+		return drain();
+	}
+
+	private boolean drain() throws CouldNotWriteDataException
+	{
+		final boolean drained;
+		try
+		{
+			drained = outputQueue.drainTo(channel);
+		}
+		catch (final IOException e)
+		{
+			throw new CouldNotWriteDataException(e);
+		}
+
+		final int interestOps = selectionKey.interestOps();
+		final int wantedInterestOps = drained ? interestOps & ~OP_WRITE : interestOps | OP_WRITE;
+		if (wantedInterestOps != interestOps)
+		{
+			selectionKey.interestOps(wantedInterestOps);
+		}
+		return drained;
+	}
+}
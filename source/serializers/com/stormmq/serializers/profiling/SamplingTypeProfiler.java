@@ -0,0 +1,261 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.profiling;
+
+import com.stormmq.serializers.ByteCountingFilterWriter;
+import com.stormmq.serializers.SerializerInstrumentation;
+import com.stormmq.serializers.ValueSerializable;
+import com.stormmq.serializers.ValueType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static com.stormmq.serializers.ValueType.MapValue;
+import static java.lang.System.nanoTime;
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.fill;
+
+// Attributes wall time, bytes and invocations to the runtime class of every MapSerializable and ValueSerializable in one of every sampleEvery documents; other documents cost a counter and a branch per callback
+// Bytes are counted as characters reach the writer, so separated values rows, written once complete, are attributed to whatever encloses the row
+// Values spliced from a fragment cache or written as shared references are not seen; one instance per serializer, not thread safe; use CompositeSerializerInstrumentation to keep other instrumentation
+public final class SamplingTypeProfiler implements SerializerInstrumentation
+{
+	private static final int TotalsPerType = 5;
+	private static final int Invocations = 0;
+	private static final int SelfNanoseconds = 1;
+	private static final int TotalNanoseconds = 2;
+	private static final int SelfBytes = 3;
+	private static final int TotalBytes = 4;
+
+	@NotNull private final TypeProfiles typeProfiles;
+	private final int sampleEvery;
+	@NotNull private final Charset charset;
+	@NotNull private final Map<Class<?>, long[]> documentTotalsByType;
+	private long documents;
+	@Nullable private ByteCountingFilterWriter byteCountingFilterWriter;
+	private boolean sampling;
+
+	@NotNull private Class<?>[] types;
+	@NotNull private long[] startNanoseconds;
+	@NotNull private long[] startBytes;
+	@NotNull private long[] childNanoseconds;
+	@NotNull private long[] childBytes;
+	private int depth;
+
+	public SamplingTypeProfiler(@NotNull final TypeProfiles typeProfiles, final int sampleEvery, @NotNull final Charset charset)
+	{
+		if (sampleEvery < 1)
+		{
+			throw new IllegalArgumentException("sampleEvery must be at least 1");
+		}
+		this.typeProfiles = typeProfiles;
+		this.sampleEvery = sampleEvery;
+		this.charset = charset;
+		documentTotalsByType = new IdentityHashMap<>(16);
+		documents = 0L;
+		byteCountingFilterWriter = null;
+		sampling = false;
+		types = new Class<?>[16];
+		startNanoseconds = new long[16];
+		startBytes = new long[16];
+		childNanoseconds = new long[16];
+		childBytes = new long[16];
+		depth = 0;
+	}
+
+	@NotNull
+	@Override
+	public OutputStream instrument(@NotNull final OutputStream outputStream)
+	{
+		return outputStream;
+	}
+
+	// Called for every document before documentStarted(), so the sampling decision is made here and an unsampled document's writer is not wrapped
+	@NotNull
+	@Override
+	public Writer instrument(@NotNull final Writer writer)
+	{
+		sampling = documents % sampleEvery == 0L;
+		documents++;
+		if (!sampling)
+		{
+			byteCountingFilterWriter = null;
+			return writer;
+		}
+		byteCountingFilterWriter = new ByteCountingFilterWriter(writer, charset);
+		return byteCountingFilterWriter;
+	}
+
+	@Override
+	public void documentStarted()
+	{
+		depth = 0;
+		documentTotalsByType.clear();
+	}
+
+	@Override
+	public void documentFinished()
+	{
+		if (sampling)
+		{
+			typeProfiles.recordSampledDocument();
+			for (final Map.Entry<Class<?>, long[]> entry : documentTotalsByType.entrySet())
+			{
+				final long[] totals = entry.getValue();
+				typeProfiles.record(entry.getKey(), totals[Invocations], totals[SelfNanoseconds], totals[TotalNanoseconds], totals[SelfBytes], totals[TotalBytes]);
+			}
+		}
+		finishDocument();
+	}
+
+	// A failed document's partial timings would skew the profile, so they are dropped
+	@Override
+	public void documentFailed(@NotNull final Exception cause)
+	{
+		finishDocument();
+	}
+
+	private void finishDocument()
+	{
+		sampling = false;
+		byteCountingFilterWriter = null;
+		fill(types, 0, depth, null);
+		depth = 0;
+		documentTotalsByType.clear();
+	}
+
+	@Override
+	public void value(@NotNull final ValueType valueType)
+	{
+	}
+
+	@Override
+	public void enteredNesting(@NotNull final ValueType valueType, @NotNull final Object value)
+	{
+		if (sampling && valueType == MapValue)
+		{
+			entered(value.getClass());
+		}
+	}
+
+	@Override
+	public void leftNesting(@NotNull final ValueType valueType, @NotNull final Object value)
+	{
+		if (sampling && valueType == MapValue)
+		{
+			left();
+		}
+	}
+
+	@Override
+	public void enteredValue(@NotNull final ValueSerializable value)
+	{
+		if (sampling)
+		{
+			entered(value.getClass());
+		}
+	}
+
+	@Override
+	public void leftValue(@NotNull final ValueSerializable value)
+	{
+		if (sampling)
+		{
+			left();
+		}
+	}
+
+	@Override
+	public void stringEscaped(final int escapes)
+	{
+	}
+
+	private void entered(@NotNull final Class<?> type)
+	{
+		if (depth == types.length)
+		{
+			final int length = depth * 2;
+			types = copyOf(types, length);
+			startNanoseconds = copyOf(startNanoseconds, length);
+			startBytes = copyOf(startBytes, length);
+			childNanoseconds = copyOf(childNanoseconds, length);
+			childBytes = copyOf(childBytes, length);
+		}
+		types[depth] = type;
+		childNanoseconds[depth] = 0L;
+		childBytes[depth] = 0L;
+		startBytes[depth] = byteCount();
+		startNanoseconds[depth] = nanoTime();
+		depth++;
+	}
+
+	private void left()
+	{
+		final long endNanoseconds = nanoTime();
+		depth--;
+		final long totalNanoseconds = endNanoseconds - startNanoseconds[depth];
+		final long totalBytes = byteCount() - startBytes[depth];
+
+		final Class<?> type = types[depth];
+		types[depth] = null;
+		long[] totals = documentTotalsByType.get(type);
+		if (totals == null)
+		{
+			totals = new long[TotalsPerType];
+			documentTotalsByType.put(type, totals);
+		}
+		totals[Invocations]++;
+		totals[SelfNanoseconds] += totalNanoseconds - childNanoseconds[depth];
+		totals[TotalNanoseconds] += totalNanoseconds;
+		totals[SelfBytes] += totalBytes - childBytes[depth];
+		totals[TotalBytes] += totalBytes;
+
+		if (depth != 0)
+		{
+			childNanoseconds[depth - 1] += totalNanoseconds;
+			childBytes[depth - 1] += totalBytes;
+		}
+	}
+
+	private long byteCount()
+	{
+		if (byteCountingFilterWriter == null)
+		{
+			throw new IllegalStateException("instrument(Writer) was not called");
+		}
+		try
+		{
+			return byteCountingFilterWriter.byteCount();
+		}
+		catch (final IOException e)
+		{
+			throw new IllegalStateException("Counting into a discarding stream can not fail", e);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.profiling;
+
+import org.jetbrains.annotations.NotNull;
+
+// A snapshot of what sampled documents spent serialising values of one runtime class
+// Self excludes time and bytes of nested MapSerializables and ValueSerializables; total includes them, so a class nested within itself is counted more than once in total
+public final class TypeProfile
+{
+	@NotNull private final Class<?> type;
+	private final long invocations;
+	private final long selfNanoseconds;
+	private final long totalNanoseconds;
+	private final long selfBytes;
+	private final long totalBytes;
+
+	TypeProfile(@NotNull final Class<?> type, final long invocations, final long selfNanoseconds, final long totalNanoseconds, final long selfBytes, final long totalBytes)
+	{
+		this.type = type;
+		this.invocations = invocations;
+		this.selfNanoseconds = selfNanoseconds;
+		this.totalNanoseconds = totalNanoseconds;
+		this.selfBytes = selfBytes;
+		this.totalBytes = totalBytes;
+	}
+
+	@NotNull
+	public Class<?> type()
+	{
+		return type;
+	}
+
+	public long invocations()
+	{
+		return invocations;
+	}
+
+	public long selfNanoseconds()
+	{
+		return selfNanoseconds;
+	}
+
+	public long totalNanoseconds()
+	{
+		return totalNanoseconds;
+	}
+
+	public long selfBytes()
+	{
+		return selfBytes;
+	}
+
+	public long totalBytes()
+	{
+		return totalBytes;
+	}
+}
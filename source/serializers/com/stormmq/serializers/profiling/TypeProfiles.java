@@ -0,0 +1,133 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.profiling;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+// Shared by the SamplingTypeProfilers of many serializers; each touches the LongAdders once per type per sampled document
+public final class TypeProfiles
+{
+	private static final int Invocations = 0;
+	private static final int SelfNanoseconds = 1;
+	private static final int TotalNanoseconds = 2;
+	private static final int SelfBytes = 3;
+	private static final int TotalBytes = 4;
+	private static final int Counters = 5;
+
+	private static final double NanosecondsPerMillisecond = 1_000_000.0;
+
+	@NotNull private final ConcurrentMap<Class<?>, LongAdder[]> countersByType;
+	@NotNull private final LongAdder sampledDocuments;
+
+	public TypeProfiles()
+	{
+		countersByType = new ConcurrentHashMap<>(64);
+		sampledDocuments = new LongAdder();
+	}
+
+	void recordSampledDocument()
+	{
+		sampledDocuments.increment();
+	}
+
+	void record(@NotNull final Class<?> type, final long invocations, final long selfNanoseconds, final long totalNanoseconds, final long selfBytes, final long totalBytes)
+	{
+		final LongAdder[] counters = countersByType.computeIfAbsent(type, key -> longAdders());
+		counters[Invocations].add(invocations);
+		counters[SelfNanoseconds].add(selfNanoseconds);
+		counters[TotalNanoseconds].add(totalNanoseconds);
+		counters[SelfBytes].add(selfBytes);
+		counters[TotalBytes].add(totalBytes);
+	}
+
+	@NotNull
+	private static LongAdder[] longAdders()
+	{
+		final LongAdder[] longAdders = new LongAdder[Counters];
+		for (int index = 0; index < Counters; index++)
+		{
+			longAdders[index] = new LongAdder();
+		}
+		return longAdders;
+	}
+
+	public long sampledDocuments()
+	{
+		return sampledDocuments.sum();
+	}
+
+	// Most self time first; each profile is summed once, so the ordering is stable even while documents are still being recorded
+	@NotNull
+	public List<TypeProfile> ranked()
+	{
+		final List<TypeProfile> typeProfiles = new ArrayList<>(countersByType.size());
+		for (final Map.Entry<Class<?>, LongAdder[]> entry : countersByType.entrySet())
+		{
+			final LongAdder[] counters = entry.getValue();
+			typeProfiles.add(new TypeProfile(entry.getKey(), counters[Invocations].sum(), counters[SelfNanoseconds].sum(), counters[TotalNanoseconds].sum(), counters[SelfBytes].sum(), counters[TotalBytes].sum()));
+		}
+		typeProfiles.sort((left, right) -> Long.compare(right.selfNanoseconds(), left.selfNanoseconds()));
+		return typeProfiles;
+	}
+
+	@NonNls
+	@NotNull
+	public String report()
+	{
+		final List<TypeProfile> typeProfiles = ranked();
+		long allSelfNanoseconds = 0L;
+		for (final TypeProfile typeProfile : typeProfiles)
+		{
+			allSelfNanoseconds += typeProfile.selfNanoseconds();
+		}
+
+		final StringBuilder report = new StringBuilder(128 * (typeProfiles.size() + 2));
+		report.append(format(ENGLISH, "%1$d sampled documents%n", sampledDocuments()));
+		report.append(format(ENGLISH, "%1$4s %2$7s %3$12s %4$12s %5$12s %6$14s %7$14s  %8$s%n", "rank", "self%", "invocations", "self ms", "total ms", "self bytes", "total bytes", "type"));
+		int rank = 1;
+		for (final TypeProfile typeProfile : typeProfiles)
+		{
+			final double selfPercentage = allSelfNanoseconds == 0L ? 0.0 : 100.0 * typeProfile.selfNanoseconds() / allSelfNanoseconds;
+			report.append(format(ENGLISH, "%1$4d %2$6.2f%% %3$12d %4$12.3f %5$12.3f %6$14d %7$14d  %8$s%n", rank, selfPercentage, typeProfile.invocations(), typeProfile.selfNanoseconds() / NanosecondsPerMillisecond, typeProfile.totalNanoseconds() / NanosecondsPerMillisecond, typeProfile.selfBytes(), typeProfile.totalBytes(), typeProfile.type().getName()));
+			rank++;
+		}
+		return report.toString();
+	}
+
+	public void reset()
+	{
+		countersByType.clear();
+		sampledDocuments.reset();
+	}
+}
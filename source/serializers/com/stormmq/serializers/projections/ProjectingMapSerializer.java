@@ -0,0 +1,364 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.projections;
+
+import com.stormmq.serializers.*;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+import static com.stormmq.serializers.ObjectKind.kindOf;
+
+// Drops the properties a projection does not select before anything about them is written, and carries the projection down into nested maps
+// ValueSerializable properties are selected or dropped whole
+// A selected nested map is written through a new ProjectedMapSerializable, so it is not the instance the graph holds; a list or set is copied only if it holds something that has to be projected
+public class ProjectingMapSerializer implements MapSerializer
+{
+	@NotNull private final MapSerializer delegate;
+	@NotNull protected final Projection projection;
+
+	public ProjectingMapSerializer(@NotNull final MapSerializer delegate, @NotNull final Projection projection)
+	{
+		this.delegate = delegate;
+		this.projection = projection;
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final String value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final String value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		if (projection.child(name) != null)
+		{
+			delegate.writeProperty(name, value, isMapEntry);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final MapSerializable value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final MapSerializable value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		@Nullable final Projection child = projection.child(name);
+		if (child != null)
+		{
+			delegate.writeProperty(name, project(value, child), isMapEntry);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final ValueSerializable value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final ValueSerializable value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		if (projection.child(name) != null)
+		{
+			delegate.writeProperty(name, value, isMapEntry);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		kindOf(value).writeProperty(this, name, value, isMapEntry);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final int value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final int value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		if (projection.child(name) != null)
+		{
+			delegate.writeProperty(name, value, isMapEntry);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final long value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final long value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		if (projection.child(name) != null)
+		{
+			delegate.writeProperty(name, value, isMapEntry);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final boolean value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final boolean value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		if (projection.child(name) != null)
+		{
+			delegate.writeProperty(name, value, isMapEntry);
+		}
+	}
+
+	@Override
+	public void writePropertyNull(@FieldTokenName @NonNls @NotNull final String name) throws CouldNotWritePropertyException
+	{
+		writePropertyNull(name, false);
+	}
+
+	@Override
+	public void writePropertyNull(@FieldTokenName @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		if (projection.child(name) != null)
+		{
+			delegate.writePropertyNull(name, isMapEntry);
+		}
+	}
+
+	@Override
+	public <S extends MapSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, values, false);
+	}
+
+	@Override
+	public <S extends MapSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		@Nullable final Projection child = projection.child(name);
+		if (child != null)
+		{
+			delegate.writeProperty(name, project(values, child), isMapEntry);
+		}
+	}
+
+	@Override
+	public <S extends ValueSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, values, false);
+	}
+
+	@Override
+	public <S extends ValueSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		if (projection.child(name) != null)
+		{
+			delegate.writeProperty(name, values, isMapEntry);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final List<?> values) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, values, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final List<?> values, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		@Nullable final Projection child = projection.child(name);
+		if (child != null)
+		{
+			delegate.writeProperty(name, project(values, child), isMapEntry);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final Set<?> values) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, values, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final Set<?> values, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		@Nullable final Projection child = projection.child(name);
+		if (child != null)
+		{
+			delegate.writeProperty(name, project(values, child), isMapEntry);
+		}
+	}
+
+	// Below a node that selects everything the original values are written unwrapped
+	@NotNull
+	protected static MapSerializable project(@NotNull final MapSerializable value, @NotNull final Projection projection)
+	{
+		return projection.selectsEverything() ? value : new ProjectedMapSerializable(value, projection);
+	}
+
+	@NotNull
+	protected static MapSerializable[] project(@NotNull final MapSerializable[] values, @NotNull final Projection projection)
+	{
+		if (projection.selectsEverything())
+		{
+			return values;
+		}
+		final int length = values.length;
+		final MapSerializable[] projected = new MapSerializable[length];
+		for (int index = 0; index < length; index++)
+		{
+			@Nullable final MapSerializable value = values[index];
+			projected[index] = value == null ? null : new ProjectedMapSerializable(value, projection);
+		}
+		return projected;
+	}
+
+	@NotNull
+	protected static List<?> project(@NotNull final List<?> values, @NotNull final Projection projection)
+	{
+		if (projection.selectsEverything())
+		{
+			return values;
+		}
+		@Nullable List<Object> projected = null;
+		int index = 0;
+		for (final Object value : values)
+		{
+			@Nullable final Object projectedValue = projectObject(value, projection);
+			if (projected == null && projectedValue != value)
+			{
+				projected = new ArrayList<>(values.size());
+				projected.addAll(values.subList(0, index));
+			}
+			if (projected != null)
+			{
+				projected.add(projectedValue);
+			}
+			index++;
+		}
+		return projected == null ? values : projected;
+	}
+
+	@NotNull
+	protected static Set<?> project(@NotNull final Set<?> values, @NotNull final Projection projection)
+	{
+		if (projection.selectsEverything())
+		{
+			return values;
+		}
+		@Nullable Set<Object> projected = null;
+		int index = 0;
+		for (final Object value : values)
+		{
+			@Nullable final Object projectedValue = projectObject(value, projection);
+			if (projected == null && projectedValue != value)
+			{
+				projected = new LinkedHashSet<>(values.size() * 2);
+				copyFirst(values, index, projected);
+			}
+			if (projected != null)
+			{
+				projected.add(projectedValue);
+			}
+			index++;
+		}
+		return projected == null ? values : projected;
+	}
+
+	private static void copyFirst(@NotNull final Set<?> values, final int count, @NotNull final Set<Object> projected)
+	{
+		final Iterator<?> iterator = values.iterator();
+		for (int index = 0; index < count; index++)
+		{
+			projected.add(iterator.next());
+		}
+	}
+
+	@NotNull
+	protected static Serializable[] project(@NotNull final Serializable[] values, @NotNull final Projection projection)
+	{
+		final int length = values.length;
+		final Serializable[] projected = new Serializable[length];
+		for (int index = 0; index < length; index++)
+		{
+			@Nullable final Serializable value = values[index];
+			projected[index] = value == null ? null : new ProjectedSerializable(value, projection);
+		}
+		return projected;
+	}
+
+	// Elements of lists and sets are written by the delegate itself, so have to be projected before it sees them; they are told apart by ObjectKind, as the delegate will
+	@SuppressWarnings("MethodWithMultipleReturnPoints")
+	@Nullable
+	protected static Object projectObject(@Nullable final Object value, @NotNull final Projection projection)
+	{
+		if (projection.selectsEverything())
+		{
+			return value;
+		}
+
+		switch (kindOf(value))
+		{
+			case SerializableObject:
+				return new ProjectedSerializable((Serializable) value, projection);
+
+			case SerializablesObject:
+				return project((Serializable[]) value, projection);
+
+			case MapSerializableObject:
+				return new ProjectedMapSerializable((MapSerializable) value, projection);
+
+			case MapSerializablesObject:
+				return project((MapSerializable[]) value, projection);
+
+			case MapObject:
+				return new ProjectedMapSerializable(new GenericMapSerializable((Map<?, ?>) value), projection);
+
+			case ListObject:
+				return project((List<?>) value, projection);
+
+			case SetObject:
+				return project((Set<?>) value, projection);
+
+			default:
+				return value;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.projections;
+
+import com.stormmq.serializers.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.*;
+
+import static com.stormmq.serializers.ObjectKind.kindOf;
+
+// Projects a whole graph for any Serializer; values written at the root are projected by the root of the trie
+public final class ProjectingSerializer extends ProjectingMapSerializer implements Serializer
+{
+	@NotNull private final Serializer delegate;
+
+	public ProjectingSerializer(@NotNull final Serializer delegate, @NotNull final Projection projection)
+	{
+		super(delegate, projection);
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void start(@NotNull final OutputStream outputStream, @NotNull final Charset charset) throws CouldNotWriteDataException
+	{
+		delegate.start(outputStream, charset);
+	}
+
+	@Override
+	public void start(@NotNull final Writer writer, @NotNull final Charset charset) throws CouldNotWriteDataException
+	{
+		delegate.start(writer, charset);
+	}
+
+	@Override
+	public void finish() throws CouldNotWriteDataException
+	{
+		delegate.finish();
+	}
+
+	@Override
+	public <S extends MapSerializable> void writeValue(@NotNull final S[] values) throws CouldNotWriteValueException
+	{
+		delegate.writeValue(project(values, projection));
+	}
+
+	@Override
+	public <S extends ValueSerializable> void writeValue(@NotNull final S[] values) throws CouldNotWriteValueException
+	{
+		delegate.writeValue(values);
+	}
+
+	@Override
+	public void writeValue(@NotNull final List<?> values) throws CouldNotWriteValueException
+	{
+		delegate.writeValue(project(values, projection));
+	}
+
+	@Override
+	public void writeValue(@NotNull final Set<?> values) throws CouldNotWriteValueException
+	{
+		delegate.writeValue(project(values, projection));
+	}
+
+	@Override
+	public void writeValue(final int value) throws CouldNotWriteValueException
+	{
+		delegate.writeValue(value);
+	}
+
+	@Override
+	public void writeValue(final long value) throws CouldNotWriteValueException
+	{
+		delegate.writeValue(value);
+	}
+
+	@Override
+	public void writeValue(final boolean value) throws CouldNotWriteValueException
+	{
+		delegate.writeValue(value);
+	}
+
+	@Override
+	public void writeValue(@NotNull final BigDecimal value) throws CouldNotWriteValueException
+	{
+		delegate.writeValue(value);
+	}
+
+	@Override
+	public void writeValue(@NotNull final String value) throws CouldNotWriteValueException
+	{
+		delegate.writeValue(value);
+	}
+
+	@Override
+	public void writeValue(@NotNull final MapSerializable value) throws CouldNotWriteValueException
+	{
+		delegate.writeValue(project(value, projection));
+	}
+
+	@Override
+	public void writeValue(@NotNull final ValueSerializable value) throws CouldNotWriteValueException
+	{
+		delegate.writeValue(value);
+	}
+
+	@Override
+	public void writeValue(@Nullable final Object value) throws CouldNotWriteValueException
+	{
+		kindOf(value).writeValue(this, value);
+	}
+
+	@Override
+	public void writeValue(@NotNull final UUID value) throws CouldNotWriteValueException
+	{
+		delegate.writeValue(value);
+	}
+
+	@Override
+	public void writeValueNull() throws CouldNotWriteValueException
+	{
+		delegate.writeValueNull();
+	}
+
+	@Override
+	public <S extends Serializable> void writeValue(@NotNull final S value) throws CouldNotWriteValueException
+	{
+		value.serialise(this);
+	}
+
+	@SafeVarargs
+	@Override
+	public final <S extends Serializable> void writeValue(@NotNull final S... values) throws CouldNotWriteValueException
+	{
+		final int length = values.length;
+		final Serializable[] projected = new Serializable[length];
+		for (int index = 0; index < length; index++)
+		{
+			@Nullable final Serializable value = values[index];
+			projected[index] = value == null ? null : new ProjectedSerializable(value, projection);
+		}
+		delegate.writeValue(projected);
+	}
+}
@@ -0,0 +1,100 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.projections;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+// A trie of property names compiled from paths such as "customer.name" and "orders[*].id"; a path that ends at a node selects everything beneath it
+// Arrays, lists and sets are transparent, so their elements are projected by the node of the property holding them; "[*]" documents this but is optional
+public final class Projection
+{
+	@NonNls private static final String AllElements = "[*]";
+
+	@NotNull
+	public static Projection compile(@NonNls @NotNull final String... paths)
+	{
+		if (paths.length == 0)
+		{
+			throw new IllegalArgumentException("At least one path is required");
+		}
+		final Projection root = new Projection();
+		for (final String path : paths)
+		{
+			root.add(path);
+		}
+		return root;
+	}
+
+	@NotNull private final Map<String, Projection> children;
+	private boolean everything;
+
+	private Projection()
+	{
+		children = new HashMap<>(4);
+		everything = false;
+	}
+
+	// null if the property is not selected
+	@Nullable
+	public Projection child(@NonNls @NotNull final String name)
+	{
+		if (everything)
+		{
+			return this;
+		}
+		return children.get(name);
+	}
+
+	public boolean selectsEverything()
+	{
+		return everything;
+	}
+
+	private void add(@NonNls @NotNull final String path)
+	{
+		Projection node = this;
+		for (final String segment : path.split("\\.", -1))
+		{
+			final String name = segment.endsWith(AllElements) ? segment.substring(0, segment.length() - AllElements.length()) : segment;
+			if (name.isEmpty() || name.indexOf('[') != -1 || name.indexOf(']') != -1)
+			{
+				throw new IllegalArgumentException(format(ENGLISH, "The path '%1$s' has an invalid segment '%2$s'", path, segment));
+			}
+			if (node.everything)
+			{
+				return;
+			}
+			node = node.children.computeIfAbsent(name, key -> new Projection());
+		}
+		node.everything = true;
+		node.children.clear();
+	}
+}
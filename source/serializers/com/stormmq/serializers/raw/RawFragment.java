@@ -0,0 +1,186 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.raw;
+
+import com.stormmq.serializers.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+import static java.lang.String.format;
+import static java.nio.channels.Channels.newChannel;
+import static java.nio.file.Files.newBufferedReader;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Locale.ENGLISH;
+
+// Already serialized JSON or XML that is written verbatim rather than parsed and re-serialized
+// A file-backed fragment in the output's charset is transferred from the file to the output stream without passing through the writer; otherwise it is decoded and copied
+// Only JsonSerializer and XmlSerializer, and only for their own format, can write a raw fragment; a TapeSerializer records its characters, so a tee or merge patch can replay it into one
+// Being verbatim, a fragment is not escaped for the output charset, so should only contain characters it can encode
+public final class RawFragment implements ValueSerializable
+{
+	private static final int CopyBufferSize = 8192;
+
+	@NotNull
+	public static RawFragment rawFragment(@NotNull final RawFragmentFormat format, @NotNull final CharSequence fragment)
+	{
+		return new RawFragment(format, fragment.toString().toCharArray(), null, null);
+	}
+
+	@NotNull
+	public static RawFragment validatedRawFragment(@NotNull final RawFragmentFormat format, @NotNull final CharSequence fragment) throws CouldNotEncodeDataException
+	{
+		format.validate(fragment);
+		return rawFragment(format, fragment);
+	}
+
+	@NotNull
+	public static RawFragment fileFragment(@NotNull final RawFragmentFormat format, @NotNull final Path path, @NotNull final Charset charset)
+	{
+		return new RawFragment(format, null, path, charset);
+	}
+
+	// Reads the file once to validate it; it is read again each time it is written
+	@NotNull
+	public static RawFragment validatedFileFragment(@NotNull final RawFragmentFormat format, @NotNull final Path path, @NotNull final Charset charset) throws CouldNotEncodeDataException, IOException
+	{
+		format.validate(new String(readAllBytes(path), charset));
+		return fileFragment(format, path, charset);
+	}
+
+	@NotNull private final RawFragmentFormat format;
+	@Nullable private final char[] characters;
+	@Nullable private final Path path;
+	@Nullable private final Charset charset;
+
+	private RawFragment(@NotNull final RawFragmentFormat format, @Nullable final char[] characters, @Nullable final Path path, @Nullable final Charset charset)
+	{
+		this.format = format;
+		this.characters = characters;
+		this.path = path;
+		this.charset = charset;
+	}
+
+	@NotNull
+	public RawFragmentFormat rawFragmentFormat()
+	{
+		return format;
+	}
+
+	// Read from the file each time for a file-backed fragment
+	@NotNull
+	public String characters() throws IOException
+	{
+		if (characters != null)
+		{
+			return new String(characters);
+		}
+
+		assert path != null;
+		assert charset != null;
+		return new String(readAllBytes(path), charset);
+	}
+
+	@Override
+	public void serialiseValue(@NotNull final ValueSerializer valueSerializer) throws CouldNotSerializeValueException
+	{
+		if (!(valueSerializer instanceof RawFragmentSerializer))
+		{
+			throw new CouldNotSerializeValueException(this, new CouldNotEncodeDataException(format(ENGLISH, "%1$s can not write raw fragments", valueSerializer.getClass().getSimpleName())));
+		}
+		try
+		{
+			((RawFragmentSerializer) valueSerializer).writeValue(this);
+		}
+		catch (final CouldNotWriteValueException e)
+		{
+			throw new CouldNotSerializeValueException(this, e);
+		}
+	}
+
+	// outputStream, if not null, is the stream that writer encodes into with outputCharset, and nothing else lies between them
+	public void splice(@NotNull final Writer writer, @Nullable final OutputStream outputStream, @NotNull final Charset outputCharset) throws IOException
+	{
+		if (characters != null)
+		{
+			writer.write(characters);
+			return;
+		}
+
+		assert path != null;
+		assert charset != null;
+		if (outputStream != null && charset.equals(outputCharset))
+		{
+			writer.flush();
+			transfer(path, outputStream);
+			return;
+		}
+
+		try (final Reader reader = newBufferedReader(path, charset))
+		{
+			final char[] buffer = new char[CopyBufferSize];
+			int read;
+			while ((read = reader.read(buffer)) != -1)
+			{
+				writer.write(buffer, 0, read);
+			}
+		}
+	}
+
+	// The JDK gives the FileChannel behind a stream only when its class is exactly FileOutputStream, so only then does a file to file transfer avoid a copy through the heap
+	// Any other stream, including a socket's, is wrapped in a channel that transferTo() fills through a heap buffer, which still avoids decoding and re-encoding the file
+	private static void transfer(@NotNull final Path path, @NotNull final OutputStream outputStream) throws IOException
+	{
+		final WritableByteChannel target = newChannel(outputStream);
+		try (final FileChannel fileChannel = FileChannel.open(path, READ))
+		{
+			final long size = fileChannel.size();
+			long position = 0L;
+			while (position < size)
+			{
+				final long transferred = fileChannel.transferTo(position, size - position, target);
+				if (transferred == 0L)
+				{
+					throw new IOException(format(ENGLISH, "%1$s became shorter while being transferred", path));
+				}
+				position += transferred;
+			}
+		}
+	}
+
+	@Override
+	@NotNull
+	public String toString()
+	{
+		return format(ENGLISH, "%1$s fragment%2$s", format, path == null ? "" : " from " + path);
+	}
+}
@@ -0,0 +1,232 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.raw;
+
+import com.stormmq.serializers.CouldNotEncodeDataException;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+
+import static java.lang.Character.isWhitespace;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+// Validation is structural only: it catches truncated, unbalanced or mismatched fragments, not every grammar error
+public enum RawFragmentFormat
+{
+	Json
+	{
+		@SuppressWarnings("MagicCharacter")
+		@Override
+		public void validate(@NotNull final CharSequence fragment) throws CouldNotEncodeDataException
+		{
+			final StringBuilder expectedClosers = new StringBuilder(16);
+			boolean inString = false;
+			boolean escaped = false;
+			boolean anyValue = false;
+			final int length = fragment.length();
+			for (int index = 0; index < length; index++)
+			{
+				final char character = fragment.charAt(index);
+				if (inString)
+				{
+					if (escaped)
+					{
+						escaped = false;
+					}
+					else if (character == '\\')
+					{
+						escaped = true;
+					}
+					else if (character == '"')
+					{
+						inString = false;
+					}
+					else if (character < 0x20)
+					{
+						throw new CouldNotEncodeDataException(format(ENGLISH, "unescaped control character at %1$s", index));
+					}
+					continue;
+				}
+
+				switch (character)
+				{
+					case '"':
+						inString = true;
+						break;
+
+					case '{':
+						expectedClosers.append('}');
+						break;
+
+					case '[':
+						expectedClosers.append(']');
+						break;
+
+					case '}':
+					case ']':
+						final int last = expectedClosers.length() - 1;
+						if (last == -1 || expectedClosers.charAt(last) != character)
+						{
+							throw new CouldNotEncodeDataException(format(ENGLISH, "unbalanced '%1$s' at %2$s", character, index));
+						}
+						expectedClosers.setLength(last);
+						break;
+
+					default:
+						if (isWhitespace(character))
+						{
+							continue;
+						}
+				}
+				anyValue = true;
+			}
+			if (inString)
+			{
+				throw new CouldNotEncodeDataException("unterminated string");
+			}
+			if (expectedClosers.length() != 0)
+			{
+				throw new CouldNotEncodeDataException(format(ENGLISH, "missing '%1$s'", expectedClosers.reverse()));
+			}
+			if (!anyValue)
+			{
+				throw new CouldNotEncodeDataException("empty fragment");
+			}
+		}
+	},
+
+	// Content for an element: text and elements, with comments, CDATA sections and processing instructions passed over
+	Xml
+	{
+		@NonNls private static final String CommentEnd = "-->";
+		@NonNls private static final String CharacterDataEnd = "]]>";
+		@NonNls private static final String ProcessingInstructionEnd = "?>";
+
+		@SuppressWarnings("MagicCharacter")
+		@Override
+		public void validate(@NotNull final CharSequence fragment) throws CouldNotEncodeDataException
+		{
+			final String text = fragment.toString();
+			final ArrayDeque<String> openElements = new ArrayDeque<>(16);
+			int index = text.indexOf('<');
+			while (index != -1)
+			{
+				final int end;
+				if (text.startsWith("<!--", index))
+				{
+					end = endOf(text, index, CommentEnd);
+				}
+				else if (text.startsWith("<![CDATA[", index))
+				{
+					end = endOf(text, index, CharacterDataEnd);
+				}
+				else if (text.startsWith("<?", index))
+				{
+					end = endOf(text, index, ProcessingInstructionEnd);
+				}
+				else
+				{
+					end = endOfTag(text, index);
+					final boolean isEndTag = text.charAt(index + 1) == '/';
+					final boolean isEmptyTag = text.charAt(end - 2) == '/';
+					final String name = name(text, isEndTag ? index + 2 : index + 1, end);
+					if (isEndTag)
+					{
+						@Nullable final String open = openElements.pollLast();
+						if (!name.equals(open))
+						{
+							throw new CouldNotEncodeDataException(format(ENGLISH, "end tag '%1$s' does not match '%2$s' at %3$s", name, open, index));
+						}
+					}
+					else if (!isEmptyTag)
+					{
+						openElements.addLast(name);
+					}
+				}
+				index = text.indexOf('<', end);
+			}
+			if (!openElements.isEmpty())
+			{
+				throw new CouldNotEncodeDataException(format(ENGLISH, "element '%1$s' is not closed", openElements.peekLast()));
+			}
+		}
+
+		private int endOf(@NotNull final String text, final int index, @NotNull final String terminator) throws CouldNotEncodeDataException
+		{
+			final int end = text.indexOf(terminator, index);
+			if (end == -1)
+			{
+				throw new CouldNotEncodeDataException(format(ENGLISH, "'%1$s' missing for markup at %2$s", terminator, index));
+			}
+			return end + terminator.length();
+		}
+
+		// Attribute values may contain '>'
+		private int endOfTag(@NotNull final String text, final int index) throws CouldNotEncodeDataException
+		{
+			char quote = 0;
+			final int length = text.length();
+			for (int tagIndex = index + 1; tagIndex < length; tagIndex++)
+			{
+				final char character = text.charAt(tagIndex);
+				if (quote != 0)
+				{
+					if (character == quote)
+					{
+						quote = 0;
+					}
+				}
+				else if (character == '"' || character == '\'')
+				{
+					quote = character;
+				}
+				else if (character == '>')
+				{
+					return tagIndex + 1;
+				}
+			}
+			throw new CouldNotEncodeDataException(format(ENGLISH, "tag at %1$s is not closed", index));
+		}
+
+		@NotNull
+		private String name(@NotNull final String text, final int start, final int end) throws CouldNotEncodeDataException
+		{
+			int index = start;
+			while (index < end && !isWhitespace(text.charAt(index)) && text.charAt(index) != '>' && text.charAt(index) != '/')
+			{
+				index++;
+			}
+			if (index == start)
+			{
+				throw new CouldNotEncodeDataException(format(ENGLISH, "tag at %1$s has no name", start));
+			}
+			return text.substring(start, index);
+		}
+	},
+	;
+
+	public abstract void validate(@NotNull final CharSequence fragment) throws CouldNotEncodeDataException;
+}
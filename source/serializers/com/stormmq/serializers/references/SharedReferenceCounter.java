@@ -0,0 +1,413 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.stormmq.serializers.references;
+
+import com.stormmq.serializers.*;
+import com.stormmq.serializers.raw.RawFragment;
+import com.stormmq.serializers.raw.RawFragmentSerializer;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.*;
+
+import static com.stormmq.serializers.ObjectKind.kindOf;
+
+// Walks a graph without writing anything, telling SharedReferences of every map it meets; a map met again is not walked again, so a cycle ends the walk rather than overflowing the stack
+// Object values are dispatched by ObjectKind, as in every serializer, so the walk meets the same maps a serializer would
+final class SharedReferenceCounter implements Serializer, RawFragmentSerializer
+{
+	@NotNull private final SharedReferences sharedReferences;
+
+	SharedReferenceCounter(@NotNull final SharedReferences sharedReferences)
+	{
+		this.sharedReferences = sharedReferences;
+	}
+
+	// Nothing is written, so there is no document to start or finish
+	@Override
+	public void start(@NotNull final OutputStream outputStream, @NotNull final Charset charset)
+	{
+	}
+
+	@Override
+	public void start(@NotNull final Writer writer, @NotNull final Charset charset)
+	{
+	}
+
+	@Override
+	public void finish()
+	{
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final String value)
+	{
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final String value, final boolean isMapEntry)
+	{
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final MapSerializable value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final MapSerializable value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		try
+		{
+			count(value);
+		}
+		catch (final CouldNotSerializeMapException e)
+		{
+			throw new CouldNotWritePropertyException(name, value, e);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final ValueSerializable value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final ValueSerializable value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		try
+		{
+			value.serialiseValue(this);
+		}
+		catch (final CouldNotSerializeValueException e)
+		{
+			throw new CouldNotWritePropertyException(name, value, e);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final RawFragment value, final boolean isMapEntry)
+	{
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		kindOf(value).writeProperty(this, name, value, isMapEntry);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final int value)
+	{
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final int value, final boolean isMapEntry)
+	{
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final long value)
+	{
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final long value, final boolean isMapEntry)
+	{
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final boolean value)
+	{
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final boolean value, final boolean isMapEntry)
+	{
+	}
+
+	@Override
+	public void writePropertyNull(@FieldTokenName @NonNls @NotNull final String name)
+	{
+	}
+
+	@Override
+	public void writePropertyNull(@FieldTokenName @NonNls @NotNull final String name, final boolean isMapEntry)
+	{
+	}
+
+	@Override
+	public <S extends MapSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, values, false);
+	}
+
+	@Override
+	public <S extends MapSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		try
+		{
+			countAll(values);
+		}
+		catch (final CouldNotSerializeMapException e)
+		{
+			throw new CouldNotWritePropertyException(name, values, e);
+		}
+	}
+
+	@Override
+	public <S extends ValueSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, values, false);
+	}
+
+	@Override
+	public <S extends ValueSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		try
+		{
+			walkAll(values);
+		}
+		catch (final CouldNotSerializeValueException e)
+		{
+			throw new CouldNotWritePropertyException(name, values, e);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final List<?> values) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, values, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final List<?> values, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		try
+		{
+			writeValue(values);
+		}
+		catch (final CouldNotWriteValueException e)
+		{
+			throw new CouldNotWritePropertyException(name, values, e);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final Set<?> values) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, values, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final Set<?> values, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		try
+		{
+			writeValue(values);
+		}
+		catch (final CouldNotWriteValueException e)
+		{
+			throw new CouldNotWritePropertyException(name, values, e);
+		}
+	}
+
+	@Override
+	public <S extends MapSerializable> void writeValue(@NotNull final S[] values) throws CouldNotWriteValueException
+	{
+		try
+		{
+			countAll(values);
+		}
+		catch (final CouldNotSerializeMapException e)
+		{
+			throw new CouldNotWriteValueException(values, e);
+		}
+	}
+
+	@Override
+	public <S extends ValueSerializable> void writeValue(@NotNull final S[] values) throws CouldNotWriteValueException
+	{
+		try
+		{
+			walkAll(values);
+		}
+		catch (final CouldNotSerializeValueException e)
+		{
+			throw new CouldNotWriteValueException(values, e);
+		}
+	}
+
+	@Override
+	public void writeValue(@NotNull final List<?> values) throws CouldNotWriteValueException
+	{
+		for (final Object value : values)
+		{
+			writeValue(value);
+		}
+	}
+
+	@Override
+	public void writeValue(@NotNull final Set<?> values) throws CouldNotWriteValueException
+	{
+		for (final Object value : values)
+		{
+			writeValue(value);
+		}
+	}
+
+	@Override
+	public void writeValue(final int value)
+	{
+	}
+
+	@Override
+	public void writeValue(final long value)
+	{
+	}
+
+	@Override
+	public void writeValue(final boolean value)
+	{
+	}
+
+	@Override
+	public void writeValue(@NotNull final BigDecimal value)
+	{
+	}
+
+	@Override
+	public void writeValue(@NotNull final String value)
+	{
+	}
+
+	@Override
+	public void writeValue(@NotNull final MapSerializable value) throws CouldNotWriteValueException
+	{
+		try
+		{
+			count(value);
+		}
+		catch (final CouldNotSerializeMapException e)
+		{
+			throw new CouldNotWriteValueException(value, e);
+		}
+	}
+
+	@Override
+	public void writeValue(@NotNull final ValueSerializable value) throws CouldNotWriteValueException
+	{
+		try
+		{
+			value.serialiseValue(this);
+		}
+		catch (final CouldNotSerializeValueException e)
+		{
+			throw new CouldNotWriteValueException(value, e);
+		}
+	}
+
+	@Override
+	public void writeValue(@NotNull final RawFragment value)
+	{
+	}
+
+	@Override
+	public void writeValue(@Nullable final Object value) throws CouldNotWriteValueException
+	{
+		kindOf(value).writeValue(this, value);
+	}
+
+	@Override
+	public void writeValue(@NotNull final UUID value)
+	{
+	}
+
+	@Override
+	public void writeValueNull()
+	{
+	}
+
+	@Override
+	public <S extends Serializable> void writeValue(@NotNull final S value)
+	{
+		value.serialise(this);
+	}
+
+	@SafeVarargs
+	@Override
+	public final <S extends Serializable> void writeValue(@NotNull final S... values)
+	{
+		for (final S value : values)
+		{
+			if (value != null)
+			{
+				value.serialise(this);
+			}
+		}
+	}
+
+	private void count(@NotNull final MapSerializable value) throws CouldNotSerializeMapException
+	{
+		if (sharedReferences.sighted(value))
+		{
+			value.serialiseMap(this);
+		}
+	}
+
+	private void countAll(@NotNull final MapSerializable[] values) throws CouldNotSerializeMapException
+	{
+		for (final MapSerializable value : values)
+		{
+			if (value != null)
+			{
+				count(value);
+			}
+		}
+	}
+
+	private void walkAll(@NotNull final ValueSerializable[] values) throws CouldNotSerializeValueException
+	{
+		for (final ValueSerializable value : values)
+		{
+			if (value != null)
+			{
+				value.serialiseValue(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,134 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.references;
+
+import com.stormmq.serializers.CouldNotEncodeDataException;
+import com.stormmq.serializers.Serializable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+import static java.util.Collections.newSetFromMap;
+import static java.util.Locale.ENGLISH;
+
+// Tracks, by identity, the maps already written in a document so that repeats can be written as references; an instance met again while it is still being written is a cycle
+// A graph counted before it is written has only the maps it holds more than once marked as shared; if nothing was counted, every map is treated as shared
+public final class SharedReferences
+{
+	@NotNull private final Map<Object, String> identifiers;
+	@NotNull private final Set<Object> ancestors;
+	@NotNull private final Set<Object> sighted;
+	@NotNull private final Set<Object> repeated;
+	@NotNull private final SharedReferenceCounter counter;
+	private boolean counted;
+	private int lastIdentifier;
+
+	public SharedReferences()
+	{
+		identifiers = new IdentityHashMap<>(64);
+		ancestors = newSetFromMap(new IdentityHashMap<>(16));
+		sighted = newSetFromMap(new IdentityHashMap<>(64));
+		repeated = newSetFromMap(new IdentityHashMap<>(16));
+		counter = new SharedReferenceCounter(this);
+		counted = false;
+		lastIdentifier = 0;
+	}
+
+	public void reset()
+	{
+		identifiers.clear();
+		ancestors.clear();
+		sighted.clear();
+		repeated.clear();
+		counted = false;
+		lastIdentifier = 0;
+	}
+
+	// Walks the graph once, writing nothing, to find the maps it holds more than once
+	public void count(@NotNull final Serializable graph)
+	{
+		sighted.clear();
+		repeated.clear();
+		graph.serialise(counter);
+		sighted.clear();
+		counted = true;
+	}
+
+	public boolean isShared(@NotNull final Object value)
+	{
+		return !counted || repeated.contains(value);
+	}
+
+	// True the first time a value is sighted while counting
+	boolean sighted(@NotNull final Object value)
+	{
+		if (sighted.add(value))
+		{
+			return true;
+		}
+		repeated.add(value);
+		return false;
+	}
+
+	@Nullable
+	public String identifier(@NotNull final Object value) throws CouldNotEncodeDataException
+	{
+		guardAgainstCycle(value);
+		return identifiers.get(value);
+	}
+
+	@NotNull
+	public String identify(@NotNull final Object value)
+	{
+		lastIdentifier++;
+		final String identifier = Integer.toString(lastIdentifier);
+		if (identifiers.put(value, identifier) != null)
+		{
+			throw new IllegalStateException("Already identified");
+		}
+		return identifier;
+	}
+
+	public void enter(@NotNull final Object value) throws CouldNotEncodeDataException
+	{
+		guardAgainstCycle(value);
+		ancestors.add(value);
+	}
+
+	public void leave(@NotNull final Object value)
+	{
+		ancestors.remove(value);
+	}
+
+	private void guardAgainstCycle(@NotNull final Object value) throws CouldNotEncodeDataException
+	{
+		if (ancestors.contains(value))
+		{
+			throw new CouldNotEncodeDataException(format(ENGLISH, "the graph contains a cycle through an instance of %1$s", value.getClass().getName()));
+		}
+	}
+}
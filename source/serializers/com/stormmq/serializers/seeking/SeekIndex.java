@@ -0,0 +1,114 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.seeking;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+
+import static java.lang.String.format;
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.newOutputStream;
+import static java.util.Locale.ENGLISH;
+
+// The byte offset of every interval-th record of a document's root array, kept as a sidecar file beside the document
+public final class SeekIndex
+{
+	private static final int Magic = 0x53454B31;
+
+	@NotNull
+	public static SeekIndex read(@NotNull final Path sidecar) throws IOException
+	{
+		try (final DataInputStream inputStream = new DataInputStream(new BufferedInputStream(newInputStream(sidecar))))
+		{
+			if (inputStream.readInt() != Magic)
+			{
+				throw new IOException(format(ENGLISH, "%1$s is not a seek index", sidecar));
+			}
+			final int interval = inputStream.readInt();
+			final long recordCount = inputStream.readLong();
+			final long[] offsets = new long[inputStream.readInt()];
+			for (int index = 0; index < offsets.length; index++)
+			{
+				offsets[index] = inputStream.readLong();
+			}
+			return new SeekIndex(interval, recordCount, offsets);
+		}
+	}
+
+	private final int interval;
+	private final long recordCount;
+	@NotNull private final long[] offsets;
+
+	@SuppressWarnings("AssignmentToCollectionOrArrayFieldFromParameter")
+	public SeekIndex(final int interval, final long recordCount, @NotNull final long[] offsets)
+	{
+		this.interval = interval;
+		this.recordCount = recordCount;
+		this.offsets = offsets;
+	}
+
+	public int interval()
+	{
+		return interval;
+	}
+
+	public long recordCount()
+	{
+		return recordCount;
+	}
+
+	// The offset of the last indexed record at or before record
+	public long offsetAtOrBefore(final long record)
+	{
+		if (record < 0L || record >= recordCount)
+		{
+			throw new IndexOutOfBoundsException(format(ENGLISH, "record %1$s is not between 0 and %2$s", record, recordCount - 1L));
+		}
+		return offsets[(int) (record / interval)];
+	}
+
+	// Positions the channel at the last indexed record at or before record and returns how many records remain to be skipped from there
+	public int seek(@NotNull final SeekableByteChannel channel, final long record) throws IOException
+	{
+		channel.position(offsetAtOrBefore(record));
+		return (int) (record % interval);
+	}
+
+	public void write(@NotNull final Path sidecar) throws IOException
+	{
+		try (final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(newOutputStream(sidecar))))
+		{
+			outputStream.writeInt(Magic);
+			outputStream.writeInt(interval);
+			outputStream.writeLong(recordCount);
+			outputStream.writeInt(offsets.length);
+			for (final long offset : offsets)
+			{
+				outputStream.writeLong(offset);
+			}
+		}
+	}
+}
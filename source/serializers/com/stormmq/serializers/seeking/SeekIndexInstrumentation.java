@@ -0,0 +1,181 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.seeking;
+
+import com.stormmq.serializers.ByteCountingFilterWriter;
+import com.stormmq.serializers.SerializerInstrumentation;
+import com.stormmq.serializers.ValueSerializable;
+import com.stormmq.serializers.ValueType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import static java.util.Arrays.copyOf;
+
+// Notes the byte offset at which every interval-th element of a document's root array starts: a JSON array element, or a separated values row
+// Only elements that are announced to instrumentation are seen, so do not combine with a fragment cache or shared reference deduplication; use CompositeSerializerInstrumentation to keep other instrumentation
+public final class SeekIndexInstrumentation implements SerializerInstrumentation
+{
+	private static final int RootArray = 1;
+
+	private final int interval;
+	@NotNull private final Charset charset;
+	@Nullable private ByteCountingFilterWriter byteCountingFilterWriter;
+	private int depth;
+	private long recordCount;
+	@NotNull private long[] offsets;
+	private int offsetCount;
+	@Nullable private SeekIndex seekIndex;
+
+	public SeekIndexInstrumentation(final int interval, @NotNull final Charset charset)
+	{
+		if (interval < 1)
+		{
+			throw new IllegalArgumentException("interval must be at least 1");
+		}
+		this.interval = interval;
+		this.charset = charset;
+		byteCountingFilterWriter = null;
+		offsets = new long[64];
+		seekIndex = null;
+	}
+
+	// The index of the last document finished
+	@NotNull
+	public SeekIndex seekIndex()
+	{
+		if (seekIndex == null)
+		{
+			throw new IllegalStateException("No document has finished");
+		}
+		return seekIndex;
+	}
+
+	@NotNull
+	@Override
+	public OutputStream instrument(@NotNull final OutputStream outputStream)
+	{
+		return outputStream;
+	}
+
+	@NotNull
+	@Override
+	public Writer instrument(@NotNull final Writer writer)
+	{
+		byteCountingFilterWriter = new ByteCountingFilterWriter(writer, charset);
+		return byteCountingFilterWriter;
+	}
+
+	@Override
+	public void documentStarted()
+	{
+		depth = 0;
+		recordCount = 0L;
+		offsetCount = 0;
+	}
+
+	@Override
+	public void documentFinished()
+	{
+		seekIndex = new SeekIndex(interval, recordCount, copyOf(offsets, offsetCount));
+	}
+
+	@Override
+	public void documentFailed(@NotNull final Exception cause)
+	{
+	}
+
+	@Override
+	public void value(@NotNull final ValueType valueType)
+	{
+		if (depth == RootArray)
+		{
+			recordStarted();
+		}
+	}
+
+	@Override
+	public void enteredNesting(@NotNull final ValueType valueType, @NotNull final Object value)
+	{
+		if (depth == RootArray)
+		{
+			recordStarted();
+		}
+		depth++;
+	}
+
+	@Override
+	public void leftNesting(@NotNull final ValueType valueType, @NotNull final Object value)
+	{
+		depth--;
+	}
+
+	@Override
+	public void enteredValue(@NotNull final ValueSerializable value)
+	{
+	}
+
+	@Override
+	public void leftValue(@NotNull final ValueSerializable value)
+	{
+	}
+
+	@Override
+	public void stringEscaped(final int escapes)
+	{
+	}
+
+	private void recordStarted()
+	{
+		if (recordCount % interval == 0L)
+		{
+			if (offsetCount == offsets.length)
+			{
+				offsets = copyOf(offsets, offsetCount * 2);
+			}
+			offsets[offsetCount] = byteCount();
+			offsetCount++;
+		}
+		recordCount++;
+	}
+
+	private long byteCount()
+	{
+		if (byteCountingFilterWriter == null)
+		{
+			throw new IllegalStateException("instrument(Writer) was not called");
+		}
+		try
+		{
+			return byteCountingFilterWriter.byteCount();
+		}
+		catch (final IOException e)
+		{
+			throw new IllegalStateException("Counting into a discarding stream can not fail", e);
+		}
+	}
+}
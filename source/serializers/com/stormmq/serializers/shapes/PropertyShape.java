@@ -0,0 +1,71 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.shapes;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+public final class PropertyShape<E>
+{
+	@NonNls @NotNull private final String[] names;
+	@NotNull private final E[] encodings;
+	private int consecutiveDeviations;
+
+	public PropertyShape(@NonNls @NotNull final String[] names, @NotNull final E[] encodings)
+	{
+		if (names.length != encodings.length)
+		{
+			throw new IllegalArgumentException("There must be one encoding for each name");
+		}
+		this.names = names;
+		this.encodings = encodings;
+		consecutiveDeviations = 0;
+	}
+
+	public int size()
+	{
+		return names.length;
+	}
+
+	// Property names are almost always literals, so equals() usually succeeds on its identity check
+	public boolean matches(final int index, @NonNls @NotNull final String name)
+	{
+		return index < names.length && names[index].equals(name);
+	}
+
+	@NotNull
+	public E encoding(final int index)
+	{
+		return encodings[index];
+	}
+
+	void matched()
+	{
+		consecutiveDeviations = 0;
+	}
+
+	int deviated()
+	{
+		return ++consecutiveDeviations;
+	}
+}
@@ -0,0 +1,108 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.shapes;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Tracks one map being written; once it deviates from its learned shape it stays off for the rest of that map
+public final class PropertyShapeCursor<E>
+{
+	@NotNull private final PropertyShapes<E> propertyShapes;
+	@NotNull private final Class<?> type;
+	@Nullable private final PropertyShape<E> shape;
+	@Nullable private final List<String> learning;
+	private int index;
+	private boolean deviated;
+
+	PropertyShapeCursor(@NotNull final PropertyShapes<E> propertyShapes, @NotNull final Class<?> type, @Nullable final PropertyShape<E> shape)
+	{
+		this.propertyShapes = propertyShapes;
+		this.type = type;
+		this.shape = shape;
+		learning = shape == null ? new ArrayList<>(16) : null;
+		index = 0;
+		deviated = false;
+	}
+
+	// Returns null when the caller must write the property name itself
+	@Nullable
+	public E next(@NonNls @NotNull final String name)
+	{
+		if (deviated)
+		{
+			return null;
+		}
+
+		if (shape == null)
+		{
+			assert learning != null;
+			learning.add(name);
+			index++;
+			return null;
+		}
+
+		if (shape.matches(index, name))
+		{
+			return shape.encoding(index++);
+		}
+
+		deviate();
+		return null;
+	}
+
+	public void deviate()
+	{
+		if (deviated)
+		{
+			return;
+		}
+		deviated = true;
+		if (shape != null)
+		{
+			propertyShapes.deviated(type, shape);
+		}
+	}
+
+	public void finish()
+	{
+		if (deviated)
+		{
+			return;
+		}
+
+		if (shape == null)
+		{
+			assert learning != null;
+			propertyShapes.learn(type, learning);
+		}
+		else
+		{
+			shape.matched();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.shapes;
+
+import com.stormmq.serializers.AbstractDataException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Not thread safe; each serializer has its own
+public final class PropertyShapes<E>
+{
+	// A shape learned from an unrepresentative first instance is forgotten and relearned
+	private static final int ForgetAfterConsecutiveDeviations = 8;
+
+	@NotNull private final Class<E> encodingClass;
+	@NotNull private final PropertyShapeEncoder<E> propertyShapeEncoder;
+	private final int maximumShapes;
+	@NotNull private final Map<Class<?>, PropertyShape<E>> shapes;
+
+	public PropertyShapes(@NotNull final Class<E> encodingClass, @NotNull final PropertyShapeEncoder<E> propertyShapeEncoder, final int maximumShapes)
+	{
+		if (maximumShapes < 1)
+		{
+			throw new IllegalArgumentException("maximumShapes must be positive");
+		}
+		this.encodingClass = encodingClass;
+		this.propertyShapeEncoder = propertyShapeEncoder;
+		this.maximumShapes = maximumShapes;
+		shapes = new HashMap<>(maximumShapes < 64 ? maximumShapes * 2 : 128);
+	}
+
+	@NotNull
+	public PropertyShapeCursor<E> cursor(@NotNull final Class<?> type)
+	{
+		return new PropertyShapeCursor<>(this, type, shapes.get(type));
+	}
+
+	public int size()
+	{
+		return shapes.size();
+	}
+
+	void learn(@NotNull final Class<?> type, @NotNull final List<String> names)
+	{
+		if (shapes.containsKey(type) || shapes.size() == maximumShapes)
+		{
+			return;
+		}
+
+		final int size = names.size();
+		final String[] learnedNames = names.toArray(new String[size]);
+		@SuppressWarnings("unchecked") final E[] encodings = (E[]) Array.newInstance(encodingClass, size);
+		for (int index = 0; index < size; index++)
+		{
+			try
+			{
+				encodings[index] = propertyShapeEncoder.encode(index, learnedNames[index]);
+			}
+			catch (final AbstractDataException ignored)
+			{
+				// The slow path will report the problem when the property is actually written
+				return;
+			}
+		}
+		shapes.put(type, new PropertyShape<>(learnedNames, encodings));
+	}
+
+	void deviated(@NotNull final Class<?> type, @NotNull final PropertyShape<E> shape)
+	{
+		if (shape.deviated() == ForgetAfterConsecutiveDeviations)
+		{
+			@Nullable final PropertyShape<E> current = shapes.get(type);
+			if (current == shape)
+			{
+				shapes.remove(type);
+			}
+		}
+	}
+}
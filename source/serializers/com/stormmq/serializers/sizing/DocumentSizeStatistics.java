@@ -0,0 +1,98 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.sizing;
+
+import org.jetbrains.annotations.NotNull;
+
+import static java.lang.Math.ceil;
+import static java.lang.Math.min;
+import static java.lang.System.arraycopy;
+import static java.util.Arrays.sort;
+
+// Moving statistics of the sizes of one root type's documents: an exponentially weighted average and a high percentile of the last Window sizes
+// The average stands in until enough sizes have been seen; after that the percentile is suggested, so a rare outlier neither inflates every buffer nor stays in the window for long
+public final class DocumentSizeStatistics
+{
+	private static final int Window = 64;
+	private static final int MinimumForPercentile = 8;
+	private static final int RecomputeEvery = 8;
+	private static final double AverageWeight = 0.125;
+
+	private final double percentile;
+	@NotNull private final long[] window;
+	@NotNull private final long[] sorted;
+	private long observations;
+	private double averageSize;
+	private long percentileSize;
+
+	DocumentSizeStatistics(final double percentile)
+	{
+		this.percentile = percentile;
+		window = new long[Window];
+		sorted = new long[Window];
+		observations = 0L;
+		averageSize = 0.0;
+		percentileSize = 0L;
+	}
+
+	public synchronized void observe(final long size)
+	{
+		window[(int) (observations % Window)] = size;
+		averageSize = observations == 0L ? size : averageSize + AverageWeight * (size - averageSize);
+		observations++;
+		if (observations >= MinimumForPercentile && (observations <= Window || observations % RecomputeEvery == 0L))
+		{
+			recomputePercentile();
+		}
+	}
+
+	private void recomputePercentile()
+	{
+		final int length = (int) min(observations, Window);
+		arraycopy(window, 0, sorted, 0, length);
+		sort(sorted, 0, length);
+		final int index = (int) ceil(percentile * length) - 1;
+		percentileSize = sorted[index < 0 ? 0 : index];
+	}
+
+	public synchronized long observations()
+	{
+		return observations;
+	}
+
+	public synchronized long averageSize()
+	{
+		return (long) ceil(averageSize);
+	}
+
+	public synchronized long percentileSize()
+	{
+		return percentileSize;
+	}
+
+	// 0 when nothing has been observed
+	public synchronized long suggestedSize()
+	{
+		return observations < MinimumForPercentile ? (long) ceil(averageSize) : percentileSize;
+	}
+}
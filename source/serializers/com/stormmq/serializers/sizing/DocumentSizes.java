@@ -0,0 +1,102 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.sizing;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Learns how large each root type's documents end up, so the next buffer for that type can start at that size rather than growing by repeated doubling
+// Suggestions never exceed maximumCapacity, so memory stays bounded however large an outlier is; such a document simply grows its buffer as before
+// Thread safe; share one instance only between serializers of the same format and charset, as sizes are learned per root type alone
+public final class DocumentSizes
+{
+	private static final double DefaultPercentile = 0.95;
+
+	private final int defaultCapacity;
+	private final int maximumCapacity;
+	private final double percentile;
+	@NotNull private final ConcurrentMap<Class<?>, DocumentSizeStatistics> statisticsByRootType;
+
+	public DocumentSizes(final int defaultCapacity, final int maximumCapacity)
+	{
+		this(defaultCapacity, maximumCapacity, DefaultPercentile);
+	}
+
+	public DocumentSizes(final int defaultCapacity, final int maximumCapacity, final double percentile)
+	{
+		if (defaultCapacity < 1)
+		{
+			throw new IllegalArgumentException("defaultCapacity must be at least 1");
+		}
+		if (maximumCapacity < defaultCapacity)
+		{
+			throw new IllegalArgumentException("maximumCapacity can not be less than defaultCapacity");
+		}
+		if (percentile <= 0.0 || percentile > 1.0)
+		{
+			throw new IllegalArgumentException("percentile must be greater than 0 and at most 1");
+		}
+		this.defaultCapacity = defaultCapacity;
+		this.maximumCapacity = maximumCapacity;
+		this.percentile = percentile;
+		statisticsByRootType = new ConcurrentHashMap<>(16);
+	}
+
+	public int initialCapacity(@NotNull final Class<?> rootType)
+	{
+		final DocumentSizeStatistics statistics = statisticsByRootType.get(rootType);
+		if (statistics == null)
+		{
+			return defaultCapacity;
+		}
+		final long suggestedSize = statistics.suggestedSize();
+		if (suggestedSize < 1L)
+		{
+			return defaultCapacity;
+		}
+		return suggestedSize > maximumCapacity ? maximumCapacity : (int) suggestedSize;
+	}
+
+	public void observe(@NotNull final Class<?> rootType, final long size)
+	{
+		statisticsByRootType.computeIfAbsent(rootType, key -> new DocumentSizeStatistics(percentile)).observe(size);
+	}
+
+	@NotNull
+	public DocumentSizeStatistics statistics(@NotNull final Class<?> rootType)
+	{
+		final DocumentSizeStatistics statistics = statisticsByRootType.get(rootType);
+		if (statistics == null)
+		{
+			throw new IllegalArgumentException("No documents of that root type have been observed");
+		}
+		return statistics;
+	}
+
+	public void reset()
+	{
+		statisticsByRootType.clear();
+	}
+}
@@ -0,0 +1,62 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.sizing;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.Serializable;
+import com.stormmq.serializers.framing.FrameBuffer;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static java.nio.ByteBuffer.wrap;
+
+// Serializes each document into a new buffer sized from what earlier documents of the same root type (the graph's runtime class) became
+// Each result owns its buffer, so may be kept; a document that fails to serialise is not observed; not thread safe, but documentSizes may be shared
+public final class PresizingSerializer
+{
+	@NotNull private final AbstractSerializer serializer;
+	@NotNull private final Charset charset;
+	@NotNull private final DocumentSizes documentSizes;
+
+	public PresizingSerializer(@NotNull final AbstractSerializer serializer, @NotNull final Charset charset, @NotNull final DocumentSizes documentSizes)
+	{
+		this.serializer = serializer;
+		this.charset = charset;
+		this.documentSizes = documentSizes;
+	}
+
+	// A view onto the document's bytes; its capacity may be larger than its limit
+	@NotNull
+	public ByteBuffer serialise(@NotNull final Serializable graph) throws CouldNotSerialiseException
+	{
+		final Class<?> rootType = graph.getClass();
+		final FrameBuffer buffer = new FrameBuffer(documentSizes.initialCapacity(rootType));
+		serializer.serialise(graph, buffer, charset);
+		final int size = buffer.size();
+		documentSizes.observe(rootType, size);
+		return wrap(buffer.bytes(), 0, size);
+	}
+}
@@ -0,0 +1,255 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.tape;
+
+import com.stormmq.serializers.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.stormmq.serializers.tape.TapeBuffer.NullSection;
+import static com.stormmq.serializers.tape.TapeValueOperation.MapValue;
+import static java.util.Arrays.asList;
+
+// Immutable; replaying allocates a reader and a small view for each nested value, so any number of threads may render the same tape into different formats at once
+public final class Tape implements Serializable
+{
+	@NotNull private static final TapePropertyOperation[] PropertyOperations = TapePropertyOperation.values();
+	@NotNull private static final TapeValueOperation[] ValueOperations = TapeValueOperation.values();
+	static final int IsMapEntry = 0x80;
+	static final int NotASingleMap = -1;
+	static final int SingleMapOffset = 5;
+
+	@NotNull private final byte[] bytes;
+	@NotNull private final String[] names;
+	private final int nameCount;
+
+	public Tape(@NotNull final byte[] bytes, @NotNull final String... names)
+	{
+		this(bytes, names, names.length);
+	}
+
+	// Only the first nameCount names belong to this tape; names may be shared with, and longer for, later tapes
+	Tape(@NotNull final byte[] bytes, @NotNull final String[] names, final int nameCount)
+	{
+		this.bytes = bytes;
+		this.names = names;
+		this.nameCount = nameCount;
+	}
+
+	public int size()
+	{
+		return bytes.length;
+	}
+
+	@Override
+	public void serialise(@NotNull final Serializer serializer)
+	{
+		try
+		{
+			replayValues(serializer, 0, bytes.length);
+		}
+		catch (final CouldNotWriteValueException e)
+		{
+			throw new IllegalStateException("Could not replay tape", e);
+		}
+	}
+
+	boolean sameAs(@NotNull final Tape other)
+	{
+		return Arrays.equals(bytes, other.bytes);
+	}
+
+	// True if every name of an earlier tape has the same index here, so the two tapes can be compared byte for byte
+	boolean sharesNamesWith(@NotNull final Tape earlier)
+	{
+		if (earlier.nameCount > nameCount)
+		{
+			return false;
+		}
+		for (int index = 0; index < earlier.nameCount; index++)
+		{
+			if (!names[index].equals(earlier.names[index]))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// The length of the root map's section when the whole tape is one map value
+	int singleMapLength()
+	{
+		if (bytes.length < SingleMapOffset || bytes[0] != MapValue.ordinal())
+		{
+			return NotASingleMap;
+		}
+		final int length = new TapeReader(bytes, 1).readSectionLength();
+		return SingleMapOffset + length == bytes.length ? length : NotASingleMap;
+	}
+
+	boolean rangeEquals(final int offset, @NotNull final Tape other, final int otherOffset, final int length)
+	{
+		for (int index = 0; index < length; index++)
+		{
+			if (bytes[offset + index] != other.bytes[otherOffset + index])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@NotNull
+	TapeReader reader(final int offset)
+	{
+		return new TapeReader(bytes, offset);
+	}
+
+	@NotNull
+	String name(final int index)
+	{
+		return names[index];
+	}
+
+	void replayValues(@NotNull final ValueSerializer valueSerializer, final int offset, final int length) throws CouldNotWriteValueException
+	{
+		final TapeReader reader = new TapeReader(bytes, offset);
+		final int end = offset + length;
+		while (reader.position() < end)
+		{
+			ValueOperations[reader.readByte()].replay(reader, this, valueSerializer);
+		}
+	}
+
+	void replayProperties(@NotNull final MapSerializer mapSerializer, final int offset, final int length) throws CouldNotWritePropertyException
+	{
+		final TapeReader reader = new TapeReader(bytes, offset);
+		final int end = offset + length;
+		while (reader.position() < end)
+		{
+			final int operation = reader.readByte();
+			final String name = names[reader.readUnsignedVarint()];
+			PropertyOperations[operation & ~IsMapEntry].replay(reader, this, mapSerializer, name, (operation & IsMapEntry) != 0);
+		}
+	}
+
+	@NotNull
+	MapSerializable readMap(@NotNull final TapeReader reader)
+	{
+		final int length = reader.readSectionLength();
+		final TapeMapSerializable value = new TapeMapSerializable(this, reader.position(), length);
+		reader.skip(length);
+		return value;
+	}
+
+	@NotNull
+	ValueSerializable readValue(@NotNull final TapeReader reader)
+	{
+		final int length = reader.readSectionLength();
+		final TapeValueSerializable value = new TapeValueSerializable(this, reader.position(), length);
+		reader.skip(length);
+		return value;
+	}
+
+	@NotNull
+	Serializable readSerializable(@NotNull final TapeReader reader)
+	{
+		final int length = reader.readSectionLength();
+		final TapeSerializable value = new TapeSerializable(this, reader.position(), length);
+		reader.skip(length);
+		return value;
+	}
+
+	@NotNull
+	MapSerializable[] readMaps(@NotNull final TapeReader reader)
+	{
+		final MapSerializable[] values = new MapSerializable[reader.readUnsignedVarint()];
+		for (int index = 0; index < values.length; index++)
+		{
+			final int length = reader.readSectionLength();
+			if (length != NullSection)
+			{
+				values[index] = new TapeMapSerializable(this, reader.position(), length);
+				reader.skip(length);
+			}
+		}
+		return values;
+	}
+
+	@NotNull
+	ValueSerializable[] readValues(@NotNull final TapeReader reader)
+	{
+		final ValueSerializable[] values = new ValueSerializable[reader.readUnsignedVarint()];
+		for (int index = 0; index < values.length; index++)
+		{
+			final int length = reader.readSectionLength();
+			if (length != NullSection)
+			{
+				values[index] = new TapeValueSerializable(this, reader.position(), length);
+				reader.skip(length);
+			}
+		}
+		return values;
+	}
+
+	@NotNull
+	Serializable[] readSerializables(@NotNull final TapeReader reader)
+	{
+		final Serializable[] values = new Serializable[reader.readUnsignedVarint()];
+		for (int index = 0; index < values.length; index++)
+		{
+			final int length = reader.readSectionLength();
+			if (length != NullSection)
+			{
+				values[index] = new TapeSerializable(this, reader.position(), length);
+				reader.skip(length);
+			}
+		}
+		return values;
+	}
+
+	@NotNull
+	List<Object> readList(@NotNull final TapeReader reader)
+	{
+		return asList(readElements(reader));
+	}
+
+	@NotNull
+	TapeSet readSet(@NotNull final TapeReader reader)
+	{
+		return new TapeSet(readElements(reader));
+	}
+
+	@NotNull
+	private Object[] readElements(@NotNull final TapeReader reader)
+	{
+		final Object[] elements = new Object[reader.readUnsignedVarint()];
+		for (int index = 0; index < elements.length; index++)
+		{
+			elements[index] = ValueOperations[reader.readByte()].read(reader, this);
+		}
+		return elements;
+	}
+}
@@ -0,0 +1,167 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.tape;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+
+import static java.util.Arrays.copyOf;
+
+// Integers are zig-zag varints and characters are varints, so ASCII costs one byte; nested values are sections prefixed with a four byte length, so readers can skip them
+public final class TapeBuffer
+{
+	public static final int NullSection = -1;
+
+	@NotNull private byte[] bytes;
+	private int length;
+
+	public TapeBuffer(final int initialCapacity)
+	{
+		bytes = new byte[initialCapacity];
+		length = 0;
+	}
+
+	public void reset()
+	{
+		length = 0;
+	}
+
+	public int length()
+	{
+		return length;
+	}
+
+	@NotNull
+	public byte[] toByteArray()
+	{
+		return copyOf(bytes, length);
+	}
+
+	public void writeByte(final int value)
+	{
+		ensureCapacity(1);
+		bytes[length++] = (byte) value;
+	}
+
+	public void writeUnsignedVarint(final int value)
+	{
+		ensureCapacity(5);
+		int remaining = value;
+		while ((remaining & ~0x7F) != 0)
+		{
+			bytes[length++] = (byte) ((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+		bytes[length++] = (byte) remaining;
+	}
+
+	public void writeSignedVarint(final int value)
+	{
+		writeUnsignedVarint((value << 1) ^ (value >> 31));
+	}
+
+	public void writeSignedVarlong(final long value)
+	{
+		ensureCapacity(10);
+		long remaining = (value << 1) ^ (value >> 63);
+		while ((remaining & ~0x7FL) != 0L)
+		{
+			bytes[length++] = (byte) ((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+		bytes[length++] = (byte) remaining;
+	}
+
+	public void writeFixedLong(final long value)
+	{
+		ensureCapacity(8);
+		for (int shift = 56; shift >= 0; shift -= 8)
+		{
+			bytes[length++] = (byte) (value >>> shift);
+		}
+	}
+
+	public void writeString(@NotNull final String value)
+	{
+		final int stringLength = value.length();
+		writeUnsignedVarint(stringLength);
+		ensureCapacity(stringLength * 3);
+		for (int index = 0; index < stringLength; index++)
+		{
+			int character = value.charAt(index);
+			while ((character & ~0x7F) != 0)
+			{
+				bytes[length++] = (byte) ((character & 0x7F) | 0x80);
+				character >>>= 7;
+			}
+			bytes[length++] = (byte) character;
+		}
+	}
+
+	public void writeBigDecimal(@NotNull final BigDecimal value)
+	{
+		final byte[] unscaledValue = value.unscaledValue().toByteArray();
+		writeSignedVarint(value.scale());
+		writeUnsignedVarint(unscaledValue.length);
+		ensureCapacity(unscaledValue.length);
+		System.arraycopy(unscaledValue, 0, bytes, length, unscaledValue.length);
+		length += unscaledValue.length;
+	}
+
+	// Returns the position to pass to finishSection()
+	public int startSection()
+	{
+		ensureCapacity(4);
+		final int position = length;
+		length += 4;
+		return position;
+	}
+
+	public void finishSection(final int position)
+	{
+		writeInt(position, length - position - 4);
+	}
+
+	public void writeNullSection()
+	{
+		writeInt(startSection(), NullSection);
+	}
+
+	private void writeInt(final int position, final int value)
+	{
+		bytes[position] = (byte) (value >>> 24);
+		bytes[position + 1] = (byte) (value >>> 16);
+		bytes[position + 2] = (byte) (value >>> 8);
+		bytes[position + 3] = (byte) value;
+	}
+
+	private void ensureCapacity(final int additional)
+	{
+		final int required = length + additional;
+		if (required > bytes.length)
+		{
+			bytes = copyOf(bytes, Math.max(required, bytes.length * 2));
+		}
+	}
+}
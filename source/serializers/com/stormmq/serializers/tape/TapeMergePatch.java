@@ -0,0 +1,63 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.tape;
+
+import com.stormmq.serializers.CouldNotSerializeMapException;
+import com.stormmq.serializers.CouldNotWritePropertyException;
+import com.stormmq.serializers.MapSerializable;
+import com.stormmq.serializers.MapSerializer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+// One object of a JSON Merge Patch (RFC 7386): properties added or replaced, null for properties removed, and nested patches for maps that changed
+public final class TapeMergePatch implements MapSerializable
+{
+	@NotNull private final List<TapeMergePatchOperation> operations;
+
+	TapeMergePatch(@NotNull final List<TapeMergePatchOperation> operations)
+	{
+		this.operations = operations;
+	}
+
+	public boolean isEmpty()
+	{
+		return operations.isEmpty();
+	}
+
+	@Override
+	public void serialiseMap(@NotNull final MapSerializer mapSerializer) throws CouldNotSerializeMapException
+	{
+		try
+		{
+			for (final TapeMergePatchOperation operation : operations)
+			{
+				operation.write(mapSerializer);
+			}
+		}
+		catch (final CouldNotWritePropertyException e)
+		{
+			throw new CouldNotSerializeMapException(this, e);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.tape;
+
+import com.stormmq.serializers.CouldNotWriteValueException;
+import com.stormmq.serializers.Serializable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.stormmq.serializers.tape.Tape.NotASingleMap;
+import static com.stormmq.serializers.tape.Tape.SingleMapOffset;
+
+// Retains the tape of the previous graph and gives the JSON Merge Patch (RFC 7386) that turns it into the current one
+// Properties are compared as recorded bytes, so an unchanged subtree costs a comparison rather than a serialisation; arrays, lists and sets that differ are replaced whole, as RFC 7386 requires
+// As in RFC 7386, a property that becomes null reads as a removal
+// When the recorder's name table has been started afresh the two tapes can not be compared, so the whole document is given instead
+// Not thread safe
+public final class TapeMergePatcher
+{
+	@NotNull private final TapeSerializer tapeSerializer;
+	@Nullable private Tape previous;
+
+	public TapeMergePatcher()
+	{
+		tapeSerializer = new TapeSerializer(4096, true);
+		previous = null;
+	}
+
+	public void reset()
+	{
+		previous = null;
+	}
+
+	// null if nothing has changed since the previous graph; the whole document if there is no previous graph or either root is not a map
+	@Nullable
+	public Serializable mergePatch(@NotNull final Serializable graph)
+	{
+		final Tape current = tapeSerializer.record(graph);
+		@Nullable final Tape previous = this.previous;
+		this.previous = current;
+
+		if (previous == null || !current.sharesNamesWith(previous))
+		{
+			return current;
+		}
+
+		if (current.sameAs(previous))
+		{
+			return null;
+		}
+
+		final int previousLength = previous.singleMapLength();
+		final int currentLength = current.singleMapLength();
+		if (previousLength == NotASingleMap || currentLength == NotASingleMap)
+		{
+			return current;
+		}
+
+		final TapeMergePatch mergePatch = diff(previous, SingleMapOffset, previousLength, current, SingleMapOffset, currentLength);
+		return serializer ->
+		{
+			try
+			{
+				serializer.writeValue(mergePatch);
+			}
+			catch (final CouldNotWriteValueException e)
+			{
+				throw new IllegalStateException("Could not write merge patch", e);
+			}
+		};
+	}
+
+	@NotNull
+	private static TapeMergePatch diff(@NotNull final Tape previous, final int previousOffset, final int previousLength, @NotNull final Tape current, final int currentOffset, final int currentLength)
+	{
+		final Map<Integer, TapePropertySpan> previousProperties = properties(previous, previousOffset, previousLength);
+		final List<TapeMergePatchOperation> operations = new ArrayList<>(4);
+
+		final TapeReader reader = current.reader(currentOffset);
+		final int end = currentOffset + currentLength;
+		while (reader.position() < end)
+		{
+			final TapePropertySpan span = TapePropertySpan.read(reader);
+			@Nullable final TapePropertySpan previousSpan = previousProperties.remove(span.nameIndex);
+
+			if (previousSpan != null && span.sameAs(current, previous, previousSpan))
+			{
+				continue;
+			}
+
+			if (previousSpan != null && span.isMap() && previousSpan.isMap())
+			{
+				final TapeMergePatch nested = diff(previous, previousSpan.mapOffset(), previousSpan.mapLength(), current, span.mapOffset(), span.mapLength());
+				if (!nested.isEmpty())
+				{
+					final String name = current.name(span.nameIndex);
+					final boolean isMapEntry = span.isMapEntry();
+					operations.add(mapSerializer -> mapSerializer.writeProperty(name, nested, isMapEntry));
+				}
+				continue;
+			}
+
+			operations.add(mapSerializer -> current.replayProperties(mapSerializer, span.start, span.length()));
+		}
+
+		for (final TapePropertySpan removed : previousProperties.values())
+		{
+			final String name = previous.name(removed.nameIndex);
+			final boolean isMapEntry = removed.isMapEntry();
+			operations.add(mapSerializer -> mapSerializer.writePropertyNull(name, isMapEntry));
+		}
+
+		return new TapeMergePatch(operations);
+	}
+
+	@NotNull
+	private static Map<Integer, TapePropertySpan> properties(@NotNull final Tape tape, final int offset, final int length)
+	{
+		final Map<Integer, TapePropertySpan> properties = new LinkedHashMap<>(16);
+		final TapeReader reader = tape.reader(offset);
+		final int end = offset + length;
+		while (reader.position() < end)
+		{
+			final TapePropertySpan span = TapePropertySpan.read(reader);
+			properties.put(span.nameIndex, span);
+		}
+		return properties;
+	}
+}
@@ -0,0 +1,230 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.tape;
+
+import com.stormmq.serializers.CouldNotWritePropertyException;
+import com.stormmq.serializers.MapSerializer;
+import com.stormmq.serializers.raw.RawFragment;
+import com.stormmq.serializers.raw.RawFragmentSerializer;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import static com.stormmq.serializers.tape.TapeValueOperation.readRawFragment;
+import static com.stormmq.serializers.tape.TapeValueOperation.skipElements;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+// The ordinal is the operation byte on the tape, so constants may only ever be appended
+public enum TapePropertyOperation
+{
+	StringProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, reader.readString(), isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipString();
+		}
+	},
+	IntegerProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, reader.readSignedVarint(), isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipVarint();
+		}
+	},
+	LongProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, reader.readSignedVarlong(), isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipVarint();
+		}
+	},
+	TrueProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, true, isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+		}
+	},
+	FalseProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, false, isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+		}
+	},
+	NullProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writePropertyNull(name, isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+		}
+	},
+	MapProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, tape.readMap(reader), isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipSection();
+		}
+	},
+	ValueProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, tape.readValue(reader), isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipSection();
+		}
+	},
+	MapsProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, tape.readMaps(reader), isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipSections();
+		}
+	},
+	ValuesProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, tape.readValues(reader), isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipSections();
+		}
+	},
+	ListProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, tape.readList(reader), isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			skipElements(reader);
+		}
+	},
+	SetProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			mapSerializer.writeProperty(name, tape.readSet(reader), isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			skipElements(reader);
+		}
+	},
+	RawProperty
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException
+		{
+			final RawFragment rawFragment = readRawFragment(reader);
+			if (!(mapSerializer instanceof RawFragmentSerializer))
+			{
+				throw new CouldNotWritePropertyException(name, rawFragment, format(ENGLISH, "%1$s can not write raw fragments", mapSerializer.getClass().getSimpleName()));
+			}
+			((RawFragmentSerializer) mapSerializer).writeProperty(name, rawFragment, isMapEntry);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipVarint();
+			reader.skipString();
+		}
+	},
+	;
+
+	public abstract void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final MapSerializer mapSerializer, @NonNls @NotNull final String name, final boolean isMapEntry) throws CouldNotWritePropertyException;
+
+	public abstract void skip(@NotNull final TapeReader reader);
+}
@@ -0,0 +1,92 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.tape;
+
+import org.jetbrains.annotations.NotNull;
+
+import static com.stormmq.serializers.tape.Tape.IsMapEntry;
+import static com.stormmq.serializers.tape.TapePropertyOperation.MapProperty;
+
+// Where one recorded property lies on a tape: its operation and name index, then its payload up to end
+final class TapePropertySpan
+{
+	@NotNull private static final TapePropertyOperation[] PropertyOperations = TapePropertyOperation.values();
+	private static final int SectionLengthSize = 4;
+
+	@NotNull
+	static TapePropertySpan read(@NotNull final TapeReader reader)
+	{
+		final int start = reader.position();
+		final int operation = reader.readByte();
+		final int nameIndex = reader.readUnsignedVarint();
+		final int payloadStart = reader.position();
+		PropertyOperations[operation & ~IsMapEntry].skip(reader);
+		return new TapePropertySpan(start, operation, nameIndex, payloadStart, reader.position());
+	}
+
+	final int start;
+	final int operation;
+	final int nameIndex;
+	final int payloadStart;
+	final int end;
+
+	private TapePropertySpan(final int start, final int operation, final int nameIndex, final int payloadStart, final int end)
+	{
+		this.start = start;
+		this.operation = operation;
+		this.nameIndex = nameIndex;
+		this.payloadStart = payloadStart;
+		this.end = end;
+	}
+
+	boolean isMapEntry()
+	{
+		return (operation & IsMapEntry) != 0;
+	}
+
+	boolean isMap()
+	{
+		return (operation & ~IsMapEntry) == MapProperty.ordinal();
+	}
+
+	int length()
+	{
+		return end - start;
+	}
+
+	int mapOffset()
+	{
+		return payloadStart + SectionLengthSize;
+	}
+
+	int mapLength()
+	{
+		return end - mapOffset();
+	}
+
+	boolean sameAs(@NotNull final Tape tape, @NotNull final Tape otherTape, @NotNull final TapePropertySpan other)
+	{
+		final int payloadLength = end - payloadStart;
+		return operation == other.operation && payloadLength == other.end - other.payloadStart && tape.rangeEquals(payloadStart, otherTape, other.payloadStart, payloadLength);
+	}
+}
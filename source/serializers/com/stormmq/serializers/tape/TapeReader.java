@@ -0,0 +1,172 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.tape;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static com.stormmq.serializers.tape.TapeBuffer.NullSection;
+import static java.util.Arrays.copyOfRange;
+
+// Reads what a TapeBuffer wrote; each replay has its own reader, so a tape can be replayed concurrently
+public final class TapeReader
+{
+	@NotNull private final byte[] bytes;
+	private int position;
+
+	public TapeReader(@NotNull final byte[] bytes, final int position)
+	{
+		this.bytes = bytes;
+		this.position = position;
+	}
+
+	public int position()
+	{
+		return position;
+	}
+
+	public void skip(final int length)
+	{
+		position += length;
+	}
+
+	public int readByte()
+	{
+		return bytes[position++] & 0xFF;
+	}
+
+	public int readUnsignedVarint()
+	{
+		int value = 0;
+		int shift = 0;
+		int octet;
+		do
+		{
+			octet = bytes[position++];
+			value |= (octet & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((octet & 0x80) != 0);
+		return value;
+	}
+
+	public int readSignedVarint()
+	{
+		final int zigZag = readUnsignedVarint();
+		return (zigZag >>> 1) ^ -(zigZag & 1);
+	}
+
+	public long readSignedVarlong()
+	{
+		long zigZag = 0L;
+		int shift = 0;
+		long octet;
+		do
+		{
+			octet = bytes[position++];
+			zigZag |= (octet & 0x7FL) << shift;
+			shift += 7;
+		}
+		while ((octet & 0x80L) != 0L);
+		return (zigZag >>> 1) ^ -(zigZag & 1L);
+	}
+
+	public long readFixedLong()
+	{
+		long value = 0L;
+		for (int index = 0; index < 8; index++)
+		{
+			value = (value << 8) | (bytes[position++] & 0xFFL);
+		}
+		return value;
+	}
+
+	@NotNull
+	public String readString()
+	{
+		final int length = readUnsignedVarint();
+		final char[] characters = new char[length];
+		for (int index = 0; index < length; index++)
+		{
+			characters[index] = (char) readUnsignedVarint();
+		}
+		return new String(characters);
+	}
+
+	@NotNull
+	public BigDecimal readBigDecimal()
+	{
+		final int scale = readSignedVarint();
+		final int length = readUnsignedVarint();
+		final byte[] unscaledValue = copyOfRange(bytes, position, position + length);
+		position += length;
+		return new BigDecimal(new BigInteger(unscaledValue), scale);
+	}
+
+	public void skipVarint()
+	{
+		int octet;
+		do
+		{
+			octet = bytes[position++];
+		}
+		while ((octet & 0x80) != 0);
+	}
+
+	public void skipString()
+	{
+		final int length = readUnsignedVarint();
+		for (int index = 0; index < length; index++)
+		{
+			skipVarint();
+		}
+	}
+
+	public void skipSection()
+	{
+		skip(readSectionLength());
+	}
+
+	public void skipSections()
+	{
+		final int count = readUnsignedVarint();
+		for (int index = 0; index < count; index++)
+		{
+			final int length = readSectionLength();
+			if (length != NullSection)
+			{
+				skip(length);
+			}
+		}
+	}
+
+	// TapeBuffer.NullSection for a null element
+	public int readSectionLength()
+	{
+		final int length = ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16) | ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+		position += 4;
+		return length;
+	}
+}
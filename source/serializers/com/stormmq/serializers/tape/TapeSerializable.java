@@ -0,0 +1,55 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.tape;
+
+import com.stormmq.serializers.CouldNotWriteValueException;
+import com.stormmq.serializers.Serializable;
+import com.stormmq.serializers.Serializer;
+import org.jetbrains.annotations.NotNull;
+
+public final class TapeSerializable implements Serializable
+{
+	@NotNull private final Tape tape;
+	private final int offset;
+	private final int length;
+
+	public TapeSerializable(@NotNull final Tape tape, final int offset, final int length)
+	{
+		this.tape = tape;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public void serialise(@NotNull final Serializer serializer)
+	{
+		try
+		{
+			tape.replayValues(serializer, offset, length);
+		}
+		catch (final CouldNotWriteValueException e)
+		{
+			throw new IllegalStateException("Could not replay tape", e);
+		}
+	}
+}
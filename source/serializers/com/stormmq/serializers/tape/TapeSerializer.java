@@ -0,0 +1,591 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.tape;
+
+import com.stormmq.serializers.*;
+import com.stormmq.serializers.raw.RawFragment;
+import com.stormmq.serializers.raw.RawFragmentSerializer;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.*;
+
+import static com.stormmq.serializers.ObjectKind.kindOf;
+import static com.stormmq.serializers.tape.Tape.IsMapEntry;
+import static com.stormmq.serializers.tape.TapePropertyOperation.*;
+import static com.stormmq.serializers.tape.TapeValueOperation.*;
+import static java.util.Arrays.copyOf;
+
+// Records the calls a graph makes into one reusable buffer; Object values are dispatched when recorded, by ObjectKind, as in every serializer, so replay makes the same typed calls
+// Not thread safe; the tapes it returns are independent of it and of the graph
+public final class TapeSerializer implements Serializer, RawFragmentSerializer
+{
+	@NotNull private final TapeBuffer buffer;
+	private static final int InitialNames = 64;
+	private static final int MaximumRetainedNames = 4096;
+
+	@NotNull private final Map<String, Integer> nameIndices;
+	private final boolean retainNames;
+	@NotNull private String[] names;
+	private int nameCount;
+
+	public TapeSerializer()
+	{
+		this(4096);
+	}
+
+	public TapeSerializer(final int initialCapacity)
+	{
+		this(initialCapacity, false);
+	}
+
+	// Retaining names keeps each name's index the same across recordings, so tapes from this serializer can be compared byte for byte
+	// Names that keep changing, such as map keys that are identifiers, would grow the table without end, so it is started afresh once it holds more than MaximumRetainedNames; see Tape.sharesNamesWith()
+	public TapeSerializer(final int initialCapacity, final boolean retainNames)
+	{
+		this.retainNames = retainNames;
+		buffer = new TapeBuffer(initialCapacity);
+		nameIndices = new HashMap<>(InitialNames);
+		names = new String[InitialNames];
+		nameCount = 0;
+	}
+
+	@NotNull
+	public Tape record(@NotNull final Serializable graph)
+	{
+		begin();
+		graph.serialise(this);
+		return tape();
+	}
+
+	// A tape holds calls, not characters, so the stream or writer and the charset are not used; start() begins a new recording, and after finish() it is taken with tape()
+	@Override
+	public void start(@NotNull final OutputStream outputStream, @NotNull final Charset charset)
+	{
+		begin();
+	}
+
+	@Override
+	public void start(@NotNull final Writer writer, @NotNull final Charset charset)
+	{
+		begin();
+	}
+
+	@Override
+	public void finish()
+	{
+	}
+
+	// Tapes share the name table rather than copying it; an entry is never overwritten, as the table is replaced rather than cleared, so a tape's names stay as they were recorded
+	@NotNull
+	public Tape tape()
+	{
+		return new Tape(buffer.toByteArray(), names, nameCount);
+	}
+
+	private void begin()
+	{
+		buffer.reset();
+		if (nameCount != 0 && (!retainNames || nameCount > MaximumRetainedNames))
+		{
+			nameIndices.clear();
+			names = new String[InitialNames];
+			nameCount = 0;
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final String value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final String value, final boolean isMapEntry)
+	{
+		writePropertyOperation(StringProperty, name, isMapEntry);
+		buffer.writeString(value);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final MapSerializable value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final MapSerializable value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		writePropertyOperation(MapProperty, name, isMapEntry);
+		try
+		{
+			writeMapSection(value);
+		}
+		catch (final CouldNotSerializeMapException e)
+		{
+			throw new CouldNotWritePropertyException(name, value, e);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final ValueSerializable value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final ValueSerializable value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		writePropertyOperation(ValueProperty, name, isMapEntry);
+		try
+		{
+			writeValueSection(value);
+		}
+		catch (final CouldNotSerializeValueException e)
+		{
+			throw new CouldNotWritePropertyException(name, value, e);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final RawFragment value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		final String characters;
+		try
+		{
+			characters = value.characters();
+		}
+		catch (final IOException e)
+		{
+			throw new CouldNotWritePropertyException(name, value, new CouldNotWriteDataException(e));
+		}
+		writePropertyOperation(RawProperty, name, isMapEntry);
+		writeRawFragment(value, characters);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @Nullable final Object value, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		kindOf(value).writeProperty(this, name, value, isMapEntry);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final int value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final int value, final boolean isMapEntry)
+	{
+		writePropertyOperation(IntegerProperty, name, isMapEntry);
+		buffer.writeSignedVarint(value);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final long value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final long value, final boolean isMapEntry)
+	{
+		writePropertyOperation(LongProperty, name, isMapEntry);
+		buffer.writeSignedVarlong(value);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final boolean value) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, value, false);
+	}
+
+	@SuppressWarnings("ConditionalExpression")
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, final boolean value, final boolean isMapEntry)
+	{
+		writePropertyOperation(value ? TrueProperty : FalseProperty, name, isMapEntry);
+	}
+
+	@Override
+	public void writePropertyNull(@FieldTokenName @NonNls @NotNull final String name) throws CouldNotWritePropertyException
+	{
+		writePropertyNull(name, false);
+	}
+
+	@Override
+	public void writePropertyNull(@FieldTokenName @NonNls @NotNull final String name, final boolean isMapEntry)
+	{
+		writePropertyOperation(NullProperty, name, isMapEntry);
+	}
+
+	@Override
+	public <S extends MapSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, values, false);
+	}
+
+	@Override
+	public <S extends MapSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		writePropertyOperation(MapsProperty, name, isMapEntry);
+		try
+		{
+			writeMapSections(values);
+		}
+		catch (final CouldNotSerializeMapException e)
+		{
+			throw new CouldNotWritePropertyException(name, values, e);
+		}
+	}
+
+	@Override
+	public <S extends ValueSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, values, false);
+	}
+
+	@Override
+	public <S extends ValueSerializable> void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final S[] values, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		writePropertyOperation(ValuesProperty, name, isMapEntry);
+		try
+		{
+			writeValueSections(values);
+		}
+		catch (final CouldNotSerializeValueException e)
+		{
+			throw new CouldNotWritePropertyException(name, values, e);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final List<?> values) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, values, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final List<?> values, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		writePropertyOperation(ListProperty, name, isMapEntry);
+		try
+		{
+			writeElements(values);
+		}
+		catch (final CouldNotWriteValueException e)
+		{
+			throw new CouldNotWritePropertyException(name, values, e);
+		}
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final Set<?> values) throws CouldNotWritePropertyException
+	{
+		writeProperty(name, values, false);
+	}
+
+	@Override
+	public void writeProperty(@FieldTokenName @NonNls @NotNull final String name, @NotNull final Set<?> values, final boolean isMapEntry) throws CouldNotWritePropertyException
+	{
+		writePropertyOperation(SetProperty, name, isMapEntry);
+		try
+		{
+			writeElements(values);
+		}
+		catch (final CouldNotWriteValueException e)
+		{
+			throw new CouldNotWritePropertyException(name, values, e);
+		}
+	}
+
+	@Override
+	public <S extends MapSerializable> void writeValue(@NotNull final S[] values) throws CouldNotWriteValueException
+	{
+		buffer.writeByte(MapsValue.ordinal());
+		try
+		{
+			writeMapSections(values);
+		}
+		catch (final CouldNotSerializeMapException e)
+		{
+			throw new CouldNotWriteValueException(values, e);
+		}
+	}
+
+	@Override
+	public <S extends ValueSerializable> void writeValue(@NotNull final S[] values) throws CouldNotWriteValueException
+	{
+		buffer.writeByte(ValuesValue.ordinal());
+		try
+		{
+			writeValueSections(values);
+		}
+		catch (final CouldNotSerializeValueException e)
+		{
+			throw new CouldNotWriteValueException(values, e);
+		}
+	}
+
+	@Override
+	public void writeValue(@NotNull final List<?> values) throws CouldNotWriteValueException
+	{
+		buffer.writeByte(ListValue.ordinal());
+		writeElements(values);
+	}
+
+	@Override
+	public void writeValue(@NotNull final Set<?> values) throws CouldNotWriteValueException
+	{
+		buffer.writeByte(SetValue.ordinal());
+		writeElements(values);
+	}
+
+	@Override
+	public void writeValue(final int value)
+	{
+		buffer.writeByte(IntegerValue.ordinal());
+		buffer.writeSignedVarint(value);
+	}
+
+	@Override
+	public void writeValue(final long value)
+	{
+		buffer.writeByte(LongValue.ordinal());
+		buffer.writeSignedVarlong(value);
+	}
+
+	@SuppressWarnings("ConditionalExpression")
+	@Override
+	public void writeValue(final boolean value)
+	{
+		buffer.writeByte((value ? TrueValue : FalseValue).ordinal());
+	}
+
+	@Override
+	public void writeValue(@NotNull final BigDecimal value)
+	{
+		buffer.writeByte(BigDecimalValue.ordinal());
+		buffer.writeBigDecimal(value);
+	}
+
+	@Override
+	public void writeValue(@NotNull final String value)
+	{
+		buffer.writeByte(StringValue.ordinal());
+		buffer.writeString(value);
+	}
+
+	@Override
+	public void writeValue(@NotNull final MapSerializable value) throws CouldNotWriteValueException
+	{
+		buffer.writeByte(MapValue.ordinal());
+		try
+		{
+			writeMapSection(value);
+		}
+		catch (final CouldNotSerializeMapException e)
+		{
+			throw new CouldNotWriteValueException(value, e);
+		}
+	}
+
+	@Override
+	public void writeValue(@NotNull final ValueSerializable value) throws CouldNotWriteValueException
+	{
+		buffer.writeByte(ValueValue.ordinal());
+		try
+		{
+			writeValueSection(value);
+		}
+		catch (final CouldNotSerializeValueException e)
+		{
+			throw new CouldNotWriteValueException(value, e);
+		}
+	}
+
+	@Override
+	public void writeValue(@Nullable final Object value) throws CouldNotWriteValueException
+	{
+		kindOf(value).writeValue(this, value);
+	}
+
+	@Override
+	public void writeValue(@NotNull final RawFragment value) throws CouldNotWriteValueException
+	{
+		final String characters;
+		try
+		{
+			characters = value.characters();
+		}
+		catch (final IOException e)
+		{
+			throw new CouldNotWriteValueException(value, new CouldNotWriteDataException(e));
+		}
+		buffer.writeByte(RawValue.ordinal());
+		writeRawFragment(value, characters);
+	}
+
+	@Override
+	public void writeValue(@NotNull final UUID value)
+	{
+		buffer.writeByte(UuidValue.ordinal());
+		buffer.writeFixedLong(value.getMostSignificantBits());
+		buffer.writeFixedLong(value.getLeastSignificantBits());
+	}
+
+	@Override
+	public void writeValueNull()
+	{
+		buffer.writeByte(NullValue.ordinal());
+	}
+
+	@Override
+	public <S extends Serializable> void writeValue(@NotNull final S value)
+	{
+		buffer.writeByte(SerializableValue.ordinal());
+		writeSerializableSection(value);
+	}
+
+	@SafeVarargs
+	@Override
+	public final <S extends Serializable> void writeValue(@NotNull final S... values)
+	{
+		buffer.writeByte(SerializablesValue.ordinal());
+		buffer.writeUnsignedVarint(values.length);
+		for (final S value : values)
+		{
+			if (value == null)
+			{
+				buffer.writeNullSection();
+			}
+			else
+			{
+				writeSerializableSection(value);
+			}
+		}
+	}
+
+	private void writePropertyOperation(@NotNull final TapePropertyOperation operation, @NonNls @NotNull final String name, final boolean isMapEntry)
+	{
+		buffer.writeByte(isMapEntry ? operation.ordinal() | IsMapEntry : operation.ordinal());
+		@Nullable final Integer index = nameIndices.get(name);
+		if (index == null)
+		{
+			final int newIndex = nameCount;
+			if (newIndex == names.length)
+			{
+				names = copyOf(names, newIndex * 2);
+			}
+			names[newIndex] = name;
+			nameCount++;
+			nameIndices.put(name, newIndex);
+			buffer.writeUnsignedVarint(newIndex);
+		}
+		else
+		{
+			buffer.writeUnsignedVarint(index);
+		}
+	}
+
+	private void writeRawFragment(@NotNull final RawFragment value, @NotNull final String characters)
+	{
+		buffer.writeUnsignedVarint(value.rawFragmentFormat().ordinal());
+		buffer.writeString(characters);
+	}
+
+	private void writeMapSection(@NotNull final MapSerializable value) throws CouldNotSerializeMapException
+	{
+		final int section = buffer.startSection();
+		value.serialiseMap(this);
+		buffer.finishSection(section);
+	}
+
+	private void writeValueSection(@NotNull final ValueSerializable value) throws CouldNotSerializeValueException
+	{
+		final int section = buffer.startSection();
+		value.serialiseValue(this);
+		buffer.finishSection(section);
+	}
+
+	private void writeSerializableSection(@NotNull final Serializable value)
+	{
+		final int section = buffer.startSection();
+		value.serialise(this);
+		buffer.finishSection(section);
+	}
+
+	private void writeMapSections(@NotNull final MapSerializable[] values) throws CouldNotSerializeMapException
+	{
+		buffer.writeUnsignedVarint(values.length);
+		for (final MapSerializable value : values)
+		{
+			if (value == null)
+			{
+				buffer.writeNullSection();
+			}
+			else
+			{
+				writeMapSection(value);
+			}
+		}
+	}
+
+	private void writeValueSections(@NotNull final ValueSerializable[] values) throws CouldNotSerializeValueException
+	{
+		buffer.writeUnsignedVarint(values.length);
+		for (final ValueSerializable value : values)
+		{
+			if (value == null)
+			{
+				buffer.writeNullSection();
+			}
+			else
+			{
+				writeValueSection(value);
+			}
+		}
+	}
+
+	private void writeElements(@NotNull final Collection<?> values) throws CouldNotWriteValueException
+	{
+		buffer.writeUnsignedVarint(values.size());
+		for (final Object value : values)
+		{
+			writeValue(value);
+		}
+	}
+}
@@ -0,0 +1,433 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.tape;
+
+import com.stormmq.serializers.CouldNotWriteValueException;
+import com.stormmq.serializers.Serializer;
+import com.stormmq.serializers.ValueSerializer;
+import com.stormmq.serializers.raw.RawFragment;
+import com.stormmq.serializers.raw.RawFragmentFormat;
+import com.stormmq.serializers.raw.RawFragmentSerializer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+import static com.stormmq.serializers.raw.RawFragment.rawFragment;
+import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+// The ordinal is the operation byte on the tape, so constants may only ever be appended; read() is used for the elements of lists and sets
+public enum TapeValueOperation
+{
+	NullValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValueNull();
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return null;
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+		}
+	},
+	StringValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(reader.readString());
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return reader.readString();
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipString();
+		}
+	},
+	IntegerValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(reader.readSignedVarint());
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return reader.readSignedVarint();
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipVarint();
+		}
+	},
+	LongValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(reader.readSignedVarlong());
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return reader.readSignedVarlong();
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipVarint();
+		}
+	},
+	TrueValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(true);
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return TRUE;
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+		}
+	},
+	FalseValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(false);
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return FALSE;
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+		}
+	},
+	BigDecimalValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(reader.readBigDecimal());
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return reader.readBigDecimal();
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipVarint();
+			reader.skip(reader.readUnsignedVarint());
+		}
+	},
+	UuidValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(new UUID(reader.readFixedLong(), reader.readFixedLong()));
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return new UUID(reader.readFixedLong(), reader.readFixedLong());
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skip(16);
+		}
+	},
+	MapValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(tape.readMap(reader));
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return tape.readMap(reader);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipSection();
+		}
+	},
+	ValueValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(tape.readValue(reader));
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return tape.readValue(reader);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipSection();
+		}
+	},
+	MapsValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(tape.readMaps(reader));
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return tape.readMaps(reader);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipSections();
+		}
+	},
+	ValuesValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(tape.readValues(reader));
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return tape.readValues(reader);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipSections();
+		}
+	},
+	ListValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(tape.readList(reader));
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return tape.readList(reader);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			skipElements(reader);
+		}
+	},
+	SetValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			valueSerializer.writeValue(tape.readSet(reader));
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return tape.readSet(reader);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			skipElements(reader);
+		}
+	},
+	SerializableValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			((Serializer) valueSerializer).writeValue(tape.readSerializable(reader));
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return tape.readSerializable(reader);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipSection();
+		}
+	},
+	SerializablesValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			((Serializer) valueSerializer).writeValue(tape.readSerializables(reader));
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return tape.readSerializables(reader);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipSections();
+		}
+	},
+	RawValue
+	{
+		@Override
+		public void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException
+		{
+			final RawFragment rawFragment = readRawFragment(reader);
+			if (!(valueSerializer instanceof RawFragmentSerializer))
+			{
+				throw new CouldNotWriteValueException(rawFragment, format(ENGLISH, "%1$s can not write raw fragments", valueSerializer.getClass().getSimpleName()));
+			}
+			((RawFragmentSerializer) valueSerializer).writeValue(rawFragment);
+		}
+
+		@Nullable
+		@Override
+		public Object read(@NotNull final TapeReader reader, @NotNull final Tape tape)
+		{
+			return readRawFragment(reader);
+		}
+
+		@Override
+		public void skip(@NotNull final TapeReader reader)
+		{
+			reader.skipVarint();
+			reader.skipString();
+		}
+	},
+	;
+
+	@NotNull private static final TapeValueOperation[] ValueOperations = values();
+	@NotNull private static final RawFragmentFormat[] RawFragmentFormats = RawFragmentFormat.values();
+
+	@NotNull
+	static RawFragment readRawFragment(@NotNull final TapeReader reader)
+	{
+		final RawFragmentFormat format = RawFragmentFormats[reader.readUnsignedVarint()];
+		return rawFragment(format, reader.readString());
+	}
+
+	static void skipElements(@NotNull final TapeReader reader)
+	{
+		final int count = reader.readUnsignedVarint();
+		for (int index = 0; index < count; index++)
+		{
+			ValueOperations[reader.readByte()].skip(reader);
+		}
+	}
+
+	public abstract void replay(@NotNull final TapeReader reader, @NotNull final Tape tape, @NotNull final ValueSerializer valueSerializer) throws CouldNotWriteValueException;
+
+	public abstract void skip(@NotNull final TapeReader reader);
+
+	@Nullable
+	public abstract Object read(@NotNull final TapeReader reader, @NotNull final Tape tape);
+}
@@ -0,0 +1,58 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.tee;
+
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.Serializable;
+import com.stormmq.serializers.tape.Tape;
+import com.stormmq.serializers.tape.TapeSerializer;
+import org.jetbrains.annotations.NotNull;
+
+import static java.util.Arrays.copyOf;
+
+// User code runs once: the graph is recorded to a tape, which is then replayed into every target in turn, each keeping its own nesting state
+// A target that fails leaves the documents of the targets before it written; not thread safe
+public final class TeeSerializer
+{
+	@NotNull private final TeeTarget[] targets;
+	@NotNull private final TapeSerializer tapeSerializer;
+
+	public TeeSerializer(@NotNull final TeeTarget... targets)
+	{
+		if (targets.length == 0)
+		{
+			throw new IllegalArgumentException("There must be at least one target");
+		}
+		this.targets = copyOf(targets, targets.length);
+		tapeSerializer = new TapeSerializer();
+	}
+
+	public void serialise(@NotNull final Serializable graph) throws CouldNotSerialiseException
+	{
+		final Tape tape = tapeSerializer.record(graph);
+		for (final TeeTarget target : targets)
+		{
+			target.serialise(tape);
+		}
+	}
+}
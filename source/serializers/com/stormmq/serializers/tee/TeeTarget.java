@@ -0,0 +1,50 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.tee;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.Serializable;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+public final class TeeTarget
+{
+	@NotNull private final AbstractSerializer serializer;
+	@NotNull private final OutputStream outputStream;
+	@NotNull private final Charset charset;
+
+	public TeeTarget(@NotNull final AbstractSerializer serializer, @NotNull final OutputStream outputStream, @NotNull final Charset charset)
+	{
+		this.serializer = serializer;
+		this.outputStream = outputStream;
+		this.charset = charset;
+	}
+
+	void serialise(@NotNull final Serializable graph) throws CouldNotSerialiseException
+	{
+		serializer.serialise(graph, outputStream, charset);
+	}
+}
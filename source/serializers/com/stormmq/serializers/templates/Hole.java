@@ -0,0 +1,56 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.templates;
+
+import com.stormmq.serializers.ValueSerializable;
+import com.stormmq.serializers.ValueSerializer;
+import org.jetbrains.annotations.NotNull;
+
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+// A placeholder in a template's graph; serializing it only notes where in the output the value will go
+public final class Hole implements ValueSerializable
+{
+	@NotNull private final TemplateHoles templateHoles;
+	private final int index;
+
+	Hole(@NotNull final TemplateHoles templateHoles, final int index)
+	{
+		this.templateHoles = templateHoles;
+		this.index = index;
+	}
+
+	@Override
+	public void serialiseValue(@NotNull final ValueSerializer valueSerializer)
+	{
+		templateHoles.holeWritten(index);
+	}
+
+	@Override
+	@NotNull
+	public String toString()
+	{
+		return format(ENGLISH, "hole %1$s", templateHoles.holeName(index));
+	}
+}
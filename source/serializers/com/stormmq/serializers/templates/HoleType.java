@@ -0,0 +1,99 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.templates;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotWriteValueException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+
+public enum HoleType
+{
+	StringHole(String.class)
+	{
+		@Override
+		protected void writeNonNull(@NotNull final AbstractSerializer serializer, @NotNull final Object value) throws CouldNotWriteValueException
+		{
+			serializer.writeValue((String) value);
+		}
+	},
+	IntegerHole(Integer.class)
+	{
+		@Override
+		protected void writeNonNull(@NotNull final AbstractSerializer serializer, @NotNull final Object value) throws CouldNotWriteValueException
+		{
+			serializer.writeValue((int) (Integer) value);
+		}
+	},
+	LongHole(Long.class)
+	{
+		@Override
+		protected void writeNonNull(@NotNull final AbstractSerializer serializer, @NotNull final Object value) throws CouldNotWriteValueException
+		{
+			serializer.writeValue((long) (Long) value);
+		}
+	},
+	BooleanHole(Boolean.class)
+	{
+		@Override
+		protected void writeNonNull(@NotNull final AbstractSerializer serializer, @NotNull final Object value) throws CouldNotWriteValueException
+		{
+			serializer.writeValue((boolean) (Boolean) value);
+		}
+	},
+	BigDecimalHole(BigDecimal.class)
+	{
+		@Override
+		protected void writeNonNull(@NotNull final AbstractSerializer serializer, @NotNull final Object value) throws CouldNotWriteValueException
+		{
+			serializer.writeValue((BigDecimal) value);
+		}
+	},
+	;
+
+	@NotNull private final Class<?> valueClass;
+
+	HoleType(@NotNull final Class<?> valueClass)
+	{
+		this.valueClass = valueClass;
+	}
+
+	public boolean accepts(@Nullable final Object value)
+	{
+		return value == null || valueClass.isInstance(value);
+	}
+
+	public final void write(@NotNull final AbstractSerializer serializer, @Nullable final Object value) throws CouldNotWriteValueException
+	{
+		if (value == null)
+		{
+			serializer.writeValueNull();
+			return;
+		}
+		writeNonNull(serializer, value);
+	}
+
+	protected abstract void writeNonNull(@NotNull final AbstractSerializer serializer, @NotNull final Object value) throws CouldNotWriteValueException;
+}
@@ -0,0 +1,194 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.templates;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotSerialiseException;
+import com.stormmq.serializers.CouldNotWriteDataException;
+import com.stormmq.serializers.CouldNotWriteValueException;
+import com.stormmq.serializers.framing.FrameBuffer;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.Arrays;
+
+import static java.lang.Math.ceil;
+import static java.lang.String.format;
+import static java.lang.System.arraycopy;
+import static java.nio.ByteBuffer.allocate;
+import static java.nio.CharBuffer.wrap;
+import static java.nio.charset.CodingErrorAction.REPLACE;
+import static java.util.Arrays.copyOf;
+import static java.util.Locale.ENGLISH;
+
+// A document serialized once, with its unchanging parts kept as bytes in the template's charset and a hole wherever a value varies
+// Only formats that write each value as they reach it, JSON and XML, can be templated; render with a serializer of the same format and configuration as the one that compiled the template
+// Immutable and thread safe; see TemplateRenderer
+// Segments and hole values are encoded apart and spliced, so charsets that write a byte order mark or carry state from one character to the next, such as UTF-16, are refused
+public final class Template
+{
+	private static final int InitialCapacity = 256;
+
+	@NotNull
+	public static Template compile(@NotNull final AbstractSerializer serializer, @NotNull final Charset charset, @NotNull final TemplateDefinition definition) throws CouldNotSerialiseException
+	{
+		guardCharsetSplices(charset);
+
+		final CharArrayWriter output = new CharArrayWriter(InitialCapacity);
+		final TemplateHoles holes = new TemplateHoles(output);
+		serializer.serialise(definition.define(holes), output, charset);
+		final char[] characters = output.toCharArray();
+
+		// One encoder for the whole document, so each segment's bytes are exactly those the document would have had
+		final CharsetEncoder encoder = charset.newEncoder().onMalformedInput(REPLACE).onUnmappableCharacter(REPLACE);
+		final ByteBuffer segments = allocate((int) ceil(encoder.maxBytesPerChar() * characters.length));
+		final int occurrences = holes.occurrences();
+		final int[] segmentEnds = new int[occurrences];
+		final int[] occurrenceHoles = new int[occurrences];
+		int start = 0;
+		for (int occurrence = 0; occurrence < occurrences; occurrence++)
+		{
+			final int end = holes.occurrenceOffset(occurrence);
+			encode(encoder, wrap(characters, start, end - start), segments, false);
+			segmentEnds[occurrence] = segments.position();
+			occurrenceHoles[occurrence] = holes.occurrenceHole(occurrence);
+			start = end;
+		}
+		encode(encoder, wrap(characters, start, characters.length - start), segments, true);
+		if (encoder.flush(segments).isOverflow())
+		{
+			throw new IllegalStateException("maxBytesPerChar was not the most bytes per character");
+		}
+
+		return new Template(charset, copyOf(segments.array(), segments.position()), segmentEnds, occurrenceHoles, holes.names(), holes.types());
+	}
+
+	static void guardCharsetSplices(@NotNull final Charset charset)
+	{
+		@NonNls final String first = "a";
+		@NonNls final String second = "b";
+		final byte[] firstBytes = first.getBytes(charset);
+		final byte[] secondBytes = second.getBytes(charset);
+		final byte[] spliced = copyOf(firstBytes, firstBytes.length + secondBytes.length);
+		arraycopy(secondBytes, 0, spliced, firstBytes.length, secondBytes.length);
+		if (!Arrays.equals(spliced, (first + second).getBytes(charset)))
+		{
+			throw new IllegalArgumentException(format(ENGLISH, "Templates can not be in %1$s, as text encoded in pieces differs from the same text encoded whole", charset));
+		}
+	}
+
+	private static void encode(@NotNull final CharsetEncoder encoder, @NotNull final CharBuffer characters, @NotNull final ByteBuffer segments, final boolean endOfInput)
+	{
+		if (encoder.encode(characters, segments, endOfInput).isOverflow())
+		{
+			throw new IllegalStateException("maxBytesPerChar was not the most bytes per character");
+		}
+	}
+
+	@NotNull private final Charset charset;
+	@NotNull private final byte[] segments;
+	@NotNull private final int[] segmentEnds;
+	@NotNull private final int[] occurrenceHoles;
+	@NotNull private final String[] holeNames;
+	@NotNull private final HoleType[] holeTypes;
+
+	private Template(@NotNull final Charset charset, @NotNull final byte[] segments, @NotNull final int[] segmentEnds, @NotNull final int[] occurrenceHoles, @NotNull final String[] holeNames, @NotNull final HoleType[] holeTypes)
+	{
+		this.charset = charset;
+		this.segments = segments;
+		this.segmentEnds = segmentEnds;
+		this.occurrenceHoles = occurrenceHoles;
+		this.holeNames = holeNames;
+		this.holeTypes = holeTypes;
+	}
+
+	@NotNull
+	public Charset charset()
+	{
+		return charset;
+	}
+
+	public int holeCount()
+	{
+		return holeNames.length;
+	}
+
+	// Values are passed to render in hole index order, which is the order the holes were created in
+	public int holeIndex(@NonNls @NotNull final String name)
+	{
+		for (int index = 0; index < holeNames.length; index++)
+		{
+			if (holeNames[index].equals(name))
+			{
+				return index;
+			}
+		}
+		throw new IllegalArgumentException(format(ENGLISH, "There is no hole called %1$s", name));
+	}
+
+	void render(@NotNull final AbstractSerializer serializer, @NotNull final FrameBuffer buffer, @NotNull final Writer holeWriter, @NotNull final Object... values) throws CouldNotWriteValueException, CouldNotWriteDataException
+	{
+		if (values.length != holeNames.length)
+		{
+			throw new IllegalArgumentException(format(ENGLISH, "There are %1$s holes but %2$s values", holeNames.length, values.length));
+		}
+		for (int index = 0; index < values.length; index++)
+		{
+			if (!holeTypes[index].accepts(values[index]))
+			{
+				throw new IllegalArgumentException(format(ENGLISH, "Hole %1$s is a %2$s", holeNames[index], holeTypes[index]));
+			}
+		}
+
+		int start = 0;
+		for (int occurrence = 0; occurrence < occurrenceHoles.length; occurrence++)
+		{
+			final int end = segmentEnds[occurrence];
+			buffer.write(segments, start, end - start);
+			start = end;
+			final int hole = occurrenceHoles[occurrence];
+			holeTypes[hole].write(serializer, values[hole]);
+			flush(holeWriter);
+		}
+		buffer.write(segments, start, segments.length - start);
+	}
+
+	private static void flush(@NotNull final Writer holeWriter) throws CouldNotWriteDataException
+	{
+		try
+		{
+			holeWriter.flush();
+		}
+		catch (final IOException e)
+		{
+			throw new CouldNotWriteDataException(e);
+		}
+	}
+}
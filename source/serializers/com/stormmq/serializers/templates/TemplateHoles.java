@@ -0,0 +1,112 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.templates;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.CharArrayWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.util.Arrays.copyOf;
+import static java.util.Locale.ENGLISH;
+
+// Hands out the holes for a template while it is compiled, and notes where in the output each one is written
+public final class TemplateHoles
+{
+	@NotNull private final CharArrayWriter output;
+	@NotNull private final List<String> names;
+	@NotNull private final List<HoleType> types;
+	@NotNull private int[] occurrenceHoles;
+	@NotNull private int[] occurrenceOffsets;
+	private int occurrences;
+
+	TemplateHoles(@NotNull final CharArrayWriter output)
+	{
+		this.output = output;
+		names = new ArrayList<>(8);
+		types = new ArrayList<>(8);
+		occurrenceHoles = new int[8];
+		occurrenceOffsets = new int[8];
+		occurrences = 0;
+	}
+
+	@NotNull
+	public Hole hole(@NonNls @NotNull final String name, @NotNull final HoleType type)
+	{
+		if (names.contains(name))
+		{
+			throw new IllegalArgumentException(format(ENGLISH, "There is already a hole called %1$s", name));
+		}
+		names.add(name);
+		types.add(type);
+		return new Hole(this, names.size() - 1);
+	}
+
+	void holeWritten(final int index)
+	{
+		if (occurrences == occurrenceHoles.length)
+		{
+			occurrenceHoles = copyOf(occurrenceHoles, occurrences * 2);
+			occurrenceOffsets = copyOf(occurrenceOffsets, occurrences * 2);
+		}
+		occurrenceHoles[occurrences] = index;
+		occurrenceOffsets[occurrences] = output.size();
+		occurrences++;
+	}
+
+	@NotNull
+	String holeName(final int index)
+	{
+		return names.get(index);
+	}
+
+	@NotNull
+	String[] names()
+	{
+		return names.toArray(new String[names.size()]);
+	}
+
+	@NotNull
+	HoleType[] types()
+	{
+		return types.toArray(new HoleType[types.size()]);
+	}
+
+	int occurrences()
+	{
+		return occurrences;
+	}
+
+	int occurrenceHole(final int occurrence)
+	{
+		return occurrenceHoles[occurrence];
+	}
+
+	int occurrenceOffset(final int occurrence)
+	{
+		return occurrenceOffsets[occurrence];
+	}
+}
@@ -0,0 +1,93 @@
+// The MIT License (MIT)
+//
+// Copyright © 2016, Raphael Cohn <raphael.cohn@stormmq.com>
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.stormmq.serializers.templates;
+
+import com.stormmq.serializers.AbstractSerializer;
+import com.stormmq.serializers.CouldNotWriteDataException;
+import com.stormmq.serializers.CouldNotWriteValueException;
+import com.stormmq.serializers.framing.FrameBuffer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+
+import static com.stormmq.serializers.templates.Template.guardCharsetSplices;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+// Renders templates into one reusable buffer: each unchanging segment is a bulk copy, and only the hole values are serialized and encoded
+// Not thread safe; use one per thread
+public final class TemplateRenderer
+{
+	@NotNull private final AbstractSerializer serializer;
+	@NotNull private final Charset charset;
+	@NotNull private final FrameBuffer buffer;
+	@NotNull private final OutputStreamWriter holeWriter;
+
+	public TemplateRenderer(@NotNull final AbstractSerializer serializer, @NotNull final Charset charset, final int initialCapacity)
+	{
+		guardCharsetSplices(charset);
+		this.serializer = serializer;
+		this.charset = charset;
+		buffer = new FrameBuffer(initialCapacity);
+		holeWriter = new OutputStreamWriter(buffer, charset);
+	}
+
+	// The document stays in bytes() until the next render
+	public void render(@NotNull final Template template, @NotNull final Object... values) throws CouldNotWriteValueException, CouldNotWriteDataException
+	{
+		if (!template.charset().equals(charset))
+		{
+			throw new IllegalArgumentException(format(ENGLISH, "The template is in %1$s, not %2$s", template.charset(), charset));
+		}
+		buffer.reset();
+		serializer.attach(holeWriter, charset);
+		template.render(serializer, buffer, holeWriter, values);
+	}
+
+	public void render(@NotNull final Template template, @NotNull final OutputStream outputStream, @NotNull final Object... values) throws CouldNotWriteValueException, CouldNotWriteDataException
+	{
+		render(template, values);
+		try
+		{
+			outputStream.write(buffer.bytes(), 0, buffer.size());
+		}
+		catch (final IOException e)
+		{
+			throw new CouldNotWriteDataException(e);
+		}
+	}
+
+	@NotNull
+	public byte[] bytes()
+	{
+		return buffer.bytes();
+	}
+
+	public int size()
+	{
+		return buffer.size();
+	}
+}